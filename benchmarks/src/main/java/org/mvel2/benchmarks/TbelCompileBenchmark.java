@@ -0,0 +1,53 @@
+package org.mvel2.benchmarks;
+
+import org.mvel2.MVEL;
+import org.mvel2.ParserContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of compiling a TBEL script in sandboxed mode.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TbelCompileBenchmark {
+
+    @Param({"convert", "aggregate", "loop"})
+    public String script;
+
+    private String source;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ParserContext.enableSandboxedMode();
+        source = TbelScripts.get(script);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ParserContext.disableSandboxedMode();
+    }
+
+    @Benchmark
+    public Serializable compile() {
+        return MVEL.compileExpression(source, new ParserContext());
+    }
+}
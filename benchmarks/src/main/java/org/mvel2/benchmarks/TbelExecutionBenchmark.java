@@ -0,0 +1,84 @@
+package org.mvel2.benchmarks;
+
+import org.mvel2.ExecutionContext;
+import org.mvel2.MVEL;
+import org.mvel2.ParserContext;
+import org.mvel2.SandboxedParserConfiguration;
+import org.mvel2.optimizers.OptimizerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steady-state execution of an already compiled and optimized TBEL script.
+ * <p>
+ * With {@code memoryAccounting=true} the script runs through {@link MVEL#executeTbExpression} with a
+ * memory-limited {@link ExecutionContext}, which is how the platform executes user scripts. With
+ * {@code memoryAccounting=false} the same compiled script is executed through {@link MVEL#executeExpression}
+ * without an execution context, which gives the unsandboxed baseline.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TbelExecutionBenchmark {
+
+    @Param({"convert", "aggregate", "loop"})
+    public String script;
+
+    @Param({"reflective", "ASM", "dynamic"})
+    public String optimizer;
+
+    @Param({"true", "false"})
+    public boolean memoryAccounting;
+
+    @Param({"100"})
+    public int valuesCount;
+
+    @Param({"5000000"})
+    public long maxAllowedMemory;
+
+    private SandboxedParserConfiguration parserConfig;
+
+    private Serializable compiled;
+
+    private Map<String, Object> inputs;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        OptimizerFactory.setDefaultOptimizer(optimizer);
+        parserConfig = ParserContext.enableSandboxedMode();
+        compiled = MVEL.compileExpression(TbelScripts.get(script), new ParserContext());
+        inputs = TbelScripts.inputs(valuesCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ParserContext.disableSandboxedMode();
+    }
+
+    @Benchmark
+    public Object execute() {
+        if (memoryAccounting) {
+            return MVEL.executeTbExpression(compiled, new ExecutionContext(parserConfig, maxAllowedMemory), inputs);
+        } else {
+            return MVEL.executeExpression(compiled, inputs);
+        }
+    }
+}
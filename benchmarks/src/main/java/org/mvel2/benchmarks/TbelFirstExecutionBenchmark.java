@@ -0,0 +1,87 @@
+package org.mvel2.benchmarks;
+
+import org.mvel2.ExecutionContext;
+import org.mvel2.MVEL;
+import org.mvel2.ParserContext;
+import org.mvel2.SandboxedParserConfiguration;
+import org.mvel2.optimizers.OptimizerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * First execution of a freshly compiled TBEL script, i.e. the cost paid while the accessor
+ * optimizer builds (and, for ASM, generates) the accessors of every node.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 200, batchSize = 1)
+@Measurement(iterations = 1000, batchSize = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TbelFirstExecutionBenchmark {
+
+    @Param({"convert", "aggregate", "loop"})
+    public String script;
+
+    @Param({"reflective", "ASM", "dynamic"})
+    public String optimizer;
+
+    @Param({"true", "false"})
+    public boolean memoryAccounting;
+
+    @Param({"100"})
+    public int valuesCount;
+
+    @Param({"5000000"})
+    public long maxAllowedMemory;
+
+    private SandboxedParserConfiguration parserConfig;
+
+    private String source;
+
+    private Serializable compiled;
+
+    private Map<String, Object> inputs;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        OptimizerFactory.setDefaultOptimizer(optimizer);
+        parserConfig = ParserContext.enableSandboxedMode();
+        source = TbelScripts.get(script);
+        inputs = TbelScripts.inputs(valuesCount);
+    }
+
+    @Setup(Level.Invocation)
+    public void compile() {
+        compiled = MVEL.compileExpression(source, new ParserContext());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ParserContext.disableSandboxedMode();
+    }
+
+    @Benchmark
+    public Object firstExecution() {
+        if (memoryAccounting) {
+            return MVEL.executeTbExpression(compiled, new ExecutionContext(parserConfig, maxAllowedMemory), inputs);
+        } else {
+            return MVEL.executeExpression(compiled, inputs);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.mvel2.benchmarks;
+
+import org.mvel2.ExecutionContext;
+import org.mvel2.MVEL;
+import org.mvel2.ParserContext;
+import org.mvel2.SandboxedParserConfiguration;
+import org.mvel2.optimizers.OptimizerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the sandbox memory accounting for a loop-heavy script, compared with executing the
+ * same compiled script without an {@link ExecutionContext}.
+ * <p>
+ * The script declares {@code globals} variables and then calls a function in a loop, so every iteration
+ * assigns variables and enters and leaves a stack level. The sandboxed score should stay within a constant
+ * factor of the unsandboxed one regardless of the number of declared variables.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TbelSandboxOverheadBenchmark {
+
+    @Param({"10", "1000"})
+    public int globals;
+
+    @Param({"1000"})
+    public int iterations;
+
+    @Param({"reflective"})
+    public String optimizer;
+
+    private SandboxedParserConfiguration parserConfig;
+
+    private Serializable compiled;
+
+    private Map<String, Object> inputs;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        OptimizerFactory.setDefaultOptimizer(optimizer);
+        parserConfig = ParserContext.enableSandboxedMode();
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < globals; i++) {
+            script.append("var g").append(i).append(" = ").append(i).append(";\n");
+        }
+        script.append("function scale(x) {\n")
+                .append("    var y = x * 2;\n")
+                .append("    return y + 1;\n")
+                .append("}\n")
+                .append("var sum = 0;\n")
+                .append("for (var i = 0; i < iterations; i++) {\n")
+                .append("    var v = scale(i);\n")
+                .append("    sum += v;\n")
+                .append("}\n")
+                .append("return sum;");
+        compiled = MVEL.compileExpression(script.toString(), new ParserContext());
+        inputs = new HashMap<>();
+        inputs.put("iterations", iterations);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ParserContext.disableSandboxedMode();
+    }
+
+    @Benchmark
+    public Object sandboxed() {
+        return MVEL.executeTbExpression(compiled, new ExecutionContext(parserConfig, 5000000), inputs);
+    }
+
+    @Benchmark
+    public Object unsandboxed() {
+        return MVEL.executeExpression(compiled, inputs);
+    }
+}
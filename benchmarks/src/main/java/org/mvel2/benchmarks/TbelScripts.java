@@ -0,0 +1,100 @@
+package org.mvel2.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typical telemetry-transform scripts and the inputs they are executed against.
+ */
+public final class TbelScripts {
+
+    public static final String CONVERT = "" +
+            "var temperatureF = msg.temperature * 1.8 + 32;\n" +
+            "var result = {temperatureF: temperatureF, humidity: msg.humidity, deviceName: metadata.deviceName};\n" +
+            "if (msg.humidity > 80) {\n" +
+            "    result.alarm = 'HIGH_HUMIDITY';\n" +
+            "}\n" +
+            "return {msg: result, metadata: metadata, msgType: msgType};";
+
+    public static final String AGGREGATE = "" +
+            "var sum = 0.0;\n" +
+            "var min = msg.readings[0];\n" +
+            "var max = msg.readings[0];\n" +
+            "foreach (v : msg.readings) {\n" +
+            "    sum += v;\n" +
+            "    if (v < min) { min = v; }\n" +
+            "    if (v > max) { max = v; }\n" +
+            "}\n" +
+            "return {avg: sum / msg.readings.size(), min: min, max: max};";
+
+    public static final String LOOP = "" +
+            "var points = [];\n" +
+            "for (var i = 0; i < msg.readings.size(); i++) {\n" +
+            "    var point = {ts: msg.ts + i * 1000, value: msg.readings[i]};\n" +
+            "    points.add(point);\n" +
+            "}\n" +
+            "return points;";
+
+    /**
+     * Classifies the readings with chained ternaries in a function called once per reading. The ternary operator is
+     * reduced on the runtime stack of the interpreter, and every call of the function executes its body on a stack
+     * of its own.
+     */
+    public static final String CLASSIFY = "" +
+            "function level(v) {\n" +
+            "    return v > 23 ? 'high' : v > 22 ? 'medium' : v > 21 ? 'low' : 'none';\n" +
+            "}\n" +
+            "var high = 0;\n" +
+            "var medium = 0;\n" +
+            "var low = 0;\n" +
+            "foreach (v : msg.readings) {\n" +
+            "    var l = level(v);\n" +
+            "    high += l == 'high' ? 1 : 0;\n" +
+            "    medium += l == 'medium' ? 1 : 0;\n" +
+            "    low += l == 'low' ? 1 : 0;\n" +
+            "}\n" +
+            "return {high: high, medium: medium, low: low};";
+
+    private TbelScripts() {
+    }
+
+    public static String get(String name) {
+        switch (name) {
+            case "convert":
+                return CONVERT;
+            case "aggregate":
+                return AGGREGATE;
+            case "loop":
+                return LOOP;
+            case "classify":
+                return CLASSIFY;
+            default:
+                throw new IllegalArgumentException("Unknown script: " + name);
+        }
+    }
+
+    public static Map<String, Object> inputs(int valuesCount) {
+        Map<String, Object> msg = new LinkedHashMap<>();
+        msg.put("temperature", 21.5);
+        msg.put("humidity", 85);
+        msg.put("ts", 1700000000000L);
+        List<Object> values = new ArrayList<>(valuesCount);
+        for (int i = 0; i < valuesCount; i++) {
+            values.add(20.0 + (i % 17) * 0.25);
+        }
+        msg.put("readings", values);
+
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("deviceName", "Thermostat A");
+        metadata.put("deviceType", "thermostat");
+
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("msg", msg);
+        vars.put("metadata", metadata);
+        vars.put("msgType", "POST_TELEMETRY_REQUEST");
+        return vars;
+    }
+}
@@ -0,0 +1,79 @@
+package org.mvel2.benchmarks;
+
+import org.mvel2.ExecutionContext;
+import org.mvel2.MVEL;
+import org.mvel2.ParserContext;
+import org.mvel2.SandboxedParserConfiguration;
+import org.mvel2.optimizers.OptimizerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steady-state execution of a script that keeps the runtime stack of the interpreter busy: chained ternaries, which
+ * are reduced on the stack, in a function called once per reading, which executes its body on a nested stack.
+ * <p>
+ * Meant to be run with the GC profiler, so that the allocation rate per operation shows what the operand stack
+ * costs:
+ * <pre>
+ *     java -jar benchmarks/target/benchmarks.jar TbelStackBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TbelStackBenchmark {
+
+    @Param({"classify"})
+    public String script;
+
+    @Param({"reflective", "dynamic"})
+    public String optimizer;
+
+    @Param({"100"})
+    public int valuesCount;
+
+    @Param({"5000000"})
+    public long maxAllowedMemory;
+
+    private SandboxedParserConfiguration parserConfig;
+
+    private Serializable compiled;
+
+    private Map<String, Object> inputs;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        OptimizerFactory.setDefaultOptimizer(optimizer);
+        parserConfig = ParserContext.enableSandboxedMode();
+        compiled = MVEL.compileExpression(TbelScripts.get(script), new ParserContext());
+        inputs = TbelScripts.inputs(valuesCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ParserContext.disableSandboxedMode();
+    }
+
+    @Benchmark
+    public Object execute() {
+        return MVEL.executeTbExpression(compiled, new ExecutionContext(parserConfig, maxAllowedMemory), inputs);
+    }
+}
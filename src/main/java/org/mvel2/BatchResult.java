@@ -0,0 +1,70 @@
+package org.mvel2;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a batch: for each input, in input order, either its result or the error it failed with.
+ *
+ * @see MVEL#executeBatch(Object, ExecutionContext, List)
+ * @see MVEL#compileBatch(List, ParserConfiguration, java.util.concurrent.ForkJoinPool)
+ */
+public class BatchResult {
+
+    private final Object[] results;
+
+    private final Throwable[] errors;
+
+    BatchResult(int size) {
+        this.results = new Object[size];
+        this.errors = new Throwable[size];
+    }
+
+    void setResult(int index, Object result) {
+        this.results[index] = result;
+    }
+
+    void setError(int index, Throwable error) {
+        this.errors[index] = error;
+    }
+
+    public int size() {
+        return results.length;
+    }
+
+    /**
+     * Returns the result for the input at the index, or {@code null} if it failed.
+     */
+    public Object getResult(int index) {
+        return results[index];
+    }
+
+    /**
+     * Returns the error the input at the index failed with, or {@code null} if it succeeded.
+     */
+    public Throwable getError(int index) {
+        return errors[index];
+    }
+
+    public boolean isSuccess(int index) {
+        return errors[index] == null;
+    }
+
+    public int getErrorCount() {
+        int count = 0;
+        for (Throwable error : errors) {
+            if (error != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the results in input order, with {@code null} for the inputs that failed.
+     */
+    public List<Object> getResults() {
+        return Collections.unmodifiableList(Arrays.asList(results));
+    }
+}
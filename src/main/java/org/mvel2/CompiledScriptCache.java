@@ -0,0 +1,295 @@
+package org.mvel2;
+
+import org.mvel2.ast.ASTNode;
+import org.mvel2.ast.BlockNode;
+import org.mvel2.ast.NestedStatement;
+import org.mvel2.compiler.CompiledExpression;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of compiled scripts.
+ * <p>
+ * Scripts are keyed by their source text and the parser configuration they are compiled with. The configuration
+ * is compared by identity: configurations are mutable and have no value equality, so two distinct configurations
+ * never share compiled scripts. Each entry is weighted by the number of AST nodes of the compiled script plus
+ * {@value #ACCESSOR_CLASS_WEIGHT} for each accessor class generated for it, and the least recently used entries are
+ * evicted once the total weight exceeds the configured maximum. Accessor classes are generated while the script
+ * runs, so the weight of an entry is updated each time it is looked up. The accessor classes generated for an
+ * evicted or invalidated script are released with it.
+ */
+public class CompiledScriptCache {
+
+    /**
+     * The weight of a generated accessor class, relative to the weight of one AST node.
+     */
+    public static final int ACCESSOR_CLASS_WEIGHT = 16;
+
+    private final long maxWeight;
+
+    /**
+     * The configuration of the scripts compiled without one outside of sandboxed mode.
+     */
+    private final ParserConfiguration defaultConfiguration = new ParserConfiguration();
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long weight = 0;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public CompiledScriptCache(long maxWeight) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("maxWeight must be positive: " + maxWeight);
+        }
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Returns the compiled script for the source, compiling it on a miss with the sandboxed configuration in
+     * sandboxed mode, and otherwise with the default configuration of this cache.
+     */
+    public Serializable compile(String script) {
+        ParserConfiguration parserConfiguration = ParserContext.getSandboxedParserConfiguration();
+        return compile(script, parserConfiguration != null ? parserConfiguration : defaultConfiguration);
+    }
+
+    /**
+     * Returns the compiled script for the source and configuration, compiling it on a miss.
+     */
+    public Serializable compile(String script, ParserConfiguration parserConfiguration) {
+        Key key = new Key(script, parserConfiguration);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hitCount.incrementAndGet();
+                reweigh(entry);
+                return entry.compiled;
+            }
+        }
+        missCount.incrementAndGet();
+        ParserContext parserContext = new ParserContext(parserConfiguration);
+        Serializable compiled = MVEL.compileExpression(script, parserContext);
+        Entry entry = new Entry(compiled, parserContext, weigh(compiled));
+        synchronized (entries) {
+            Entry existing = entries.get(key);
+            if (existing != null) {
+                return existing.compiled;
+            }
+            entries.put(key, entry);
+            weight += entry.weight;
+            evictIfNeeded();
+        }
+        return compiled;
+    }
+
+    /**
+     * Returns the cached compiled script, or {@code null} if the script is not cached.
+     */
+    public Serializable getIfPresent(String script, ParserConfiguration parserConfiguration) {
+        synchronized (entries) {
+            Entry entry = entries.get(new Key(script, parserConfiguration));
+            if (entry != null) {
+                hitCount.incrementAndGet();
+                reweigh(entry);
+                return entry.compiled;
+            }
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    public void invalidate(String script, ParserConfiguration parserConfiguration) {
+        synchronized (entries) {
+            Entry entry = entries.remove(new Key(script, parserConfiguration));
+            if (entry != null) {
+                weight -= entry.weight;
+                entry.release();
+            }
+        }
+    }
+
+    /**
+     * Writes the scripts cached for the configuration to a {@link CompiledScriptSnapshot} file.
+     *
+     * @return the number of scripts written
+     */
+    public int writeSnapshot(Path file, ParserConfiguration parserConfiguration) throws IOException {
+        Map<String, Serializable> scripts = new LinkedHashMap<>();
+        synchronized (entries) {
+            for (Map.Entry<Key, Entry> entry : entries.entrySet()) {
+                if (entry.getKey().parserConfiguration == parserConfiguration) {
+                    scripts.put(entry.getKey().script, entry.getValue().compiled);
+                }
+            }
+        }
+        return CompiledScriptSnapshot.write(file, scripts);
+    }
+
+    /**
+     * Adds the scripts of a {@link CompiledScriptSnapshot} file to the cache for the configuration, keeping the
+     * scripts already cached. Restored scripts do not count as misses.
+     *
+     * @return the number of scripts restored
+     */
+    public int restoreSnapshot(Path file, ParserConfiguration parserConfiguration) throws IOException {
+        int restored = 0;
+        for (Map.Entry<String, CompiledScriptSnapshot.Restored> snapshotEntry :
+                CompiledScriptSnapshot.readEntries(file, parserConfiguration).entrySet()) {
+            Serializable compiled = snapshotEntry.getValue().compiled;
+            ParserContext parserContext = snapshotEntry.getValue().parserContext;
+            if (parserContext == null) {
+                parserContext = new ParserContext(parserConfiguration);
+            }
+            Entry entry = new Entry(compiled, parserContext, weigh(compiled));
+            Key key = new Key(snapshotEntry.getKey(), parserConfiguration);
+            synchronized (entries) {
+                if (entries.putIfAbsent(key, entry) == null) {
+                    weight += entry.weight;
+                    restored++;
+                    evictIfNeeded();
+                }
+            }
+        }
+        return restored;
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.values().forEach(Entry::release);
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getWeight() {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Updates the weight of the entry with the accessor classes generated since it was last weighed.
+     */
+    private void reweigh(Entry entry) {
+        long previous = entry.weight;
+        entry.weight = entry.nodeWeight + (long) entry.parserContext.getAccessorClassCount() * ACCESSOR_CLASS_WEIGHT;
+        if (entry.weight != previous) {
+            weight += entry.weight - previous;
+            evictIfNeeded();
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (weight > maxWeight && entries.size() > 1 && it.hasNext()) {
+            Entry evicted = it.next().getValue();
+            it.remove();
+            weight -= evicted.weight;
+            evictionCount.incrementAndGet();
+            evicted.release();
+        }
+    }
+
+    /**
+     * Weight of a compiled script: the number of its AST nodes, including the nodes of nested blocks.
+     */
+    static long weigh(Serializable compiled) {
+        return compiled instanceof CompiledExpression ? Math.max(1, countNodes(((CompiledExpression) compiled).getFirstNode())) : 1;
+    }
+
+    private static long countNodes(ASTNode node) {
+        long count = 0;
+        while (node != null) {
+            count++;
+            if (node instanceof BlockNode) {
+                count += countNested(((BlockNode) node).getCompiledBlock());
+            }
+            if (node instanceof NestedStatement) {
+                count += countNested(((NestedStatement) node).getNestedStatement());
+            }
+            node = node.nextASTNode;
+        }
+        return count;
+    }
+
+    private static long countNested(Object statement) {
+        return statement instanceof CompiledExpression ? countNodes(((CompiledExpression) statement).getFirstNode()) : 0;
+    }
+
+    private static final class Key {
+        private final String script;
+        private final ParserConfiguration parserConfiguration;
+        private final int hash;
+
+        Key(String script, ParserConfiguration parserConfiguration) {
+            this.script = script;
+            this.parserConfiguration = parserConfiguration;
+            this.hash = 31 * script.hashCode() + System.identityHashCode(parserConfiguration);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return parserConfiguration == key.parserConfiguration && script.equals(key.script);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        private final Serializable compiled;
+        private final ParserContext parserContext;
+        private final long nodeWeight;
+        private long weight;
+
+        Entry(Serializable compiled, ParserContext parserContext, long nodeWeight) {
+            this.compiled = compiled;
+            this.parserContext = parserContext;
+            this.nodeWeight = nodeWeight;
+            this.weight = nodeWeight;
+        }
+
+        /**
+         * Releases the accessor classes generated for the script, even if the compiled script is still referenced.
+         */
+        void release() {
+            parserContext.releaseAccessorClassLoader();
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package org.mvel2;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+import java.util.logging.Logger;
+
+/**
+ * A versioned file of compiled scripts, so that a restarting process restores its scripts instead of compiling
+ * them again.
+ * <p>
+ * The file starts with a magic number, the format version and the number of entries. Each entry holds its key and
+ * the compiled script, serialized on its own, so that an entry that cannot be restored does not affect the others.
+ * The file is memory-mapped on load. Entries that cannot be serialized are left out of the file.
+ * <p>
+ * Reading only accepts the classes compiled scripts are made of: the AST, compiler and utility classes of MVEL, the
+ * JDK value, collection and regular expression types held by literals, and the classes imported by the parser configuration passed on
+ * load. Any other class in an entry rejects that entry, which is logged.
+ * <p>
+ * The parser configuration the scripts are compiled with is not written: it holds the class loader, the imports and
+ * the sandbox checks of the running process, and is substituted with the configuration passed on load. The
+ * accessors optimized for a script are not written either: they are transient, and are created again on the first
+ * executions of the restored script.
+ *
+ * @see CompiledScriptCache#writeSnapshot(Path, ParserConfiguration)
+ * @see CompiledScriptCache#restoreSnapshot(Path, ParserConfiguration)
+ */
+public final class CompiledScriptSnapshot {
+
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x4D56534E;
+
+    private static final int HEADER_SIZE = 12;
+
+    private static final Logger LOG = Logger.getLogger(CompiledScriptSnapshot.class.getName());
+
+    private static final Set<String> MVEL_PACKAGES = Set.of(
+            "org.mvel2.ast", "org.mvel2.compiler", "org.mvel2.util");
+
+    private static final Set<Class<?>> JDK_TYPES = Set.of(
+            Object.class, Class.class, String.class, Number.class, Boolean.class, Character.class, Byte.class,
+            Short.class, Integer.class, Long.class, Float.class, Double.class, BigDecimal.class, BigInteger.class,
+            Enum.class, Collection.class, List.class, Set.class, Map.class, Map.Entry.class,
+            ArrayList.class, HashMap.class, LinkedHashMap.class, HashSet.class, LinkedHashSet.class, Pattern.class);
+
+    private CompiledScriptSnapshot() {
+    }
+
+    /**
+     * Writes the compiled scripts to the file, replacing it atomically if it exists. A script that cannot be
+     * serialized, for instance because it holds a value of a class that is not serializable, is logged and left out,
+     * and the caller compiles it again after a restart.
+     *
+     * @return the number of scripts written
+     */
+    public static int write(Path file, Map<String, ? extends Serializable> scripts) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            int count = 0;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(0);
+                ByteArrayOutputStream blob = new ByteArrayOutputStream();
+                for (Map.Entry<String, ? extends Serializable> entry : scripts.entrySet()) {
+                    blob.reset();
+                    try (SnapshotOutputStream objects = new SnapshotOutputStream(blob)) {
+                        objects.writeObject(entry.getValue());
+                    }
+                    catch (IOException e) {
+                        LOG.log(Level.WARNING, "compiled script left out of snapshot " + file + ": " + entry.getKey(), e);
+                        continue;
+                    }
+                    byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(key.length);
+                    out.write(key);
+                    out.writeInt(blob.size());
+                    blob.writeTo(out);
+                    count++;
+                }
+            }
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(4).putInt(0, count);
+                channel.write(header, HEADER_SIZE - 4);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return count;
+        }
+        finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Reads the compiled scripts from the file, in the order they were written. Entries that cannot be restored,
+     * for instance because a class they reference has changed, are left out, and the caller compiles them again.
+     *
+     * @param parserConfiguration the configuration the restored scripts execute with
+     * @throws IOException if the file cannot be read, or is not a snapshot of this version
+     */
+    public static Map<String, Serializable> read(Path file, ParserConfiguration parserConfiguration) throws IOException {
+        Map<String, Serializable> scripts = new LinkedHashMap<>();
+        for (Map.Entry<String, Restored> entry : readEntries(file, parserConfiguration).entrySet()) {
+            scripts.put(entry.getKey(), entry.getValue().compiled);
+        }
+        return scripts;
+    }
+
+    static Map<String, Restored> readEntries(Path file, ParserConfiguration parserConfiguration) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("not a compiled script snapshot: " + file);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported compiled script snapshot version " + version + ": " + file);
+        }
+        int count = buffer.getInt();
+        Map<String, Restored> entries = new LinkedHashMap<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                byte[] key = new byte[buffer.getInt()];
+                buffer.get(key);
+                int length = buffer.getInt();
+                ByteBuffer blob = buffer.slice();
+                blob.limit(length);
+                buffer.position(buffer.position() + length);
+
+                SnapshotInputStream objects;
+                Object compiled;
+                try {
+                    objects = new SnapshotInputStream(new ByteBufferInputStream(blob), parserConfiguration);
+                    compiled = objects.readObject();
+                }
+                catch (IOException | ClassNotFoundException | ClassCastException e) {
+                    LOG.log(Level.WARNING, "compiled script not restored from snapshot " + file + ": "
+                            + new String(key, StandardCharsets.UTF_8), e);
+                    continue;
+                }
+                entries.put(new String(key, StandardCharsets.UTF_8), new Restored((Serializable) compiled, objects.parserContext));
+            }
+        }
+        catch (RuntimeException e) {
+            throw new IOException("truncated compiled script snapshot: " + file, e);
+        }
+        return entries;
+    }
+
+    static final class Restored {
+        final Serializable compiled;
+
+        /**
+         * A context the script was compiled with, or {@code null} if the script references none.
+         */
+        final ParserContext parserContext;
+
+        Restored(Serializable compiled, ParserContext parserContext) {
+            this.compiled = compiled;
+            this.parserContext = parserContext;
+        }
+    }
+
+    /**
+     * Stands for the parser configuration in the written scripts.
+     */
+    private static final class ConfigurationPlaceholder implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        static final ConfigurationPlaceholder INSTANCE = new ConfigurationPlaceholder();
+    }
+
+    private static final class SnapshotOutputStream extends ObjectOutputStream {
+
+        SnapshotOutputStream(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) {
+            return obj instanceof ParserConfiguration ? ConfigurationPlaceholder.INSTANCE : obj;
+        }
+    }
+
+    private static final class SnapshotInputStream extends ObjectInputStream {
+        private final ParserConfiguration parserConfiguration;
+
+        private ParserContext parserContext;
+
+        SnapshotInputStream(InputStream in, ParserConfiguration parserConfiguration) throws IOException {
+            super(in);
+            this.parserConfiguration = parserConfiguration;
+            enableResolveObject(true);
+            setObjectInputFilter(this::checkInput);
+        }
+
+        private ObjectInputFilter.Status checkInput(ObjectInputFilter.FilterInfo info) {
+            Class<?> cls = info.serialClass();
+            if (cls == null) {
+                return ObjectInputFilter.Status.UNDECIDED;
+            }
+            while (cls.isArray()) {
+                cls = cls.getComponentType();
+            }
+            return cls.isPrimitive() || isAllowed(cls) ? ObjectInputFilter.Status.ALLOWED : ObjectInputFilter.Status.REJECTED;
+        }
+
+        private boolean isAllowed(Class<?> cls) {
+            if (MVEL_PACKAGES.contains(cls.getPackageName()) || JDK_TYPES.contains(cls)
+                    || cls == ConfigurationPlaceholder.class || ParserConfiguration.class.isAssignableFrom(cls)) {
+                return true;
+            }
+            String name = cls.getName();
+            if (name.equals(ParserContext.class.getName()) || name.startsWith(ParserContext.class.getName() + "$")
+                    || name.equals(IndexedCompiledScript.class.getName())) {
+                return true;
+            }
+            // classes referenced by the scripts, such as the types of new objects and casts
+            return parserConfiguration.getImports().containsValue(cls);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            ClassLoader classLoader = parserConfiguration.getClassLoader();
+            if (classLoader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, classLoader);
+                }
+                catch (ClassNotFoundException e) {
+                    // fall back to the default resolution, which also covers primitive types
+                }
+            }
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) {
+            if (obj instanceof ConfigurationPlaceholder) {
+                return parserConfiguration;
+            }
+            if (obj instanceof ParserContext && parserContext == null) {
+                parserContext = (ParserContext) obj;
+            }
+            return obj;
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
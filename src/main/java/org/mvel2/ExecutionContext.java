@@ -9,24 +9,31 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.math.BigInteger;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.IdentityHashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 public class ExecutionContext implements Serializable {
 
     private final Map<Object, ValueReference> valueReferenceMap = new IdentityHashMap<>();
-    private final Map<VarKey, Object> variablesMap = new HashMap<>();
+
+    /**
+     * Variables assigned in the sandbox, grouped by the stack level they were assigned at,
+     * so that leaving a level only visits the variables of that level.
+     */
+    private VariableFrame[] frames = new VariableFrame[4];
+
+    /**
+     * Number of frames, from the bottom, that were used since the last reset.
+     */
+    private int usedFrames = 0;
 
     private final SandboxedParserConfiguration parserConfig;
     private final long maxAllowedMemory;
@@ -41,6 +48,24 @@ public class ExecutionContext implements Serializable {
 
     private volatile boolean stopped = false;
 
+    /**
+     * The context this one was created from, if any; stopping it stops this one too.
+     */
+    private final transient ExecutionContext template;
+
+    /**
+     * The deadline is compared with {@link System#nanoTime()} once every this many checked instructions.
+     */
+    public static final int DEADLINE_CHECK_INTERVAL = 64;
+
+    private long timeoutNanos = -1;
+    private long deadline;
+    private long maxInstructions = -1;
+    private int maxStackDepth = -1;
+    private boolean budgeted = false;
+
+    private long instructionCount = 0;
+
     public ExecutionContext(SandboxedParserConfiguration parserConfig) {
         this(parserConfig, -1);
     }
@@ -50,19 +75,103 @@ public class ExecutionContext implements Serializable {
     }
 
     public ExecutionContext(SandboxedParserConfiguration parserConfig, long maxAllowedMemory, int maxAllowedMethodArgs) {
+        this(parserConfig, maxAllowedMemory, maxAllowedMethodArgs, null);
+    }
+
+    private ExecutionContext(SandboxedParserConfiguration parserConfig, long maxAllowedMemory, int maxAllowedMethodArgs,
+                             ExecutionContext template) {
+        this.template = template;
         this.parserConfig = parserConfig;
         this.maxAllowedMemory = maxAllowedMemory;
         this.maxAllowedMethodArgs = maxAllowedMethodArgs;
     }
 
+    /**
+     * Creates a context with the configuration, limits and budgets of the template and no execution state. The
+     * timeout, if set, starts now. Stopping the template also stops the executions of this context.
+     */
+    public ExecutionContext(ExecutionContext template) {
+        this(template.parserConfig, template.maxAllowedMemory, template.maxAllowedMethodArgs, template);
+        this.timeoutNanos = template.timeoutNanos;
+        this.deadline = System.nanoTime() + template.timeoutNanos;
+        this.maxInstructions = template.maxInstructions;
+        this.maxStackDepth = template.maxStackDepth;
+        this.updateBudgeted();
+    }
+
     public int nextId() {
         return this.idSequence.incrementAndGet();
     }
 
+    /**
+     * Called on every loop iteration and function call of the script. Throws {@link ScriptExecutionStoppedException}
+     * if the execution was stopped or has run out of its time or instruction budget.
+     */
     public void checkExecution() {
-        if (stopped) {
+        if (isStopped()) {
             throw new ScriptExecutionStoppedException("Script execution is stopped!");
         }
+        if (budgeted) {
+            long count = ++instructionCount;
+            if (maxInstructions >= 0 && count > maxInstructions) {
+                throw new ScriptExecutionStoppedException("Script execution instruction limit exceeded (" + maxInstructions + ")!",
+                        ScriptExecutionStoppedException.Reason.INSTRUCTION_LIMIT);
+            }
+            if (timeoutNanos >= 0 && count % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+                throw new ScriptExecutionStoppedException("Script execution timed out (" + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms)!",
+                        ScriptExecutionStoppedException.Reason.TIMEOUT);
+            }
+        }
+    }
+
+    /**
+     * Throws {@link ScriptExecutionStoppedException} if the execution was stopped or has timed out, without counting
+     * an instruction. Called from long-running operations of a single instruction, such as regular expression
+     * matching.
+     */
+    public void checkStopped() {
+        if (isStopped()) {
+            throw new ScriptExecutionStoppedException("Script execution is stopped!");
+        }
+        if (timeoutNanos >= 0 && System.nanoTime() - deadline > 0) {
+            throw new ScriptExecutionStoppedException("Script execution timed out (" + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms)!",
+                    ScriptExecutionStoppedException.Reason.TIMEOUT);
+        }
+    }
+
+    /**
+     * Stops the execution once the timeout has elapsed from now. The clock is read every
+     * {@link #DEADLINE_CHECK_INTERVAL} loop iterations and function calls, so the script is stopped at the first
+     * such check after the deadline. A negative timeout removes the limit.
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        this.timeoutNanos = timeout < 0 ? -1 : unit.toNanos(timeout);
+        this.deadline = System.nanoTime() + this.timeoutNanos;
+        this.updateBudgeted();
+    }
+
+    /**
+     * Stops the execution after the given number of loop iterations and function calls. A negative value removes
+     * the limit.
+     */
+    public void setMaxInstructions(long maxInstructions) {
+        this.maxInstructions = maxInstructions < 0 ? -1 : maxInstructions;
+        this.updateBudgeted();
+    }
+
+    /**
+     * Stops the execution when function calls nest deeper than the given depth. A negative value removes the limit.
+     */
+    public void setMaxStackDepth(int maxStackDepth) {
+        this.maxStackDepth = maxStackDepth < 0 ? -1 : maxStackDepth;
+    }
+
+    public long getInstructionCount() {
+        return instructionCount;
+    }
+
+    private void updateBudgeted() {
+        this.budgeted = this.timeoutNanos >= 0 || this.maxInstructions >= 0;
     }
 
     public Object[] checkInvocation(Method method, Object ctx, Object[] args) {
@@ -80,14 +189,62 @@ public class ExecutionContext implements Serializable {
         this.stopped = true;
     }
 
+    /**
+     * Returns whether this context, or the context it was created from, was stopped.
+     */
+    public boolean isStopped() {
+        return stopped || (template != null && template.isStopped());
+    }
+
+    /**
+     * Clears the state left by the previous execution so that the context can run another script on the same
+     * thread: variables, memory accounting, the id sequence, the stop flag and the instruction count. The limits are
+     * kept and the timeout, if set, restarts now. Only the variable frames up to the deepest stack level that assigned
+     * variables since the last reset are visited, and the value references are only cleared if the previous execution
+     * registered any. Values created by the previous execution must not be modified after the reset, since they would
+     * be accounted to the next one.
+     */
+    public void reset() {
+        for (int level = 0; level < usedFrames; level++) {
+            VariableFrame frame = frames[level];
+            if (frame != null && !frame.isEmpty()) {
+                frame.clear();
+            }
+        }
+        this.usedFrames = 0;
+        if (!valueReferenceMap.isEmpty()) {
+            valueReferenceMap.clear();
+        }
+        this.stackLevel = 0;
+        this.memorySize = 0;
+        this.idSequence.set(0);
+        this.instructionCount = 0;
+        this.stopped = false;
+        if (this.timeoutNanos >= 0) {
+            this.deadline = System.nanoTime() + this.timeoutNanos;
+        }
+    }
+
     public void enterStack() {
         this.stackLevel++;
+        if (maxStackDepth >= 0 && this.stackLevel > maxStackDepth) {
+            throw new ScriptExecutionStoppedException("Script execution stack depth exceeded (" + maxStackDepth + ")!",
+                    ScriptExecutionStoppedException.Reason.STACK_DEPTH);
+        }
+        this.checkExecution();
     }
 
     public void leaveStack() {
         int level = this.stackLevel;
-        List<VarKey> keysToRemove = variablesMap.keySet().stream().filter(varKey -> varKey.level == level).collect(Collectors.toList());
-        keysToRemove.forEach(key -> this.checkAssignVariable(key, null));
+        if (level < frames.length) {
+            VariableFrame frame = frames[level];
+            if (frame != null && !frame.isEmpty()) {
+                for (VariableSlot slot : frame.values()) {
+                    this.releaseSlot(slot);
+                }
+                frame.clear();
+            }
+        }
         this.stackLevel--;
     }
 
@@ -107,44 +264,86 @@ public class ExecutionContext implements Serializable {
     }
 
     public Object checkAssignGlobalVariable(String varName, Object value) {
-        return this.checkAssignVariable(new VarKey(0, varName), value);
+        return this.checkAssignVariable(0, varName, value);
     }
 
     public Object checkAssignLocalVariable(String varName, Object value) {
-        return this.checkAssignVariable(new VarKey(this.stackLevel, varName), value);
+        return this.checkAssignVariable(this.stackLevel, varName, value);
     }
 
-    private Object checkAssignVariable(VarKey varKey, Object value) {
-        if (this.variablesMap.containsKey(varKey)) {
-            Object prevValue = this.variablesMap.get(varKey);
-            ValueReference reference = valueReferenceMap.get(prevValue);
-            if (reference != null) {
-                if (reference.removeReference(varKey)) {
-                    valueReferenceMap.remove(prevValue);
-                    memorySize -= reference.getSize();
-                }
+    private Object checkAssignVariable(int level, String varName, Object value) {
+        VariableFrame frame = this.getFrame(level);
+        VariableSlot slot = frame.get(varName);
+        if (slot != null) {
+            if (value != null && slot.value == value) {
+                return value;
             }
+            this.releaseSlot(slot);
         }
         if (value != null) {
             Object converted = convertValue(value);
-            this.variablesMap.put(varKey, converted);
-            ValueReference reference = valueReferenceMap.computeIfAbsent(value, o -> {
-                ValueReference newReference = new ValueReference();
-                newReference.setSize(getValueSize(converted));
-                memorySize += newReference.getSize();
-                return newReference;
-            });
-            reference.addReference(varKey);
+            if (slot == null) {
+                slot = new VariableSlot();
+                frame.put(varName, slot);
+            }
+            slot.value = converted;
+            if (isScalarValue(converted)) {
+                slot.size = getValueSize(converted);
+                memorySize += slot.size;
+            } else {
+                ValueReference reference = valueReferenceMap.get(converted);
+                if (reference == null) {
+                    reference = new ValueReference();
+                    reference.setSize(getValueSize(converted));
+                    memorySize += reference.getSize();
+                    valueReferenceMap.put(converted, reference);
+                }
+                reference.addReference();
+                slot.reference = reference;
+            }
             value = converted;
-        } else {
-            this.variablesMap.remove(varKey);
+        } else if (slot != null) {
+            frame.remove(varName);
         }
         this.checkMemoryLimit();
         return value;
     }
 
+    private VariableFrame getFrame(int level) {
+        if (level >= frames.length) {
+            frames = Arrays.copyOf(frames, Math.max(level + 1, frames.length * 2));
+        }
+        if (level >= usedFrames) {
+            usedFrames = level + 1;
+        }
+        VariableFrame frame = frames[level];
+        if (frame == null) {
+            frame = new VariableFrame();
+            frames[level] = frame;
+        }
+        return frame;
+    }
+
+    private void releaseSlot(VariableSlot slot) {
+        ValueReference reference = slot.reference;
+        if (reference != null) {
+            if (reference.removeReference()) {
+                valueReferenceMap.remove(slot.value);
+                memorySize -= reference.getSize();
+            }
+            slot.reference = null;
+        } else {
+            memorySize -= slot.size;
+        }
+        slot.size = 0;
+        slot.value = null;
+    }
+
     public long onValRemove(ExecutionObject obj, Object key, Object val) {
-        long valSize = getValueSize(key) + getValueSize(val);
+        return onValRemove(obj, getValueSize(key) + getValueSize(val));
+    }
+
+    public long onValRemove(ExecutionObject obj, long valSize) {
         ValueReference reference = valueReferenceMap.get(obj);
         if (reference != null) {
             reference.setSize(reference.getSize() - valSize);
@@ -154,7 +353,33 @@ public class ExecutionContext implements Serializable {
     }
 
     public long onValAdd(ExecutionObject obj, Object key, Object val) {
-        long valSize = getValueSize(key) + getValueSize(val);
+        return onValAdd(obj, getValueSize(key) + getValueSize(val));
+    }
+
+    /**
+     * Accounts for a range of list elements added at consecutive indexes, with a single memory limit check.
+     */
+    public long onValsAdd(ExecutionObject obj, int fromIndex, Collection<?> vals) {
+        return onValAdd(obj, getRangeSize(fromIndex, vals));
+    }
+
+    /**
+     * Accounts for a range of list elements removed from consecutive indexes.
+     */
+    public long onValsRemove(ExecutionObject obj, int fromIndex, Collection<?> vals) {
+        return onValRemove(obj, getRangeSize(fromIndex, vals));
+    }
+
+    private long getRangeSize(int fromIndex, Collection<?> vals) {
+        long size = 0;
+        int index = fromIndex;
+        for (Object val : vals) {
+            size += getValueSize(index++) + getValueSize(val);
+        }
+        return size;
+    }
+
+    public long onValAdd(ExecutionObject obj, long valSize) {
         ValueReference reference = valueReferenceMap.get(obj);
         if (reference != null) {
             reference.setSize(reference.getSize() + valSize);
@@ -166,7 +391,13 @@ public class ExecutionContext implements Serializable {
 
     public void dumpVars() {
         System.out.println("VARS:");
-        variablesMap.forEach((key, value) -> System.out.println(key + " = " + value));
+        for (int level = 0; level < frames.length; level++) {
+            VariableFrame frame = frames[level];
+            if (frame != null) {
+                int varLevel = level;
+                frame.forEach((name, slot) -> System.out.println("[" + varLevel + "] " + name + " = " + slot.value));
+            }
+        }
     }
 
     public void dumpValueReferences() {
@@ -182,6 +413,14 @@ public class ExecutionContext implements Serializable {
         return maxAllowedMemory;
     }
 
+    public int getMaxAllowedMethodArgs() {
+        return maxAllowedMethodArgs;
+    }
+
+    public SandboxedParserConfiguration getParserConfiguration() {
+        return parserConfig;
+    }
+
     private void checkMemoryLimit() {
         if (maxAllowedMemory > 0 && memorySize > maxAllowedMemory) {
             throw new ScriptMemoryOverflowException("Script memory overflow (" + memorySize + " > " + maxAllowedMemory + ")!");
@@ -195,6 +434,14 @@ public class ExecutionContext implements Serializable {
         return value;
     }
 
+    /**
+     * Boxed primitives are immutable, small and usually freshly boxed on every assignment,
+     * so they are accounted per variable instead of being shared by identity.
+     */
+    private static boolean isScalarValue(Object value) {
+        return value instanceof Number && !(value instanceof BigInteger) || value instanceof Boolean || value instanceof Character;
+    }
+
     private long getValueSize(Object value) {
         if (value == null) {
             return 0;
@@ -209,7 +456,7 @@ public class ExecutionContext implements Serializable {
                 return ((ExecutionObject) value).memorySize();
             }
         } else if (value instanceof String) {
-            return ((String) value).getBytes().length;
+            return stringSize((String) value);
         } else if (value instanceof Byte) {
             return 1;
         } else if (value instanceof Character) {
@@ -239,6 +486,31 @@ public class ExecutionContext implements Serializable {
         }
     }
 
+    /**
+     * Returns the UTF-8 encoded length of the string without encoding it.
+     */
+    static long stringSize(String value) {
+        int length = value.length();
+        long size = length;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                size += 1;
+            } else if (Character.isHighSurrogate(c)) {
+                if (i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    size += 2;
+                    i++;
+                }
+            } else if (!Character.isLowSurrogate(c)) {
+                size += 2;
+            }
+        }
+        return size;
+    }
+
     private static int componentTypeSize(Class<?> componentType) {
         if (byte.class.equals(componentType)) {
             return 1;
@@ -261,39 +533,25 @@ public class ExecutionContext implements Serializable {
         }
     }
 
-    private static final class VarKey {
-        private final int level;
-        private final String name;
-        VarKey(int level, String name) {
-            this.level = level;
-            this.name = name;
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            VarKey varKey = (VarKey) o;
-            return level == varKey.level && Objects.equals(name, varKey.name);
-        }
+    private static final class VariableFrame extends HashMap<String, VariableSlot> {
+    }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(level, name);
-        }
+    private static final class VariableSlot {
+        private Object value;
+        private ValueReference reference;
+        private long size;
     }
 
     private static final class ValueReference {
-        private final Set<VarKey> references = new HashSet<>();
+        private int references = 0;
         private long size = 0;
 
-        void addReference(VarKey varKey) {
-            references.add(varKey);
+        void addReference() {
+            references++;
         }
 
-        boolean removeReference(VarKey varKey) {
-            references.remove(varKey);
-            return references.isEmpty();
+        boolean removeReference() {
+            return --references == 0;
         }
 
         public long getSize() {
@@ -0,0 +1,49 @@
+package org.mvel2;
+
+import org.mvel2.integration.VariableResolverFactory;
+import org.mvel2.util.SimpleVariableSpaceModel;
+
+import java.io.Serializable;
+
+/**
+ * A script compiled with its declared inputs allocated to fixed slots, so that the top-level statements access them
+ * by index instead of by name. Nested blocks still look the inputs up by name, and local variables are not given
+ * slots. The compiled expression relies on its slots, and must only be executed with a factory created by the script.
+ *
+ * @see MVEL#compileTbExpression(String, ParserContext, String...)
+ */
+public class IndexedCompiledScript implements Serializable {
+
+    private final Serializable compiledExpression;
+
+    private final String[] inputs;
+
+    private final SimpleVariableSpaceModel variableSpace;
+
+    IndexedCompiledScript(Serializable compiledExpression, String[] inputs, SimpleVariableSpaceModel variableSpace) {
+        this.compiledExpression = compiledExpression;
+        this.inputs = inputs;
+        this.variableSpace = variableSpace;
+    }
+
+    public Serializable getCompiledExpression() {
+        return compiledExpression;
+    }
+
+    /**
+     * Returns the names of the inputs, in the order their values are passed in.
+     */
+    public String[] getInputs() {
+        return inputs.clone();
+    }
+
+    /**
+     * Creates the factory for one execution, with the input values in the slots of the inputs.
+     */
+    VariableResolverFactory createFactory(Object[] values) {
+        if (values.length != inputs.length) {
+            throw new IllegalArgumentException("expected " + inputs.length + " input values, got " + values.length);
+        }
+        return variableSpace.createFactory(values);
+    }
+}
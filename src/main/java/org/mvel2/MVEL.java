@@ -19,8 +19,13 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.mvel2.compiler.CompiledAccExpression;
 import org.mvel2.compiler.CompiledExpression;
@@ -35,6 +40,7 @@ import org.mvel2.integration.impl.ImmutableDefaultFactory;
 import org.mvel2.integration.impl.MapVariableResolverFactory;
 import org.mvel2.optimizers.impl.refl.nodes.GetterAccessor;
 import org.mvel2.util.ArgsRepackUtil;
+import org.mvel2.util.SimpleVariableSpaceModel;
 
 import static java.lang.Boolean.getBoolean;
 import static java.lang.String.valueOf;
@@ -65,6 +71,7 @@ public class MVEL {
   public static boolean COMPILER_OPT_SUPPORT_JAVA_STYLE_CLASS_LITERALS = getBoolean("mvel2.compiler.support_java_style_class_literals");
   public static boolean COMPILER_OPT_ALLOCATE_TYPE_LITERALS_TO_SHARED_SYMBOL_TABLE = getBoolean("mvel2.compiler.allocate_type_literals_to_shared_symbol_table");
   public static boolean RUNTIME_OPT_THREAD_UNSAFE = getBoolean("mvel2.runtime.thread_unsafe");
+  public static boolean RUNTIME_OPT_COMPILE_EXPRESSIONS = getBoolean("mvel2.runtime.compile_expressions");
 
   static boolean OPTIMIZER = true;
 
@@ -952,6 +959,172 @@ public class MVEL {
     return ArgsRepackUtil.unpack(executeExpression(compiledExpression, ctx, vars));
   }
 
+  /**
+   * Compiles a script with the declared inputs allocated to fixed slots. References to the inputs in the top-level
+   * statements of the script are resolved by slot index rather than looked up by name on each access; references in
+   * nested blocks, such as loop and function bodies, are still looked up by name. The local variables the script
+   * declares are not allocated to slots.
+   *
+   * @param expression the script
+   * @param ctx        the parser context, which must not be shared with other scripts
+   * @param inputs     the names of the inputs, in the order their values are passed in
+   * @return the compiled script
+   * @see #executeTbExpression(IndexedCompiledScript, ExecutionContext, Object[])
+   */
+  public static IndexedCompiledScript compileTbExpression(String expression, ParserContext ctx, String... inputs) {
+    ctx.addIndexedInput(inputs);
+    SimpleVariableSpaceModel variableSpace = new SimpleVariableSpaceModel(inputs.clone());
+    return new IndexedCompiledScript(compileExpression(expression, ctx), inputs.clone(), variableSpace);
+  }
+
+  /**
+   * Executes an indexed script like {@link #executeTbExpression(Object, ExecutionContext, Map)}, with the values of
+   * the inputs taken from the map. Only the declared inputs are bound.
+   */
+  public static Object executeTbExpression(final IndexedCompiledScript script, final ExecutionContext ctx, Map vars) {
+    String[] inputs = script.getInputs();
+    Object[] values = new Object[inputs.length];
+    if (vars != null) {
+      for (int i = 0; i < inputs.length; i++) {
+        values[i] = vars.get(inputs[i]);
+      }
+    }
+    return executeTbExpression(script, ctx, values);
+  }
+
+  /**
+   * Executes an indexed script with the values of its inputs, in the order the inputs were declared.
+   */
+  public static Object executeTbExpression(final IndexedCompiledScript script, final ExecutionContext ctx, Object[] inputs) {
+    Object[] values = new Object[inputs.length];
+    for (int i = 0; i < inputs.length; i++) {
+      values[i] = ArgsRepackUtil.repack(ctx, inputs[i]);
+    }
+    return ArgsRepackUtil.unpack(executeExpression(script.getCompiledExpression(), ctx, script.createFactory(values)));
+  }
+
+  /**
+   * Executes a compiled script once per input map, as {@link #executeTbExpression} does, and returns the result or
+   * the error of each execution without aborting the batch when an input fails. Each execution gets an execution
+   * context with the configuration, limits and budgets of the template; the executions share one context, reset
+   * between inputs, and one variable resolver factory. Stopping the template stops the running execution at its
+   * next check and fails the inputs not executed yet with {@link ScriptExecutionStoppedException}.
+   *
+   * @param compiledExpression the compiled script
+   * @param template           the execution context the contexts of the executions are modelled on; it is not
+   *                           used to execute the script itself
+   * @param inputs             the variables of each execution
+   * @return the result or error of each input, in input order
+   */
+  public static BatchResult executeBatch(final Object compiledExpression, final ExecutionContext template,
+                                         List<? extends Map<String, ?>> inputs) {
+    BatchResult result = new BatchResult(inputs.size());
+    executeBatch(compiledExpression, template, inputs, 0, inputs.size(), result);
+    return result;
+  }
+
+  /**
+   * Executes a compiled script once per input map like {@link #executeBatch(Object, ExecutionContext, List)},
+   * splitting the inputs into one contiguous chunk per worker of the pool. Each chunk is executed with its own
+   * execution context and variable resolver factory.
+   */
+  public static BatchResult executeBatch(final Object compiledExpression, final ExecutionContext template,
+                                         final List<? extends Map<String, ?>> inputs, ForkJoinPool pool) {
+    final BatchResult result = new BatchResult(inputs.size());
+    int chunks = Math.min(pool.getParallelism(), inputs.size());
+    List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>(chunks);
+    for (int i = 0; i < chunks; i++) {
+      final int from = (int) ((long) inputs.size() * i / chunks);
+      final int to = (int) ((long) inputs.size() * (i + 1) / chunks);
+      tasks.add(pool.submit(new Runnable() {
+        public void run() {
+          executeBatch(compiledExpression, template, inputs, from, to, result);
+        }
+      }));
+    }
+    for (ForkJoinTask<?> task : tasks) {
+      task.join();
+    }
+    return result;
+  }
+
+  /**
+   * Compiles the sources in parallel on the pool and returns the compiled expression or the compile error of each
+   * source, in source order. Each source is compiled with its own {@link ParserContext} created from the shared
+   * configuration, which must not be modified until the batch is compiled. Sources are handed out to the workers one
+   * at a time, so a few large scripts do not hold up the rest of the batch.
+   *
+   * @param sources             the scripts to compile
+   * @param parserConfiguration the configuration shared by all the scripts
+   * @param pool                the pool the scripts are compiled on; its parallelism bounds the number of
+   *                            concurrent compilations
+   * @return the compiled expression or error of each source
+   */
+  public static BatchResult compileBatch(final List<String> sources, final ParserConfiguration parserConfiguration,
+                                         ForkJoinPool pool) {
+    final BatchResult result = new BatchResult(sources.size());
+    final AtomicInteger next = new AtomicInteger();
+    int workers = Math.min(pool.getParallelism(), sources.size());
+    List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>(workers);
+    for (int w = 0; w < workers; w++) {
+      tasks.add(pool.submit(new Runnable() {
+        public void run() {
+          int i;
+          while ((i = next.getAndIncrement()) < sources.size()) {
+            try {
+              result.setResult(i, compileExpression(sources.get(i), new ParserContext(parserConfiguration)));
+            }
+            catch (RuntimeException e) {
+              result.setError(i, e);
+            }
+            catch (StackOverflowError e) {
+              result.setError(i, e);
+            }
+          }
+        }
+      }));
+    }
+    for (ForkJoinTask<?> task : tasks) {
+      task.join();
+    }
+    return result;
+  }
+
+  private static void executeBatch(Object compiledExpression, ExecutionContext template,
+                                   List<? extends Map<String, ?>> inputs, int from, int to, BatchResult result) {
+    ExecutableStatement stmt = (ExecutableStatement) compiledExpression;
+    ExecutionContext ctx = new ExecutionContext(template);
+    Map<String, Object> variables = new HashMap<String, Object>();
+    CachingMapVariableResolverFactory factory = new CachingMapVariableResolverFactory(variables);
+    for (int i = from; i < to; i++) {
+      if (template.isStopped()) {
+        result.setError(i, new ScriptExecutionStoppedException("Script execution is stopped!"));
+        continue;
+      }
+      if (i != from) {
+        ctx.reset();
+      }
+      factory.clear();
+      factory.setTiltFlag(false);
+      factory.setBreakFlag(false);
+      Map<String, ?> vars = inputs.get(i);
+      try {
+        if (vars != null) {
+          for (Map.Entry<String, ?> var : vars.entrySet()) {
+            variables.put(var.getKey(), ArgsRepackUtil.repack(ctx, var.getValue()));
+          }
+        }
+        result.setResult(i, ArgsRepackUtil.unpack(stmt.getValue(ctx, factory)));
+      }
+      catch (RuntimeException e) {
+        result.setError(i, e);
+      }
+      catch (StackOverflowError e) {
+        result.setError(i, e);
+      }
+    }
+  }
+
   public static Object executeExpression(final Object compiledExpression, final Object ctx, final VariableResolverFactory resolverFactory) {
     return ((ExecutableStatement) compiledExpression).getValue(ctx, resolverFactory);
   }
@@ -60,7 +60,6 @@ public class MVELRuntime {
                                VariableResolverFactory variableFactory) {
 
     Object v1, v2;
-    ExecutionStack stk = new ExecutionStack();
 
     ASTNode tk = expression.getFirstNode();
     Integer operator;
@@ -75,6 +74,7 @@ public class MVELRuntime {
       node = node.nextASTNode;
     }
 
+    ExecutionStack stk = ExecutionStack.acquire();
     try {
       do {
         if (tk.fields == -1) {
@@ -173,37 +173,42 @@ public class MVELRuntime {
 
       return stk.peek();
     }
-    catch (NullPointerException e) {
+    catch (RuntimeException e) {
+      throw rewriteException(e, tk);
+    }
+    finally {
+      ExecutionStack.release(stk);
+      OptimizerFactory.clearThreadAccessorOptimizer();
+    }
+  }
+
+  /**
+   * Rewrites an exception thrown while executing the given top-level node into the exception reported to the
+   * caller, adding the position of the failed statement.
+   *
+   * @param e  the exception thrown
+   * @param tk the node being executed, or {@code null}
+   * @return the exception to be thrown
+   */
+  public static RuntimeException rewriteException(RuntimeException e, ASTNode tk) {
+    if (e instanceof NullPointerException) {
       if (tk != null && tk.isOperator() && tk.nextASTNode != null) {
-        throw new CompileException("incomplete statement: "
+        return new CompileException("incomplete statement: "
             + tk.getName() + " (possible use of reserved keyword as identifier: " + tk.getName() + ")", tk.getExpr(), tk.getStart());
       }
-      else {
-        throw e;
-      }
+      return e;
     }
-    catch (Exception e) {
-      if (tk != null) {
-        if (e instanceof CompileException) {
-          throw ErrorUtil.rewriteIfNeeded((CompileException)e, tk.getExpr(), tk.getStart());
-        } else if (e instanceof ScriptMemoryOverflowException || e instanceof ScriptExecutionStoppedException){
-          throw e;
-        } else {
-          CompileException ce = new CompileException("Invalid statement: " + tk.getName(), tk.getExpr(), tk.getStart(), e);
-          if (e instanceof ScriptRuntimeException) {
-            throw new ScriptRuntimeException(ce.getMessage(), e);
-          } else {
-
-            throw ce;
-          }
-        }
-      } else {
-        throw e;
-      }
+    if (tk == null || e instanceof ScriptMemoryOverflowException || e instanceof ScriptExecutionStoppedException) {
+      return e;
     }
-    finally {
-      OptimizerFactory.clearThreadAccessorOptimizer();
+    if (e instanceof CompileException) {
+      return ErrorUtil.rewriteIfNeeded((CompileException) e, tk.getExpr(), tk.getStart());
+    }
+    CompileException ce = new CompileException("Invalid statement: " + tk.getName(), tk.getExpr(), tk.getStart(), e);
+    if (e instanceof ScriptRuntimeException) {
+      return new ScriptRuntimeException(ce.getMessage(), e);
     }
+    return ce;
   }
 
   /**
@@ -25,6 +25,8 @@ import org.mvel2.compiler.AbstractParser;
 import org.mvel2.compiler.CompiledExpression;
 import org.mvel2.compiler.Parser;
 import org.mvel2.integration.Interceptor;
+import org.mvel2.optimizers.dynamic.DynamicClassLoader;
+import org.mvel2.optimizers.dynamic.DynamicOptimizer;
 import org.mvel2.util.LineMapper;
 import org.mvel2.util.MethodStub;
 import org.mvel2.util.ReflectionUtil;
@@ -95,6 +97,7 @@ public class ParserContext implements Serializable {
   private transient Parser rootParser;
   private transient Map<String, CompiledExpression> compiledExpressionCache;
   private transient Map<String, Class> returnTypeCache;
+  private transient volatile DynamicClassLoader accessorClassLoader;
 
   private boolean functionContext = false;
   private boolean compiled = false;
@@ -108,6 +111,8 @@ public class ParserContext implements Serializable {
   private boolean blockSymbols = false;
   private boolean executableCodeReached = false;
   private boolean indexAllocation = false;
+  private boolean constantFolding = false;
+  private int foldedNodeCount;
   protected boolean variablesEscape = false;
 
   private Map<String, Object> literals;
@@ -123,6 +128,13 @@ public class ParserContext implements Serializable {
     sandboxedParserConfiguration = null;
   }
 
+  /**
+   * Returns the configuration used by new contexts in sandboxed mode, or {@code null} if sandboxed mode is disabled.
+   */
+  static SandboxedParserConfiguration getSandboxedParserConfiguration() {
+    return sandboxedMode ? sandboxedParserConfiguration : null;
+  }
+
   public ParserContext() {
     if (sandboxedMode) {
       parserConfiguration = sandboxedParserConfiguration;
@@ -200,6 +212,7 @@ public class ParserContext implements Serializable {
     ctx.blockSymbols = blockSymbols;
     ctx.executableCodeReached = executableCodeReached;
     ctx.indexAllocation = indexAllocation;
+    ctx.constantFolding = constantFolding;
 
     return ctx;
   }
@@ -268,6 +281,7 @@ public class ParserContext implements Serializable {
     ctx.blockSymbols = blockSymbols;
     ctx.executableCodeReached = executableCodeReached;
     ctx.indexAllocation = indexAllocation;
+    ctx.constantFolding = constantFolding;
 
     return ctx;
   }
@@ -1080,6 +1094,35 @@ public class ParserContext implements Serializable {
     this.indexAllocation = indexAllocation;
   }
 
+  /**
+   * Returns whether compiled statements go through the {@link org.mvel2.compiler.ConstantFolder} pass. Contexts
+   * created for nested functions inherit the setting of their parent.
+   */
+  public boolean isConstantFolding() {
+    return constantFolding || (parent != null && parent.isConstantFolding());
+  }
+
+  public void setConstantFolding(boolean constantFolding) {
+    this.constantFolding = constantFolding;
+  }
+
+  /**
+   * Returns the number of AST nodes the constant folding pass removed from the expressions compiled with the root
+   * of this context.
+   */
+  public int getFoldedNodeCount() {
+    return parent != null ? parent.getFoldedNodeCount() : foldedNodeCount;
+  }
+
+  public void addFoldedNodes(int count) {
+    if (parent != null) {
+      parent.addFoldedNodes(count);
+    }
+    else {
+      foldedNodeCount += count;
+    }
+  }
+
   public boolean isFunctionContext() {
     return functionContext;
   }
@@ -1092,6 +1135,73 @@ public class ParserContext implements Serializable {
     return parserConfiguration.getClassLoader();
   }
 
+  /**
+   * Returns the class loader that holds the accessors generated for the expressions compiled with the root of
+   * this context, creating it on first use. Accessor classes of different scripts live in different loaders,
+   * so they are unloaded together with the script.
+   */
+  public DynamicClassLoader getAccessorClassLoader() {
+    if (parent != null) {
+      return parent.getAccessorClassLoader();
+    }
+    DynamicClassLoader cl = accessorClassLoader;
+    if (cl == null) {
+      synchronized (this) {
+        if ((cl = accessorClassLoader) == null) {
+          accessorClassLoader = cl = new DynamicClassLoader(getClassLoader(), DynamicOptimizer.maximumTenure);
+        }
+      }
+    }
+    return cl;
+  }
+
+  /**
+   * Returns the number of accessor classes generated for the root of this context and not released yet, without
+   * creating the accessor class loader.
+   */
+  public int getAccessorClassCount() {
+    if (parent != null) {
+      return parent.getAccessorClassCount();
+    }
+    DynamicClassLoader cl = accessorClassLoader;
+    return cl == null ? 0 : cl.getTotalClasses();
+  }
+
+  /**
+   * Drops the accessor class loader of the root of this context if it is still the given one, so that the next
+   * generated accessor starts a new loader. Returns {@code true} if the loader was dropped.
+   */
+  public boolean recycleAccessorClassLoader(DynamicClassLoader cl) {
+    if (parent != null) {
+      return parent.recycleAccessorClassLoader(cl);
+    }
+    synchronized (this) {
+      if (accessorClassLoader == cl) {
+        accessorClassLoader = null;
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Deoptimizes the accessors generated for the root of this context and drops their class loader.
+   */
+  public void releaseAccessorClassLoader() {
+    if (parent != null) {
+      parent.releaseAccessorClassLoader();
+      return;
+    }
+    DynamicClassLoader cl;
+    synchronized (this) {
+      cl = accessorClassLoader;
+      accessorClassLoader = null;
+    }
+    if (cl != null) {
+      cl.recycle();
+    }
+  }
+
   public Type[] getLastTypeParameters() {
     return lastTypeParameters;
   }
@@ -0,0 +1,264 @@
+package org.mvel2;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded cache of compiled regular expressions, shared by all scripts.
+ * <p>
+ * Patterns are keyed by their source and flags. Patterns longer than the configured maximum length are compiled on
+ * every use and not cached, and once the cache holds the maximum number of patterns, entries are evicted with the
+ * clock algorithm: every cached pattern is marked when it is used, and the eviction hand sweeps the entries, clearing
+ * the marks and evicting the first pattern that was not used since the hand last passed it, so that frequently used
+ * patterns stay cached while one-off patterns cycle through.
+ * <p>
+ * Matching through the cache is guarded: when the context of the match is an {@link ExecutionContext}, the input is
+ * read through a view that checks every {@value #CHECK_INTERVAL} reads whether the execution was stopped or has
+ * timed out, so that a pattern that backtracks catastrophically is stopped with the script.
+ */
+public class PatternCache {
+
+    public static final int DEFAULT_MAX_SIZE = 512;
+
+    public static final int DEFAULT_MAX_PATTERN_LENGTH = 1024;
+
+    /**
+     * The number of characters read from a guarded input between two checks of the execution.
+     */
+    public static final int CHECK_INTERVAL = 4096;
+
+    private static volatile PatternCache shared = new PatternCache(DEFAULT_MAX_SIZE, DEFAULT_MAX_PATTERN_LENGTH);
+
+    private final int maxSize;
+
+    private final int maxPatternLength;
+
+    private final ConcurrentHashMap<Key, Entry> patterns = new ConcurrentHashMap<>();
+
+    private final Object evictionLock = new Object();
+
+    /**
+     * The clock hand, guarded by {@link #evictionLock}.
+     */
+    private Iterator<Map.Entry<Key, Entry>> hand;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    public PatternCache(int maxSize, int maxPatternLength) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.maxPatternLength = maxPatternLength;
+    }
+
+    /**
+     * Returns the cache used by the regular expression operators and, in sandboxed mode, by the regular expression
+     * methods of {@link String}.
+     */
+    public static PatternCache getShared() {
+        return shared;
+    }
+
+    public static void setShared(PatternCache patternCache) {
+        if (patternCache == null) {
+            throw new IllegalArgumentException("patternCache must not be null");
+        }
+        shared = patternCache;
+    }
+
+    public Pattern compile(String regex) {
+        return compile(regex, 0);
+    }
+
+    /**
+     * Returns the compiled pattern, compiling it on a miss.
+     *
+     * @throws java.util.regex.PatternSyntaxException if the expression is not valid, such expressions are not cached
+     */
+    public Pattern compile(String regex, int flags) {
+        if (regex.length() > maxPatternLength) {
+            missCount.increment();
+            return Pattern.compile(regex, flags);
+        }
+        Key key = new Key(regex, flags);
+        Entry entry = patterns.get(key);
+        if (entry != null) {
+            hitCount.increment();
+            if (!entry.referenced) {
+                entry.referenced = true;
+            }
+            return entry.pattern;
+        }
+        missCount.increment();
+        entry = new Entry(Pattern.compile(regex, flags));
+        Entry existing = patterns.putIfAbsent(key, entry);
+        if (existing != null) {
+            existing.referenced = true;
+            return existing.pattern;
+        }
+        evictIfNeeded(key);
+        return entry.pattern;
+    }
+
+    /**
+     * Tells whether the whole input matches the pattern, stopping with the execution if the context is an
+     * {@link ExecutionContext}.
+     */
+    public static boolean matches(Pattern pattern, CharSequence input, Object ctx) {
+        return pattern.matcher(guard(input, ctx)).matches();
+    }
+
+    /**
+     * Returns a view of the input that checks the execution while it is read, or the input itself if the context
+     * is not an {@link ExecutionContext}.
+     */
+    public static CharSequence guard(CharSequence input, Object ctx) {
+        return ctx instanceof ExecutionContext ? new GuardedCharSequence(input, (ExecutionContext) ctx) : input;
+    }
+
+    public void clear() {
+        synchronized (evictionLock) {
+            patterns.clear();
+            hand = null;
+        }
+    }
+
+    public int size() {
+        return patterns.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getMaxPatternLength() {
+        return maxPatternLength;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Returns the share of lookups that found a cached pattern, or 0 if there were none.
+     */
+    public double getHitRate() {
+        long hits = hitCount.sum();
+        long total = hits + missCount.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Advances the clock hand until the cache is back to its maximum size, sparing the pattern that was just added.
+     */
+    private void evictIfNeeded(Key added) {
+        if (patterns.size() <= maxSize) {
+            return;
+        }
+        synchronized (evictionLock) {
+            int sweeps = 0;
+            while (patterns.size() > maxSize) {
+                if (hand == null || !hand.hasNext()) {
+                    // the first full sweep clears every mark and the second evicts, unless the patterns are used
+                    // concurrently all along
+                    if (++sweeps > 2) {
+                        return;
+                    }
+                    hand = patterns.entrySet().iterator();
+                    continue;
+                }
+                Map.Entry<Key, Entry> candidate = hand.next();
+                Entry entry = candidate.getValue();
+                if (candidate.getKey().equals(added)) {
+                    continue;
+                }
+                if (entry.referenced) {
+                    entry.referenced = false;
+                } else if (patterns.remove(candidate.getKey(), entry)) {
+                    evictionCount.increment();
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final Pattern pattern;
+        private volatile boolean referenced;
+
+        Entry(Pattern pattern) {
+            this.pattern = pattern;
+        }
+    }
+
+    private static final class Key {
+        private final String regex;
+        private final int flags;
+
+        Key(String regex, int flags) {
+            this.regex = regex;
+            this.flags = flags;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return flags == key.flags && regex.equals(key.regex);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * regex.hashCode() + flags;
+        }
+    }
+
+    private static final class GuardedCharSequence implements CharSequence {
+        private final CharSequence input;
+        private final ExecutionContext executionContext;
+        private int reads;
+
+        GuardedCharSequence(CharSequence input, ExecutionContext executionContext) {
+            this.input = input;
+            this.executionContext = executionContext;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (++reads == CHECK_INTERVAL) {
+                reads = 0;
+                executionContext.checkStopped();
+            }
+            return input.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return input.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new GuardedCharSequence(input.subSequence(start, end), executionContext);
+        }
+
+        @Override
+        public String toString() {
+            return input.toString();
+        }
+    }
+}
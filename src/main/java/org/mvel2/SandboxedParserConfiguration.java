@@ -7,6 +7,7 @@ import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -18,6 +19,11 @@ public class SandboxedParserConfiguration extends ParserConfiguration {
 
     private SandboxedClassLoader sanboxedClassLoader = new SandboxedClassLoader();
 
+    /**
+     * The execution context released by the last script run on each thread, see {@link #acquireExecutionContext}.
+     */
+    private transient volatile ThreadLocal<ExecutionContext> pooledExecutionContexts;
+
     protected static final Map<String, Object> literals = AbstractParser.LITERALS
             .entrySet().stream().filter(entry -> !SandboxedClassLoader.forbiddenClassLiterals.contains(entry.getKey()))
             .collect(HashMap::new, (m, v)->m.put(v.getKey(), v.getValue()), HashMap::putAll);
@@ -117,6 +123,15 @@ public class SandboxedParserConfiguration extends ParserConfiguration {
     @SuppressWarnings("unchecked")
     public <T> void registerDataType(String name, Class<T> cls, Function<T, Long> valueSizeFunction) {
         this.addImport(name, cls);
+        this.registerValueSizeFunction(cls, valueSizeFunction);
+    }
+
+    /**
+     * Registers the function used to estimate the memory size of values of the given class
+     * without importing the class into scripts. It takes precedence over the built-in estimation.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void registerValueSizeFunction(Class<T> cls, Function<T, Long> valueSizeFunction) {
         this.additionalDataTypes.put(cls, (Function<Object, Long>) valueSizeFunction);
     }
 
@@ -131,4 +146,48 @@ public class SandboxedParserConfiguration extends ParserConfiguration {
     public TriFunction<ExecutionContext, Object, Object[], Object[]> getMethodInvocationChecker(Method method) {
         return this.invocationCheckers.get(method);
     }
+
+    /**
+     * Returns an execution context for a script run on the current thread. The context released last on this
+     * thread is reset and reused if it has the same limits, otherwise a new context is created. The context
+     * behaves like a new one: it has no time, instruction or stack depth budget.
+     * <p>
+     * Hand the context back with {@link #releaseExecutionContext(ExecutionContext)} once the result of the script
+     * is no longer modified. A context that is not released is simply not reused, and scripts run while the pooled
+     * context is in use get new contexts.
+     */
+    public ExecutionContext acquireExecutionContext(long maxAllowedMemory, int maxAllowedMethodArgs) {
+        ThreadLocal<ExecutionContext> pool = getPooledExecutionContexts();
+        ExecutionContext ctx = pool.get();
+        if (ctx == null || ctx.getMaxAllowedMemory() != maxAllowedMemory || ctx.getMaxAllowedMethodArgs() != maxAllowedMethodArgs) {
+            return new ExecutionContext(this, maxAllowedMemory, maxAllowedMethodArgs);
+        }
+        pool.set(null);
+        ctx.reset();
+        ctx.setTimeout(-1, TimeUnit.MILLISECONDS);
+        ctx.setMaxInstructions(-1);
+        ctx.setMaxStackDepth(-1);
+        return ctx;
+    }
+
+    /**
+     * Makes the context available to the next {@link #acquireExecutionContext} call on the current thread.
+     */
+    public void releaseExecutionContext(ExecutionContext ctx) {
+        if (ctx.getParserConfiguration() == this) {
+            getPooledExecutionContexts().set(ctx);
+        }
+    }
+
+    private ThreadLocal<ExecutionContext> getPooledExecutionContexts() {
+        ThreadLocal<ExecutionContext> pool = this.pooledExecutionContexts;
+        if (pool == null) {
+            synchronized (this) {
+                if ((pool = this.pooledExecutionContexts) == null) {
+                    this.pooledExecutionContexts = pool = new ThreadLocal<>();
+                }
+            }
+        }
+        return pool;
+    }
 }
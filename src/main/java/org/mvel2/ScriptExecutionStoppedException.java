@@ -2,8 +2,32 @@ package org.mvel2;
 
 public class ScriptExecutionStoppedException extends ScriptRuntimeException {
 
+    /**
+     * Why the execution was stopped.
+     */
+    public enum Reason {
+        /**
+         * The execution was stopped with {@link ExecutionContext#stop()}.
+         */
+        STOPPED,
+        TIMEOUT,
+        INSTRUCTION_LIMIT,
+        STACK_DEPTH
+    }
+
+    private final Reason reason;
+
     public ScriptExecutionStoppedException(String message) {
+        this(message, Reason.STOPPED);
+    }
+
+    public ScriptExecutionStoppedException(String message, Reason reason) {
         super(message);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
     }
 
 }
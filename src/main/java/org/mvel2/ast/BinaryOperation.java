@@ -40,10 +40,28 @@ import static org.mvel2.util.CompilerTools.getReturnTypeFromOp;
 import static org.mvel2.util.ParseTools.boxPrimitive;
 
 public class BinaryOperation extends BooleanNode {
+  /**
+   * The number of evaluations during which the types of the operands are profiled, before the operation is
+   * specialized for them when they were always of the same kind, much like accessors are tenured by the
+   * {@link org.mvel2.optimizers.dynamic.DynamicOptimizer}. Zero disables the profiling.
+   */
+  public static int profilingThreshold = 50;
+
+  private static final int PROFILING = 0;
+  private static final int INT = 1;
+  private static final int LONG = 2;
+  private static final int DOUBLE = 3;
+  private static final int STRING_CONCAT = 4;
+  private static final int GENERIC = 5;
+
   private final int operation;
   private int lType = -1;
   private int rType = -1;
 
+  private int specialization = PROFILING;
+  private int runcount;
+  private int profile;
+
   public BinaryOperation(int operation, ParserContext ctx) {
     super(ctx);
     this.operation = operation;
@@ -142,10 +160,85 @@ public class BinaryOperation extends BooleanNode {
   }
 
   public Object getReducedValueAccelerated(Object ctx, Object thisValue, VariableResolverFactory factory) {
-    return doOperations(lType, left.getReducedValueAccelerated(ctx, thisValue, factory), operation, rType,
+    return doOperation(left.getReducedValueAccelerated(ctx, thisValue, factory),
         right.getReducedValueAccelerated(ctx, thisValue, factory));
   }
 
+  /**
+   * Performs the operation on the values of the operands. While the operation is specialized for the profiled types
+   * of the operands and the values have these types, the result is computed directly; otherwise the operation
+   * deoptimizes to {@link org.mvel2.math.MathProcessor#doOperations} for good. Also called by expressions compiled
+   * to bytecode, which evaluate the operands themselves.
+   */
+  public Object doOperation(Object l, Object r) {
+    int s = specialization;
+    if (s == PROFILING) {
+      profile(l, r);
+    }
+    else if (s != GENERIC) {
+      Object result = doSpecializedOperation(s, l, r);
+      if (result != null) {
+        return result;
+      }
+      specialization = GENERIC;
+    }
+    return doOperations(lType, l, operation, rType, r);
+  }
+
+  private void profile(Object l, Object r) {
+    if (profilingThreshold <= 0 || !GuardedArithmetic.isSpecializable(operation)) {
+      specialization = GENERIC;
+      return;
+    }
+    profile |= 1 << getSpecialization(l, r);
+    if (++runcount >= profilingThreshold) {
+      specialization = Integer.bitCount(profile) == 1 ? Integer.numberOfTrailingZeros(profile) : GENERIC;
+    }
+  }
+
+  private int getSpecialization(Object l, Object r) {
+    if (operation == Operator.ADD && (l instanceof String
+        || (r instanceof String && (l instanceof Integer || l instanceof Long || l instanceof Double)))) {
+      return STRING_CONCAT;
+    }
+    if (IntArithmetic.accepts(l, r)) return INT;
+    if (LongArithmetic.accepts(l, r)) return LONG;
+    if (DoubleArithmetic.accepts(l, r)) return DOUBLE;
+    return GENERIC;
+  }
+
+  private Object doSpecializedOperation(int s, Object l, Object r) {
+    switch (s) {
+      case INT:
+        return IntArithmetic.apply(operation, l, r);
+      case LONG:
+        return LongArithmetic.apply(operation, l, r);
+      case DOUBLE:
+        return DoubleArithmetic.apply(operation, l, r);
+      default:
+        return getSpecialization(l, r) == STRING_CONCAT ? String.valueOf(l) + String.valueOf(r) : null;
+    }
+  }
+
+  /**
+   * Returns the type the operation was specialized for at runtime, {@link String} for concatenations, or null if
+   * the operation is not specialized.
+   */
+  public Class getSpecializedType() {
+    switch (specialization) {
+      case INT:
+        return Integer.class;
+      case LONG:
+        return Long.class;
+      case DOUBLE:
+        return Double.class;
+      case STRING_CONCAT:
+        return String.class;
+      default:
+        return null;
+    }
+  }
+
 
   public Object getReducedValue(Object ctx, Object thisValue, VariableResolverFactory factory) {
     throw new RuntimeException("unsupported AST operation");
@@ -155,6 +248,14 @@ public class BinaryOperation extends BooleanNode {
     return operation;
   }
 
+  public int getLeftType() {
+    return lType;
+  }
+
+  public int getRightType() {
+    return rType;
+  }
+
   public void setRightMost(ASTNode right) {
     BinaryOperation n = this;
     while (n.right != null && n.right instanceof BinaryOperation) {
@@ -0,0 +1,68 @@
+package org.mvel2.ast;
+
+import org.mvel2.Operator;
+import org.mvel2.ParserContext;
+
+/**
+ * Arithmetic on a {@link Double} and another {@link Double}, {@link Long} or {@link Integer}, in either order.
+ * The result is a {@link Double}, like on the generic path.
+ */
+public class DoubleArithmetic extends GuardedArithmetic {
+
+  public DoubleArithmetic(int operation, ASTNode left, ASTNode right, ParserContext ctx) {
+    super(operation, left, right, ctx);
+  }
+
+  @Override
+  protected Object compute(int operation, Object left, Object right) {
+    return apply(operation, left, right);
+  }
+
+  public static boolean accepts(Object left, Object right) {
+    if (left instanceof Double) {
+      return right instanceof Double || right instanceof Integer || right instanceof Long;
+    }
+    return right instanceof Double && (left instanceof Integer || left instanceof Long);
+  }
+
+  public static Object apply(int operation, Object left, Object right) {
+    if (!accepts(left, right)) {
+      return null;
+    }
+    double a = ((Number) left).doubleValue();
+    double b = ((Number) right).doubleValue();
+    switch (operation) {
+      case Operator.ADD:
+        return a + b;
+      case Operator.SUB:
+        return a - b;
+      case Operator.MULT:
+        return a * b;
+      case Operator.DIV:
+        return a / b;
+      case Operator.MOD:
+        return a % b;
+      default:
+        return compare(operation, a, b);
+    }
+  }
+
+  static Object compare(int operation, double a, double b) {
+    switch (operation) {
+      case Operator.LTHAN:
+        return a < b;
+      case Operator.GTHAN:
+        return a > b;
+      case Operator.LETHAN:
+        return a <= b;
+      case Operator.GETHAN:
+        return a >= b;
+      case Operator.EQUAL:
+        return a == b;
+      case Operator.NEQUAL:
+        return a != b;
+      default:
+        return null;
+    }
+  }
+}
@@ -138,17 +138,17 @@ public class Function extends ASTNode implements Safe, HasStatement {
         return factory.getVariableResolver(name).getValue();
         //throw new CompileException("duplicate function: " + name, expr, start);
       else {
-        instance = new PrototypalFunctionInstance(this, new MapVariableResolverFactory());
+        instance = new PrototypalFunctionInstance(this, new MapVariableResolverFactory(), factory);
         factory.createVariable(name, instance);
       }
     } else {
-      instance = new PrototypalFunctionInstance(this, new MapVariableResolverFactory());
+      instance = new PrototypalFunctionInstance(this, new MapVariableResolverFactory(), factory);
     }
     return instance;
   }
 
   public Object getReducedValue(Object ctx, Object thisValue, VariableResolverFactory factory) {
-    PrototypalFunctionInstance instance = new PrototypalFunctionInstance(this, new MapVariableResolverFactory());
+    PrototypalFunctionInstance instance = new PrototypalFunctionInstance(this, new MapVariableResolverFactory(), factory);
     if (name != null) {
       if (!factory.isIndexedFactory() && factory.isResolveable(name))
         throw new CompileException("duplicate function: " + name, expr, start);
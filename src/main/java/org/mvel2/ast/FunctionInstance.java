@@ -17,6 +17,13 @@ public class FunctionInstance {
     return function;
   }
 
+  /**
+   * Returns the variables of the scope the function was declared in, or null if they are not known.
+   */
+  public VariableResolverFactory getDefiningFactory() {
+    return null;
+  }
+
   public Object call(Object ctx, Object thisValue, VariableResolverFactory factory, Object[] parms) {
     return this.call(ctx, null, thisValue, factory, parms);
   }
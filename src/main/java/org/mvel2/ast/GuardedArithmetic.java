@@ -0,0 +1,64 @@
+package org.mvel2.ast;
+
+import org.mvel2.Operator;
+import org.mvel2.ParserContext;
+import org.mvel2.integration.VariableResolverFactory;
+
+/**
+ * Arithmetic or comparison node specialized for the operand types known or speculated at compile time.
+ * <p>
+ * The operands are checked on every evaluation, and while they have the expected types the result is computed
+ * directly, without resolving the types and without the conversions of {@link org.mvel2.math.MathProcessor}; the
+ * results are the same as those of {@link org.mvel2.math.MathProcessor#doOperations}. Once the operands have other
+ * types, the node deoptimizes and evaluates like a {@link BinaryOperation} from then on, which profiles the types of
+ * the operands and may specialize the operation again.
+ */
+public abstract class GuardedArithmetic extends BinaryOperation {
+  private boolean deoptimized;
+
+  protected GuardedArithmetic(int operation, ASTNode left, ASTNode right, ParserContext ctx) {
+    super(operation, left, right, ctx);
+  }
+
+  public static boolean isSpecializable(int operation) {
+    switch (operation) {
+      case Operator.ADD:
+      case Operator.SUB:
+      case Operator.MULT:
+      case Operator.DIV:
+      case Operator.MOD:
+      case Operator.LTHAN:
+      case Operator.GTHAN:
+      case Operator.LETHAN:
+      case Operator.GETHAN:
+      case Operator.EQUAL:
+      case Operator.NEQUAL:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  @Override
+  public Object getReducedValueAccelerated(Object ctx, Object thisValue, VariableResolverFactory factory) {
+    Object l = left.getReducedValueAccelerated(ctx, thisValue, factory);
+    Object r = right.getReducedValueAccelerated(ctx, thisValue, factory);
+    if (!deoptimized) {
+      Object result = compute(getOperation(), l, r);
+      if (result != null) {
+        return result;
+      }
+      deoptimized = true;
+    }
+    return doOperation(l, r);
+  }
+
+  /**
+   * Computes the operation, or returns null if the operands do not have the types of this node.
+   */
+  protected abstract Object compute(int operation, Object left, Object right);
+
+  public boolean isDeoptimized() {
+    return deoptimized;
+  }
+}
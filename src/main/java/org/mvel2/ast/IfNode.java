@@ -99,10 +99,30 @@ public class IfNode extends BlockNode implements NestedStatement {
     }
   }
 
+  public ExecutableStatement getCondition() {
+    return condition;
+  }
+
+  public void setCondition(ExecutableStatement condition) {
+    this.condition = condition;
+  }
+
   public ExecutableStatement getNestedStatement() {
     return nestedStatement;
   }
 
+  public void setNestedStatement(ExecutableStatement nestedStatement) {
+    this.nestedStatement = nestedStatement;
+  }
+
+  public IfNode getElseIf() {
+    return elseIf;
+  }
+
+  public boolean isIndexAllocation() {
+    return idxAlloc;
+  }
+
   public IfNode setElseIf(IfNode elseIf) {
     return this.elseIf = elseIf;
   }
@@ -111,6 +131,10 @@ public class IfNode extends BlockNode implements NestedStatement {
     return elseBlock;
   }
 
+  public void setElseBlock(ExecutableStatement elseBlock) {
+    this.elseBlock = elseBlock;
+  }
+
   public IfNode setElseBlock(char[] block, int cursor, int offset, ParserContext ctx) {
     elseBlock = (ExecutableStatement) subCompileExpression(block, cursor, offset, ctx);
     return this;
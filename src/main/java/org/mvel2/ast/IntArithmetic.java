@@ -0,0 +1,65 @@
+package org.mvel2.ast;
+
+import org.mvel2.Operator;
+import org.mvel2.ParserContext;
+
+/**
+ * Arithmetic on two {@link Integer} operands. Like the generic path, sums, differences and products that overflow
+ * are returned as {@link Long} and quotients as {@link Double}.
+ */
+public class IntArithmetic extends GuardedArithmetic {
+
+  public IntArithmetic(int operation, ASTNode left, ASTNode right, ParserContext ctx) {
+    super(operation, left, right, ctx);
+  }
+
+  @Override
+  protected Object compute(int operation, Object left, Object right) {
+    return apply(operation, left, right);
+  }
+
+  public static boolean accepts(Object left, Object right) {
+    return left instanceof Integer && right instanceof Integer;
+  }
+
+  public static Object apply(int operation, Object left, Object right) {
+    if (!accepts(left, right)) {
+      return null;
+    }
+    int a = (Integer) left;
+    int b = (Integer) right;
+    switch (operation) {
+      case Operator.ADD:
+        return narrow((long) a + b);
+      case Operator.SUB:
+        return narrow((long) a - b);
+      case Operator.MULT:
+        return narrow((long) a * b);
+      case Operator.DIV:
+        return (double) a / b;
+      case Operator.MOD:
+        return a % b;
+      case Operator.LTHAN:
+        return a < b;
+      case Operator.GTHAN:
+        return a > b;
+      case Operator.LETHAN:
+        return a <= b;
+      case Operator.GETHAN:
+        return a >= b;
+      case Operator.EQUAL:
+        return a == b;
+      case Operator.NEQUAL:
+        return a != b;
+      default:
+        return null;
+    }
+  }
+
+  private static Object narrow(long value) {
+    if (value > Integer.MAX_VALUE || value < Integer.MIN_VALUE) {
+      return value;
+    }
+    return (int) value;
+  }
+}
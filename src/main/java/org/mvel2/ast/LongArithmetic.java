@@ -0,0 +1,82 @@
+package org.mvel2.ast;
+
+import org.mvel2.Operator;
+import org.mvel2.ParserContext;
+
+/**
+ * Arithmetic on two {@link Long} operands, or on a {@link Long} and an {@link Integer}. Like the generic path,
+ * quotients of two longs are returned as {@link Double}, and a long mixed with an integer is computed in double
+ * precision and returned as {@link Long}.
+ */
+public class LongArithmetic extends GuardedArithmetic {
+
+  public LongArithmetic(int operation, ASTNode left, ASTNode right, ParserContext ctx) {
+    super(operation, left, right, ctx);
+  }
+
+  @Override
+  protected Object compute(int operation, Object left, Object right) {
+    return apply(operation, left, right);
+  }
+
+  public static boolean accepts(Object left, Object right) {
+    return (left instanceof Long && (right instanceof Long || right instanceof Integer))
+        || (left instanceof Integer && right instanceof Long);
+  }
+
+  public static Object apply(int operation, Object left, Object right) {
+    if (left instanceof Long && right instanceof Long) {
+      return apply(operation, (long) (Long) left, (long) (Long) right);
+    }
+    if (accepts(left, right)) {
+      return applyMixed(operation, ((Number) left).doubleValue(), ((Number) right).doubleValue());
+    }
+    return null;
+  }
+
+  private static Object apply(int operation, long a, long b) {
+    switch (operation) {
+      case Operator.ADD:
+        return a + b;
+      case Operator.SUB:
+        return a - b;
+      case Operator.MULT:
+        return a * b;
+      case Operator.DIV:
+        return (double) a / (double) b;
+      case Operator.MOD:
+        return a % b;
+      case Operator.LTHAN:
+        return a < b;
+      case Operator.GTHAN:
+        return a > b;
+      case Operator.LETHAN:
+        return a <= b;
+      case Operator.GETHAN:
+        return a >= b;
+      case Operator.EQUAL:
+        return a == b;
+      case Operator.NEQUAL:
+        return a != b;
+      default:
+        return null;
+    }
+  }
+
+  private static Object applyMixed(int operation, double a, double b) {
+    switch (operation) {
+      case Operator.ADD:
+        return (long) (a + b);
+      case Operator.SUB:
+        return (long) (a - b);
+      case Operator.MULT:
+        return (long) (a * b);
+      case Operator.DIV:
+        return (long) (a / b);
+      case Operator.MOD:
+        return (long) (a % b);
+      default:
+        return DoubleArithmetic.compare(operation, a, b);
+    }
+  }
+}
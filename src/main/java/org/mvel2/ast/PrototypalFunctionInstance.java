@@ -8,10 +8,21 @@ import org.mvel2.integration.VariableResolverFactory;
  */
 public class PrototypalFunctionInstance extends FunctionInstance {
   private final VariableResolverFactory resolverFactory;
+  private final VariableResolverFactory definingFactory;
 
   public PrototypalFunctionInstance(Function function, VariableResolverFactory resolverFactory) {
+    this(function, resolverFactory, null);
+  }
+
+  /**
+   * @param definingFactory the variables of the scope the function is declared in, used when the function is called
+   *                        back from Java code that has no variables of its own to pass
+   */
+  public PrototypalFunctionInstance(Function function, VariableResolverFactory resolverFactory,
+                                    VariableResolverFactory definingFactory) {
     super(function);
     this.resolverFactory = resolverFactory;
+    this.definingFactory = definingFactory;
   }
 
   @Override
@@ -23,6 +34,11 @@ public class PrototypalFunctionInstance extends FunctionInstance {
     return resolverFactory;
   }
 
+  @Override
+  public VariableResolverFactory getDefiningFactory() {
+    return definingFactory;
+  }
+
   public String toString() {
     return "function_prototype:" + function.getName();
   }
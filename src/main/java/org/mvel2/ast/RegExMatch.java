@@ -29,6 +29,8 @@ import java.util.regex.PatternSyntaxException;
 import static java.lang.String.valueOf;
 import static java.util.regex.Pattern.compile;
 import static org.mvel2.MVEL.eval;
+import static org.mvel2.PatternCache.getShared;
+import static org.mvel2.PatternCache.matches;
 import static org.mvel2.util.ParseTools.subCompileExpression;
 
 public class RegExMatch extends ASTNode {
@@ -65,16 +67,16 @@ public class RegExMatch extends ASTNode {
 
   public Object getReducedValueAccelerated(Object ctx, Object thisValue, VariableResolverFactory factory) {
     if (p == null) {
-      return compile(valueOf(patternStmt.getValue(ctx, thisValue, factory))).matcher(valueOf(stmt.getValue(ctx, thisValue, factory))).matches();
+      return matches(getShared().compile(valueOf(patternStmt.getValue(ctx, thisValue, factory))), valueOf(stmt.getValue(ctx, thisValue, factory)), ctx);
     }
     else {
-      return p.matcher(valueOf(stmt.getValue(ctx, thisValue, factory))).matches();
+      return matches(p, valueOf(stmt.getValue(ctx, thisValue, factory)), ctx);
     }
   }
 
   public Object getReducedValue(Object ctx, Object thisValue, VariableResolverFactory factory) {
     try {
-      return compile(valueOf(eval(expr, patternStart, patternOffset, ctx, factory))).matcher(valueOf(eval(expr, start, offset, ctx, factory))).matches();
+      return matches(getShared().compile(valueOf(eval(expr, patternStart, patternOffset, ctx, factory))), valueOf(eval(expr, start, offset, ctx, factory)), ctx);
     }
     catch (PatternSyntaxException e) {
       throw new CompileException("bad regular expression", expr, patternStart, e);
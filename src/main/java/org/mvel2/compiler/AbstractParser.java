@@ -2393,25 +2393,30 @@ public class AbstractParser implements Parser, Serializable {
    */
   protected void setExpression(String expression) {
     if (expression != null && expression.length() != 0) {
+      char[] cached;
+      // only the cache itself is locked, so that concurrent compilations do not wait on each other's trimming
       synchronized (EX_PRECACHE) {
-        if ((this.expr = EX_PRECACHE.get(expression)) == null) {
-          end = length = (this.expr = expression.toCharArray()).length;
+        cached = EX_PRECACHE.get(expression);
+      }
+      if (cached == null) {
+        end = length = (this.expr = expression.toCharArray()).length;
 
-          // trim any whitespace.
-          while (start < length && isWhitespace(expr[start])) start++;
+        // trim any whitespace.
+        while (start < length && isWhitespace(expr[start])) start++;
 
-          while (length != 0 && isWhitespace(this.expr[length - 1])) length--;
+        while (length != 0 && isWhitespace(this.expr[length - 1])) length--;
 
-          char[] e = new char[length];
+        char[] e = new char[length];
 
-          for (int i = 0; i != e.length; i++)
-            e[i] = expr[i];
+        for (int i = 0; i != e.length; i++)
+          e[i] = expr[i];
 
+        synchronized (EX_PRECACHE) {
           EX_PRECACHE.put(expression, e);
         }
-        else {
-          end = length = this.expr.length;
-        }
+      }
+      else {
+        end = length = (this.expr = cached).length;
       }
     }
   }
@@ -2878,7 +2883,7 @@ public class AbstractParser implements Parser, Serializable {
           break;
 
         case REGEX:
-          stk.push(java.util.regex.Pattern.compile(java.lang.String.valueOf(stk.pop()))
+          stk.push(org.mvel2.PatternCache.getShared().compile(java.lang.String.valueOf(stk.pop()))
               .matcher(java.lang.String.valueOf(stk.pop())).matches());
           break;
 
@@ -18,16 +18,20 @@
 
 package org.mvel2.compiler;
 
+import org.mvel2.MVEL;
 import org.mvel2.ParserConfiguration;
 import org.mvel2.ast.ASTNode;
 import org.mvel2.ast.TypeCast;
 import org.mvel2.integration.VariableResolverFactory;
 import org.mvel2.optimizers.OptimizerFactory;
+import org.mvel2.optimizers.dynamic.DynamicOptimizer;
+import org.mvel2.optimizers.impl.asm.ASMExpressionCompiler;
 import org.mvel2.util.ASTLinkedList;
 
 import java.io.Serializable;
 
 import static org.mvel2.MVELRuntime.execute;
+import static org.mvel2.MVELRuntime.hasDebuggerContext;
 
 public class CompiledExpression implements Serializable, ExecutableStatement {
   private final ASTNode firstNode;
@@ -43,6 +47,13 @@ public class CompiledExpression implements Serializable, ExecutableStatement {
 
   private final ParserConfiguration parserConfiguration;
 
+  /**
+   * The whole expression compiled to bytecode, see {@link MVEL#RUNTIME_OPT_COMPILE_EXPRESSIONS}.
+   */
+  private transient volatile Accessor compiledStatement;
+  private transient int executionCount;
+  private transient boolean compilationAttempted;
+
   public CompiledExpression(ASTLinkedList astMap, String sourceName, Class egressType, ParserConfiguration parserConfiguration, boolean literalOnly) {
     this.firstNode = astMap.firstNode();
     this.sourceName = sourceName;
@@ -112,9 +123,30 @@ public class CompiledExpression implements Serializable, ExecutableStatement {
   }
 
   public Object getDirectValue(Object staticContext, VariableResolverFactory factory) {
+    Accessor compiled = compiledStatement;
+    if (compiled == null && MVEL.RUNTIME_OPT_COMPILE_EXPRESSIONS && !compilationAttempted
+        && ++executionCount > DynamicOptimizer.tenuringThreshold) {
+      compilationAttempted = true;
+      compiledStatement = compiled = ASMExpressionCompiler.compile(this);
+    }
+    if (compiled != null && !hasDebuggerContext()) {
+      try {
+        return compiled.getValue(staticContext, staticContext, parserConfiguration.getVariableFactory(factory));
+      }
+      finally {
+        OptimizerFactory.clearThreadAccessorOptimizer();
+      }
+    }
     return execute(false, this, staticContext, parserConfiguration.getVariableFactory(factory));
   }
 
+  /**
+   * Returns whether the expression runs as generated bytecode rather than in the interpreter.
+   */
+  public boolean isCompiledToBytecode() {
+    return compiledStatement != null;
+  }
+
   private void setupOptimizers() {
     optimized = true;
   }
@@ -0,0 +1,352 @@
+package org.mvel2.compiler;
+
+import org.mvel2.Operator;
+import org.mvel2.ParserContext;
+import org.mvel2.ast.ASTNode;
+import org.mvel2.ast.And;
+import org.mvel2.ast.AssignmentNode;
+import org.mvel2.ast.BinaryOperation;
+import org.mvel2.ast.BooleanNode;
+import org.mvel2.ast.EndOfStatement;
+import org.mvel2.ast.IfNode;
+import org.mvel2.ast.LiteralNode;
+import org.mvel2.ast.Or;
+import org.mvel2.util.ASTLinkedList;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mvel2.util.ParseTools.isIdentifierPart;
+
+/**
+ * An optimization pass over a finalized statement list, enabled with {@link ParserContext#setConstantFolding}.
+ * <p>
+ * The pass folds operations on literal operands, short-circuits <tt>&amp;&amp;</tt> and <tt>||</tt> on a literal
+ * left operand and drops the branches of <tt>if</tt> statements and ternary operators that a literal condition rules
+ * out. Variables assigned a literal once in the whole script, and never written anywhere else, are replaced with the
+ * literal where they are read after the assignment in the same statement list; the assignment itself is kept.
+ * Nested blocks are folded when they are compiled, and do not see the variables of the enclosing blocks. Variables
+ * allocated to indexed slots, such as those of function bodies, are not replaced.
+ */
+public class ConstantFolder {
+  private final char[] expr;
+  private final ParserContext pCtx;
+  private final Map<String, Object> constants = new HashMap<String, Object>();
+  private int removed;
+
+  private ConstantFolder(char[] expr, ParserContext pCtx) {
+    this.expr = expr;
+    this.pCtx = pCtx;
+  }
+
+  /**
+   * Folds the statement list compiled from the expression and records the number of removed nodes in the
+   * parser context.
+   *
+   * @param astLinkedList the finalized statement list
+   * @param expr          the whole script the statements are compiled from, searched for writes to the variables
+   * @param pCtx          the parser context
+   * @return the folded statement list
+   */
+  public static ASTLinkedList fold(ASTLinkedList astLinkedList, char[] expr, ParserContext pCtx) {
+    ConstantFolder folder = new ConstantFolder(expr, pCtx);
+    ASTLinkedList folded = folder.foldStatements(astLinkedList);
+    if (folder.removed != 0) {
+      pCtx.addFoldedNodes(folder.removed);
+    }
+    return folded;
+  }
+
+  private ASTLinkedList foldStatements(ASTLinkedList astLinkedList) {
+    ASTLinkedList folded = new ASTLinkedList();
+    boolean statementStart = true;
+
+    astLinkedList.reset();
+    while (astLinkedList.hasMoreNodes()) {
+      ASTNode node = astLinkedList.nextNode();
+
+      ASTNode selected;
+      if (statementStart && isLiteralCondition(node)
+          && (selected = foldTernary((Boolean) node.getLiteralValue(), node.nextASTNode)) != null) {
+        for (int i = 0; i < 4; i++) {
+          astLinkedList.skipNode();
+        }
+        node = selected;
+      }
+      else {
+        node = foldNode(node);
+      }
+
+      if (node instanceof AssignmentNode) {
+        recordAssignment((AssignmentNode) node);
+      }
+
+      statementStart = node instanceof EndOfStatement;
+      node.nextASTNode = null;
+      folded.addTokenNode(node);
+    }
+    return folded;
+  }
+
+  /**
+   * Folds <tt>cond ? a : b</tt> with a literal condition, when both branches are single nodes ending the statement.
+   * Returns the selected branch, or <tt>null</tt> if the operator cannot be folded.
+   */
+  private ASTNode foldTernary(boolean condition, ASTNode ternaryOp) {
+    if (ternaryOp == null || !ternaryOp.isOperator(Operator.TERNARY)) {
+      return null;
+    }
+    ASTNode ifTrue = ternaryOp.nextASTNode;
+    ASTNode elseOp = ifTrue == null ? null : ifTrue.nextASTNode;
+    ASTNode ifFalse = elseOp == null ? null : elseOp.nextASTNode;
+    if (ifTrue == null || ifTrue.isOperator() || elseOp == null || !elseOp.isOperator(Operator.TERNARY_ELSE)
+        || ifFalse == null || ifFalse.isOperator()
+        || (ifFalse.nextASTNode != null && !(ifFalse.nextASTNode instanceof EndOfStatement))) {
+      return null;
+    }
+    removed += 4;
+    return foldNode(condition ? ifTrue : ifFalse);
+  }
+
+  private ASTNode foldNode(ASTNode node) {
+    if (node instanceof BooleanNode) {
+      return foldOperation((BooleanNode) node);
+    }
+    else if (node instanceof IfNode) {
+      return foldIf((IfNode) node);
+    }
+    else if (isVariableRead(node) && constants.containsKey(node.getName())) {
+      return new LiteralNode(constants.get(node.getName()), pCtx);
+    }
+    return node;
+  }
+
+  private ASTNode foldOperation(BooleanNode node) {
+    if (!(node instanceof BinaryOperation || node instanceof And || node instanceof Or)) {
+      return node;
+    }
+    ASTNode left = foldNode(node.getLeft());
+    ASTNode right = foldNode(node.getRight());
+    node.setLeft(left);
+    node.setRight(right);
+
+    if (node instanceof And && isLiteralCondition(left) && !((Boolean) left.getLiteralValue())) {
+      removed += countNodes(right) + 1;
+      return left;
+    }
+    if (node instanceof Or && isLiteralCondition(left) && (Boolean) left.getLiteralValue()) {
+      removed += countNodes(right) + 1;
+      return left;
+    }
+    if (!left.isLiteral() || !right.isLiteral()) {
+      return node;
+    }
+
+    Object value;
+    try {
+      value = node.getReducedValueAccelerated(null, null, null);
+    }
+    catch (RuntimeException e) {
+      // left to fail at runtime, where the error is reported as usual
+      return node;
+    }
+    if (!isConstant(value)) {
+      return node;
+    }
+    removed += 2;
+    return new LiteralNode(value, pCtx);
+  }
+
+  private ASTNode foldIf(IfNode node) {
+    Boolean condition = literalCondition(node.getCondition());
+    if (condition == null) {
+      return node;
+    }
+    if (condition) {
+      if (node.getElseIf() != null) {
+        removed += countBranches(node.getElseIf());
+        node.setElseIf(null);
+      }
+      if (node.getElseBlock() != null) {
+        removed++;
+        node.setElseBlock((ExecutableStatement) null);
+      }
+      node.setCondition(new ExecutableLiteral(true));
+      return node;
+    }
+
+    removed++;
+    if (node.getElseIf() != null) {
+      return foldIf(node.getElseIf());
+    }
+    else if (node.getElseBlock() != null) {
+      node.setCondition(new ExecutableLiteral(true));
+      node.setNestedStatement(node.getElseBlock());
+      node.setElseBlock((ExecutableStatement) null);
+      return node;
+    }
+    return new LiteralNode(null, pCtx);
+  }
+
+  private Boolean literalCondition(ExecutableStatement condition) {
+    Object value;
+    if (condition instanceof ExecutableLiteral) {
+      value = ((ExecutableLiteral) condition).getLiteral();
+    }
+    else if (condition instanceof ExecutableAccessor) {
+      ASTNode node = foldNode(((ExecutableAccessor) condition).getNode());
+      if (!node.isLiteral()) {
+        return null;
+      }
+      value = node.getLiteralValue();
+    }
+    else {
+      return null;
+    }
+    return value instanceof Boolean ? (Boolean) value : null;
+  }
+
+  private void recordAssignment(AssignmentNode node) {
+    String name = node.getVarName();
+    constants.remove(name);
+    if ((node.getFields() & ASTNode.COLLECTION) != 0 || !isSimpleName(name)) {
+      return;
+    }
+
+    ExecutableStatement statement = node.getStatement();
+    Object value;
+    if (statement instanceof ExecutableLiteral) {
+      value = ((ExecutableLiteral) statement).getLiteral();
+    }
+    else if (statement instanceof ExecutableAccessor) {
+      ASTNode folded = foldNode(((ExecutableAccessor) statement).getNode());
+      if (!folded.isLiteral()) {
+        return;
+      }
+      value = folded.getLiteralValue();
+      node.setValueStatement(new ExecutableLiteral(value));
+      removed += countNodes(((ExecutableAccessor) statement).getNode()) - 1;
+    }
+    else {
+      return;
+    }
+
+    // a declared type converts the assigned value
+    Class type = pCtx.getVarOrInputTypeOrNull(name);
+    if (isConstant(value) && (type == null || type == Object.class || type == value.getClass())
+        && countWrites(name) == 1) {
+      constants.put(name, value);
+    }
+  }
+
+  /**
+   * Counts the places in the script that may write the variable: assignments, increments, decrements, loop
+   * variables and function declarations. Text that only looks like a write, in strings or comments, is counted as
+   * well, which only keeps the variable from being replaced.
+   */
+  private int countWrites(String name) {
+    int writes = 0;
+    int len = name.length();
+    for (int i = 0; i + len <= expr.length; i++) {
+      if (expr[i] != name.charAt(0) || (i > 0 && (isIdentifierPart(expr[i - 1]) || expr[i - 1] == '.'))
+          || (i + len < expr.length && isIdentifierPart(expr[i + len]))
+          || !new String(expr, i, len).equals(name)) {
+        continue;
+      }
+
+      int after = i + len;
+      while (after < expr.length && Character.isWhitespace(expr[after])) after++;
+      int before = i - 1;
+      while (before >= 0 && Character.isWhitespace(expr[before])) before--;
+
+      if (isWriteOperator(after) || (before > 0 && (expr[before] == '+' || expr[before] == '-')
+          && expr[before - 1] == expr[before]) || precededBy(before, "def") || precededBy(before, "function")) {
+        writes++;
+      }
+    }
+    return writes;
+  }
+
+  private boolean isWriteOperator(int i) {
+    if (i >= expr.length) {
+      return false;
+    }
+    char c = expr[i];
+    char next = i + 1 < expr.length ? expr[i + 1] : 0;
+    switch (c) {
+      case '=':
+        return next != '=';
+      case ':':
+        return true;
+      case '+':
+      case '-':
+        return next == c || next == '=';
+      case '*':
+      case '/':
+      case '%':
+      case '&':
+      case '|':
+      case '^':
+        return next == '=';
+      case '<':
+      case '>':
+        return next == c;
+      default:
+        return false;
+    }
+  }
+
+  private boolean precededBy(int end, String keyword) {
+    int start = end - keyword.length() + 1;
+    return start >= 0 && new String(expr, start, keyword.length()).equals(keyword)
+        && (start == 0 || !isIdentifierPart(expr[start - 1]));
+  }
+
+  private static boolean isVariableRead(ASTNode node) {
+    return node.getClass() == ASTNode.class && node.isIdentifier() && !node.isDeepProperty()
+        && isSimpleName(node.getName());
+  }
+
+  private static boolean isSimpleName(String name) {
+    if (name == null || name.length() == 0 || !Character.isJavaIdentifierStart(name.charAt(0))) {
+      return false;
+    }
+    for (int i = 1; i < name.length(); i++) {
+      if (!Character.isJavaIdentifierPart(name.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isLiteralCondition(ASTNode node) {
+    return node.isLiteral() && node.getLiteralValue() instanceof Boolean;
+  }
+
+  /**
+   * Immutable values, which can be shared between executions.
+   */
+  private static boolean isConstant(Object value) {
+    return value instanceof String || value instanceof Number || value instanceof Boolean
+        || value instanceof Character;
+  }
+
+  private static int countNodes(ASTNode node) {
+    if (node instanceof BooleanNode) {
+      BooleanNode operation = (BooleanNode) node;
+      return 1 + countNodes(operation.getLeft()) + countNodes(operation.getRight());
+    }
+    return node == null ? 0 : 1;
+  }
+
+  private static int countBranches(IfNode node) {
+    int count = 1;
+    if (node.getElseIf() != null) {
+      count += countBranches(node.getElseIf());
+    }
+    else if (node.getElseBlock() != null) {
+      count++;
+    }
+    return count;
+  }
+}
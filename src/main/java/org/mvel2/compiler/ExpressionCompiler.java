@@ -295,7 +295,11 @@ public class ExpressionCompiler extends AbstractParser {
 
       if (!verifyOnly) {
         try {
-          return new CompiledExpression(finalizePayload(astBuild, secondPassOptimization, pCtx), pCtx.getSourceFile(), returnType, pCtx.getParserConfiguration(), literalOnly == 1);
+          ASTLinkedList payload = finalizePayload(astBuild, secondPassOptimization, pCtx);
+          if (pCtx.isConstantFolding() && !pCtx.isDebugSymbols()) {
+            payload = ConstantFolder.fold(payload, expr, pCtx);
+          }
+          return new CompiledExpression(payload, pCtx.getSourceFile(), returnType, pCtx.getParserConfiguration(), literalOnly == 1);
         } catch (RuntimeException e) {
           throw new CompileException(e.getMessage(), expr, st, e);
         }
@@ -0,0 +1,202 @@
+package org.mvel2.execution;
+
+import org.mvel2.ExecutionContext;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * List backed by a ring buffer, for scripts that use a list as a queue. Elements are added and removed at both ends
+ * in constant time with {@link #push}, {@link #pop}, {@link #shift} and {@link #unshift}, and read by index like in
+ * {@link ExecutionArrayList}. Elements are accounted in {@link ExecutionContext} the same way as in
+ * {@link ExecutionArrayList}.
+ */
+public class ExecutionArrayDeque<E> extends AbstractList<E> implements ExecutionObject, RandomAccess {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private final ExecutionContext executionContext;
+
+    private final int id;
+
+    private long memorySize = 0;
+
+    /**
+     * The ring buffer, its length is a power of two.
+     */
+    private Object[] elements;
+
+    private int head;
+
+    private int size;
+
+    public ExecutionArrayDeque(ExecutionContext executionContext) {
+        this.executionContext = executionContext;
+        this.id = executionContext.nextId();
+        this.elements = new Object[MIN_CAPACITY];
+    }
+
+    public ExecutionArrayDeque(Collection<? extends E> c, ExecutionContext executionContext) {
+        this.executionContext = executionContext;
+        this.id = executionContext.nextId();
+        this.elements = new Object[capacityFor(c.size())];
+        for (E e : c) {
+            this.elements[size++] = e;
+        }
+        this.memorySize += this.executionContext.onValsAdd(this, 0, this);
+    }
+
+    public boolean push(E e) {
+        return this.add(e);
+    }
+
+    public E pop() {
+        return size == 0 ? null : this.remove(size - 1);
+    }
+
+    public E shift() {
+        return remove(0);
+    }
+
+    public void unshift(E e) {
+        add(0, e);
+    }
+
+    public int length() {
+        return size;
+    }
+
+    /**
+     * Copies this deque to an {@link ExecutionArrayList}.
+     */
+    public ExecutionArrayList<E> toList() {
+        return new ExecutionArrayList<>(this, this.executionContext);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public E get(int index) {
+        checkIndex(index);
+        return element(index);
+    }
+
+    @Override
+    public E set(int index, E element) {
+        checkIndex(index);
+        E oldValue = element(index);
+        elements[slot(index)] = element;
+        this.memorySize -= this.executionContext.onValRemove(this, index, oldValue);
+        this.memorySize += this.executionContext.onValAdd(this, index, element);
+        return oldValue;
+    }
+
+    @Override
+    public boolean add(E e) {
+        add(size, e);
+        return true;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (size == elements.length) {
+            grow();
+        }
+        if (index < size - index) {
+            head = (head - 1) & (elements.length - 1);
+            for (int i = 0; i < index; i++) {
+                elements[slot(i)] = elements[slot(i + 1)];
+            }
+        } else {
+            for (int i = size; i > index; i--) {
+                elements[slot(i)] = elements[slot(i - 1)];
+            }
+        }
+        elements[slot(index)] = element;
+        size++;
+        modCount++;
+        this.memorySize += this.executionContext.onValAdd(this, index, element);
+    }
+
+    @Override
+    public E remove(int index) {
+        checkIndex(index);
+        E value = element(index);
+        if (index < size - index - 1) {
+            for (int i = index; i > 0; i--) {
+                elements[slot(i)] = elements[slot(i - 1)];
+            }
+            elements[head] = null;
+            head = (head + 1) & (elements.length - 1);
+        } else {
+            for (int i = index; i < size - 1; i++) {
+                elements[slot(i)] = elements[slot(i + 1)];
+            }
+            elements[slot(size - 1)] = null;
+        }
+        size--;
+        modCount++;
+        this.memorySize -= this.executionContext.onValRemove(this, index, value);
+        return value;
+    }
+
+    @Override
+    public void clear() {
+        this.memorySize -= this.executionContext.onValsRemove(this, 0, this);
+        for (int i = 0; i < size; i++) {
+            elements[slot(i)] = null;
+        }
+        head = 0;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public int getExecutionObjectId() {
+        return id;
+    }
+
+    @Override
+    public long memorySize() {
+        return memorySize;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E element(int index) {
+        return (E) elements[slot(index)];
+    }
+
+    private int slot(int index) {
+        return (head + index) & (elements.length - 1);
+    }
+
+    private void grow() {
+        Object[] grown = new Object[elements.length << 1];
+        for (int i = 0; i < size; i++) {
+            grown[i] = elements[slot(i)];
+        }
+        elements = grown;
+        head = 0;
+    }
+
+    private static int capacityFor(int size) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < size) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
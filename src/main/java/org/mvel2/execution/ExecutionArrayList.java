@@ -1,38 +1,21 @@
 package org.mvel2.execution;
 
 import org.mvel2.ExecutionContext;
+import org.mvel2.ScriptRuntimeException;
+import org.mvel2.ast.FunctionInstance;
+import org.mvel2.integration.VariableResolverFactory;
+import org.mvel2.integration.impl.MapVariableResolverFactory;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class ExecutionArrayList<E> extends ArrayList<E> implements ExecutionObject {
 
-    private static final Comparator stringCompDesc = new Comparator() {
-        public int compare(Object o1, Object o2) {
-            String first = String.valueOf(o1);
-            String second = String.valueOf(o2);
-            return second.compareTo(first);
-        }
-    };
-    private static final Comparator numericCompAsc = new Comparator() {
-        public int compare(Object o1, Object o2) {
-            Double first = Double.parseDouble(String.valueOf(o1));
-            Double second = Double.parseDouble(String.valueOf(o2));
-            return first.compareTo(second);
-        }
-    };
-    private static final Comparator numericCompDesc = new Comparator() {
-        public int compare(Object o1, Object o2) {
-            Double first = Double.parseDouble(String.valueOf(o1));
-            Double second = Double.parseDouble(String.valueOf(o2));
-            return second.compareTo(first);
-        }
-    };
-
     private final ExecutionContext executionContext;
 
     private final int id;
@@ -48,10 +31,7 @@ public class ExecutionArrayList<E> extends ArrayList<E> implements ExecutionObje
         super(c);
         this.executionContext = executionContext;
         this.id = executionContext.nextId();
-        for (int i = 0; i < size(); i++) {
-            E val = get(i);
-            this.memorySize += this.executionContext.onValAdd(this, i, val);
-        }
+        this.memorySize += this.executionContext.onValsAdd(this, 0, this);
     }
 
     public boolean push(E e) {
@@ -77,21 +57,17 @@ public class ExecutionArrayList<E> extends ArrayList<E> implements ExecutionObje
 
     @Override
     public boolean addAll(Collection<? extends E> c) {
+        int from = size();
         boolean res = super.addAll(c);
-        int i = c.size();
-        for (E val : c) {
-            this.memorySize += this.executionContext.onValAdd(this, i++, val);
-        }
+        this.memorySize += this.executionContext.onValsAdd(this, from, this.subList(from, size()));
         return res;
     }
 
     @Override
     public boolean addAll(int index, Collection<? extends E> c) {
+        int size = size();
         boolean res = super.addAll(index, c);
-        int i = index;
-        for (E val : c) {
-            this.memorySize += this.executionContext.onValAdd(this, i++, val);
-        }
+        this.memorySize += this.executionContext.onValsAdd(this, index, this.subList(index, index + size() - size));
         return res;
     }
 
@@ -162,22 +138,41 @@ public class ExecutionArrayList<E> extends ArrayList<E> implements ExecutionObje
     }
 
     public int indexOf(Object o, int fromIndex) {
-        int index = this.slice(fromIndex).indexOf(o);
-        return index == -1 ? index : index + fromIndex;
+        for (int i = initStartIndex(fromIndex); i < size(); i++) {
+            if (o == null ? get(i) == null : o.equals(get(i))) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     public String join() {
         return join(",");
     }
 
+    /**
+     * Joins the elements with the separator. Nested collections are joined with commas, and {@code null} elements
+     * are joined as empty strings.
+     */
     public String join(String separator) {
-        String strJoin = this.stream()
-                .map(Object::toString)
-                .collect(Collectors.joining(separator));
-        return strJoin
-                .replaceAll(", ", ",")
-                .replaceAll("\\[", "")
-                .replaceAll("]", "");
+        StringBuilder sb = new StringBuilder();
+        join(sb, this, separator);
+        return sb.toString();
+    }
+
+    private static void join(StringBuilder sb, Collection<?> c, String separator) {
+        boolean first = true;
+        for (Object e : c) {
+            if (!first) {
+                sb.append(separator);
+            }
+            first = false;
+            if (e instanceof Collection) {
+                join(sb, (Collection<?>) e, ",");
+            } else if (e != null) {
+                sb.append(e);
+            }
+        }
     }
 
     public void sort() {
@@ -185,11 +180,49 @@ public class ExecutionArrayList<E> extends ArrayList<E> implements ExecutionObje
     }
 
     public void sort(boolean asc) {
-        if (validateClazzInArrayIsOnlyString()) {
-            super.sort(asc ? null : stringCompDesc);
-        } else {
-            super.sort(asc ? numericCompAsc : numericCompDesc);
+        if (size() > 1) {
+            reorder(KeySort.order(toArray(), asc));
+        }
+    }
+
+    public void sortBy(Object keyFunction) {
+        this.sortBy(keyFunction, true);
+    }
+
+    /**
+     * Sorts the list by the keys the function returns for the elements, calling the function once per element with
+     * the element as its only argument. The keys are ordered like the elements in {@link #sort(boolean)}. The function
+     * runs against the variables of the scope it was declared in, so it can call the other functions of the script
+     * and read its variables.
+     * <p>
+     * The function is declared as an {@link Object}, since the compiler types a function reference as its definition.
+     */
+    public void sortBy(Object keyFunction, boolean asc) {
+        if (!(keyFunction instanceof FunctionInstance)) {
+            throw new ScriptRuntimeException("Unsupported key function type: " +
+                    (keyFunction == null ? "null" : keyFunction.getClass().getName()));
         }
+        if (size() > 1) {
+            FunctionInstance function = (FunctionInstance) keyFunction;
+            function.getFunction().checkArgumentCount(1);
+            VariableResolverFactory factory = function.getDefiningFactory();
+            if (factory == null) {
+                factory = new MapVariableResolverFactory();
+            }
+            Object[] keys = new Object[size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = function.call(null, executionContext, null, factory, new Object[]{get(i)});
+            }
+            reorder(KeySort.order(keys, asc));
+        }
+    }
+
+    private void reorder(int[] order) {
+        Object[] elements = toArray();
+        for (int i = 0; i < order.length; i++) {
+            super.set(i, (E) elements[order[i]]);
+        }
+        modCount++;
     }
 
     public ExecutionArrayList<E> toSorted() {
@@ -224,15 +257,15 @@ public class ExecutionArrayList<E> extends ArrayList<E> implements ExecutionObje
 
     public List splice(int start, int deleteCount, E... values) {
         start = initStartIndex(start);
-        deleteCount = deleteCount < 0 ? 0 : Math.min(deleteCount, (this.size() - start));
-        List<E> removed = new ArrayList<>();
-        while (deleteCount > 0) {
-            removed.add(this.remove(start));
-            deleteCount--;
+        deleteCount = Math.max(0, Math.min(deleteCount, this.size() - start));
+        List<E> removed = new ArrayList<>(deleteCount);
+        if (deleteCount > 0) {
+            removed.addAll(this.subList(start, start + deleteCount));
+            super.removeRange(start, start + deleteCount);
+            this.memorySize -= this.executionContext.onValsRemove(this, start, removed);
         }
-        int insertIdx = start;
-        for (E e : values) {
-            this.add(insertIdx++, e);
+        if (values.length > 0) {
+            this.addAll(start, Arrays.asList(values));
         }
         return new ExecutionArrayList<>(removed, this.executionContext);
     }
@@ -278,6 +311,48 @@ public class ExecutionArrayList<E> extends ArrayList<E> implements ExecutionObje
         return this;
     }
 
+    /**
+     * Copies this list to an {@link ExecutionArrayDeque}, which adds and removes elements at both ends in constant
+     * time.
+     */
+    public ExecutionArrayDeque<E> toDeque() {
+        return new ExecutionArrayDeque<>(this, this.executionContext);
+    }
+
+    public ExecutionDoubleList toDoubleList() {
+        return new ExecutionDoubleList(this.toNumbers(), this.executionContext);
+    }
+
+    public ExecutionLongList toLongList() {
+        return new ExecutionLongList(this.toNumbers(), this.executionContext);
+    }
+
+    /**
+     * Converts this list to a primitive-backed list: {@link ExecutionLongList} when all elements are integral,
+     * {@link ExecutionDoubleList} when all elements are numbers. Otherwise returns a copy of this list.
+     */
+    public List toNumericList() {
+        boolean integral = true;
+        for (int i = 0; i < size(); i++) {
+            E e = get(i);
+            if (!(e instanceof Number) || e instanceof BigDecimal || e instanceof BigInteger) {
+                return this.slice();
+            }
+            integral &= ExecutionLongList.isIntegral(e);
+        }
+        return integral ? this.toLongList() : this.toDoubleList();
+    }
+
+    private List<Number> toNumbers() {
+        for (int i = 0; i < size(); i++) {
+            if (!(get(i) instanceof Number)) {
+                throw new ScriptRuntimeException("Unsupported value type for numeric list: " +
+                        (get(i) == null ? "null" : get(i).getClass().getName()));
+            }
+        }
+        return (List<Number>) this;
+    }
+
     public boolean validateClazzInArrayIsOnlyString() {
         return !super.stream().anyMatch(e -> !(e instanceof String));
     }
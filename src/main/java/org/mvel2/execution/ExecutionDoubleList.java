@@ -0,0 +1,192 @@
+package org.mvel2.execution;
+
+import org.mvel2.ExecutionContext;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * List of numbers stored as a {@code double[]}. Any {@link Number} may be added and is stored by its
+ * {@link Number#doubleValue()}.
+ */
+public class ExecutionDoubleList extends ExecutionNumericList<Double> {
+
+    private static final double[] EMPTY = {};
+
+    private double[] elements;
+
+    public ExecutionDoubleList(ExecutionContext executionContext) {
+        super(executionContext);
+        this.elements = EMPTY;
+    }
+
+    public ExecutionDoubleList(Collection<? extends Number> c, ExecutionContext executionContext) {
+        super(executionContext);
+        this.elements = new double[c.size()];
+        for (Number n : c) {
+            this.elements[size++] = n.doubleValue();
+        }
+        this.onElementsAdd(size);
+    }
+
+    @Override
+    protected int elementSize() {
+        return 8;
+    }
+
+    @Override
+    public Double get(int index) {
+        return getDouble(index);
+    }
+
+    @Override
+    public double getDouble(int index) {
+        checkIndex(index);
+        return elements[index];
+    }
+
+    @Override
+    public Double set(int index, Number element) {
+        return setDouble(index, element.doubleValue());
+    }
+
+    public double setDouble(int index, double element) {
+        checkIndex(index);
+        double oldValue = elements[index];
+        elements[index] = element;
+        return oldValue;
+    }
+
+    @Override
+    public boolean add(Number e) {
+        return addDouble(e.doubleValue());
+    }
+
+    public boolean addDouble(double e) {
+        this.onElementsAdd(1);
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, nextCapacity(elements.length, size + 1));
+        }
+        elements[size++] = e;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void add(int index, Number element) {
+        checkPositionIndex(index);
+        this.onElementsAdd(1);
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, nextCapacity(elements.length, size + 1));
+        }
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = element.doubleValue();
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Double remove(int index) {
+        checkIndex(index);
+        double oldValue = elements[index];
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        size--;
+        modCount++;
+        this.onElementsRemove(1);
+        return oldValue;
+    }
+
+    /**
+     * Compares the elements unboxed, with the semantics of {@link Double#equals(Object)}.
+     */
+    @Override
+    public int indexOf(Object o) {
+        return indexOf(o, 0);
+    }
+
+    public int indexOf(Object o, int fromIndex) {
+        if (!(o instanceof Double)) {
+            return -1;
+        }
+        long bits = Double.doubleToLongBits((Double) o);
+        for (int i = Math.max(fromIndex, 0); i < size; i++) {
+            if (Double.doubleToLongBits(elements[i]) == bits) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        if (!(o instanceof Double)) {
+            return -1;
+        }
+        long bits = Double.doubleToLongBits((Double) o);
+        for (int i = size - 1; i >= 0; i--) {
+            if (Double.doubleToLongBits(elements[i]) == bits) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o, 0) >= 0;
+    }
+
+    public void sort() {
+        this.sort(true);
+    }
+
+    /**
+     * Sorts the elements in place without boxing them.
+     */
+    public void sort(boolean asc) {
+        Arrays.sort(elements, 0, size);
+        if (!asc) {
+            for (int i = 0, j = size - 1; i < j; i++, j--) {
+                double tmp = elements[i];
+                elements[i] = elements[j];
+                elements[j] = tmp;
+            }
+        }
+        modCount++;
+    }
+
+    public Double min() {
+        if (size == 0) {
+            return null;
+        }
+        double min = elements[0];
+        for (int i = 1; i < size; i++) {
+            min = Math.min(min, elements[i]);
+        }
+        return min;
+    }
+
+    public Double max() {
+        if (size == 0) {
+            return null;
+        }
+        double max = elements[0];
+        for (int i = 1; i < size; i++) {
+            max = Math.max(max, elements[i]);
+        }
+        return max;
+    }
+
+    @Override
+    public double sum() {
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += elements[i];
+        }
+        return sum;
+    }
+
+    public double[] toDoubleArray() {
+        return Arrays.copyOf(elements, size);
+    }
+}
@@ -2,48 +2,15 @@ package org.mvel2.execution;
 
 import org.mvel2.ExecutionContext;
 
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 public class ExecutionHashMap<K, V> extends LinkedHashMap<K, V> implements ExecutionObject {
 
-    private static final Comparator compByValueStringAsc = new Comparator() {
-        public int compare(Object o1, Object o2) {
-            String first = String.valueOf(((Map.Entry) o1).getValue());
-            String second = String.valueOf(((Map.Entry) o2).getValue());
-            return first.compareTo(second);
-        }
-    };
-    private static final Comparator compByValueStringDesc = new Comparator() {
-        public int compare(Object o1, Object o2) {
-            String first = String.valueOf(((Map.Entry) o1).getValue());
-            String second = String.valueOf(((Map.Entry) o2).getValue());
-            return second.compareTo(first);
-        }
-    };
-
-    private static final Comparator compByValueDoubleAsc = new Comparator() {
-        public int compare(Object o1, Object o2) {
-            Double first = Double.parseDouble(String.valueOf(((Map.Entry) o1).getValue()));
-            Double second = Double.parseDouble(String.valueOf(((Map.Entry) o2).getValue()));
-            return first.compareTo(second);
-        }
-    };
-
-    private static final Comparator compByValueDoubleDesc = new Comparator() {
-        public int compare(Object o1, Object o2) {
-            Double first = Double.parseDouble(String.valueOf(((Map.Entry) o1).getValue()));
-            Double second = Double.parseDouble(String.valueOf(((Map.Entry) o2).getValue()));
-            return second.compareTo(first);
-        }
-    };
-
     private final ExecutionContext executionContext;
 
     private final int id;
@@ -74,11 +41,12 @@ public class ExecutionHashMap<K, V> extends LinkedHashMap<K, V> implements Execu
 
     @Override
     public Set<Entry<K, V>> entrySet() {
-        Set<Entry<K, V>> executionEntries = new LinkedHashSet<>();
-        for (Entry<K, V> entry : super.entrySet()) {
-            executionEntries.add(new ExecutionEntry<>(entry.getKey(), entry.getValue()));
-        }
-        return executionEntries;
+        return new EntrySetView();
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return new KeySetView();
     }
 
     @Override
@@ -142,14 +110,20 @@ public class ExecutionHashMap<K, V> extends LinkedHashMap<K, V> implements Execu
         return new ExecutionArrayList<>(super.keySet(), this.executionContext);
     }
 
+    private void onEntryRemove(K key, V value) {
+        this.memorySize -= this.executionContext.onValRemove(this, key, value);
+    }
+
     public void sortByValue() {
         sortByValue(true);
     }
 
     public void sortByValue(boolean asc) {
-        Map valueSort = sortMapByValue((HashMap) super.clone(), asc);
-        valueSort.keySet().forEach(this::remove);
-        this.putAll(valueSort);
+        if (size() > 1) {
+            Object[] keys = super.keySet().toArray();
+            Object[] values = super.values().toArray();
+            reorder(keys, values, KeySort.order(values, asc));
+        }
     }
 
     public void sortByKey() {
@@ -157,23 +131,162 @@ public class ExecutionHashMap<K, V> extends LinkedHashMap<K, V> implements Execu
     }
 
     public void sortByKey(boolean asc) {
-        ExecutionArrayList keys = this.keys();
-        keys.sort(asc);
-        HashMap keysMapSort = new LinkedHashMap();
-        keys.forEach(k -> keysMapSort.put(k, this.get(k)));
-        keysMapSort.keySet().forEach(this::remove);
-        this.putAll(keysMapSort);
-    }
-
-    private <K, V extends Comparable<? super V>> Map<K, V> sortMapByValue(Map<K, V> map, boolean asc) {
-        boolean isString = this.values().validateClazzInArrayIsOnlyString();
-        Comparator<? super Map.Entry> cmp =
-                isString ?
-                        asc ? compByValueStringAsc : compByValueStringDesc :
-                        asc ? compByValueDoubleAsc : compByValueDoubleDesc;
-        return map.entrySet()
-                .stream()
-                .sorted(cmp)
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (e1, e2) -> e1, LinkedHashMap::new));
+        if (size() > 1) {
+            Object[] keys = super.keySet().toArray();
+            Object[] values = super.values().toArray();
+            reorder(keys, values, KeySort.order(keys, asc));
+        }
+    }
+
+    /**
+     * Relinks the entries in the given order. The entries stay the same, so the memory accounting is left as is.
+     */
+    private void reorder(Object[] keys, Object[] values, int[] order) {
+        super.clear();
+        for (int i : order) {
+            super.put((K) keys[i], (V) values[i]);
+        }
+    }
+
+    /**
+     * Live view of the entries. Entries are created one at a time while iterating, and removals
+     * and {@link Entry#setValue(Object)} go through the map so that memory accounting is kept.
+     */
+    private final class EntrySetView extends AbstractSet<Entry<K, V>> {
+
+        private final Set<Entry<K, V>> entries = ExecutionHashMap.super.entrySet();
+
+        @Override
+        public int size() {
+            return ExecutionHashMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return entries.contains(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (entries.contains(o)) {
+                ExecutionHashMap.this.remove(((Entry<?, ?>) o).getKey());
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void clear() {
+            ExecutionHashMap.this.clear();
+        }
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            Iterator<Entry<K, V>> it = entries.iterator();
+            return new Iterator<Entry<K, V>>() {
+                private Entry<K, V> current;
+
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Entry<K, V> next() {
+                    current = it.next();
+                    return new LiveEntry(current);
+                }
+
+                @Override
+                public void remove() {
+                    it.remove();
+                    onEntryRemove(current.getKey(), current.getValue());
+                }
+            };
+        }
+    }
+
+    /**
+     * Entry returned while iterating the entries. {@link #setValue(Object)} replaces the value in place, without a
+     * structural change of the map, so that it can be called while iterating, and updates the memory accounting.
+     * A null value would remove the entry from the map, so it is rejected; remove the entry instead.
+     */
+    private final class LiveEntry extends ExecutionEntry<K, V> {
+
+        private final Entry<K, V> entry;
+
+        LiveEntry(Entry<K, V> entry) {
+            super(entry.getKey(), entry.getValue());
+            this.entry = entry;
+        }
+
+        @Override
+        public V setValue(V value) {
+            if (value == null) {
+                throw new IllegalArgumentException("Can not set null value of entry: " + key + ", remove the entry instead");
+            }
+            V oldValue = entry.setValue(value);
+            onEntryRemove(key, oldValue);
+            memorySize += executionContext.onValAdd(ExecutionHashMap.this, key, value);
+            this.value = value;
+            return oldValue;
+        }
+    }
+
+    /**
+     * Live view of the keys, removals go through the map so that memory accounting is kept.
+     */
+    private final class KeySetView extends AbstractSet<K> {
+
+        private final Set<Entry<K, V>> entries = ExecutionHashMap.super.entrySet();
+
+        @Override
+        public int size() {
+            return ExecutionHashMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return ExecutionHashMap.this.containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (ExecutionHashMap.this.containsKey(o)) {
+                ExecutionHashMap.this.remove(o);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void clear() {
+            ExecutionHashMap.this.clear();
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            Iterator<Entry<K, V>> it = entries.iterator();
+            return new Iterator<K>() {
+                private Entry<K, V> current;
+
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public K next() {
+                    current = it.next();
+                    return current.getKey();
+                }
+
+                @Override
+                public void remove() {
+                    it.remove();
+                    onEntryRemove(current.getKey(), current.getValue());
+                }
+            };
+        }
     }
 }
@@ -0,0 +1,208 @@
+package org.mvel2.execution;
+
+import org.mvel2.ExecutionContext;
+import org.mvel2.ScriptRuntimeException;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * List of integral numbers stored as a {@code long[]}. Only {@link Byte}, {@link Short}, {@link Integer}
+ * and {@link Long} values may be added.
+ */
+public class ExecutionLongList extends ExecutionNumericList<Long> {
+
+    private static final long[] EMPTY = {};
+
+    private long[] elements;
+
+    public ExecutionLongList(ExecutionContext executionContext) {
+        super(executionContext);
+        this.elements = EMPTY;
+    }
+
+    public ExecutionLongList(Collection<? extends Number> c, ExecutionContext executionContext) {
+        super(executionContext);
+        this.elements = new long[c.size()];
+        for (Number n : c) {
+            this.elements[size++] = toLong(n);
+        }
+        this.onElementsAdd(size);
+    }
+
+    static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    private static long toLong(Number value) {
+        if (!isIntegral(value)) {
+            throw new ScriptRuntimeException("Unsupported value type for long list: " + (value == null ? "null" : value.getClass().getName()));
+        }
+        return value.longValue();
+    }
+
+    @Override
+    protected int elementSize() {
+        return 8;
+    }
+
+    @Override
+    public Long get(int index) {
+        return getLong(index);
+    }
+
+    public long getLong(int index) {
+        checkIndex(index);
+        return elements[index];
+    }
+
+    @Override
+    public double getDouble(int index) {
+        return getLong(index);
+    }
+
+    @Override
+    public Long set(int index, Number element) {
+        return setLong(index, toLong(element));
+    }
+
+    public long setLong(int index, long element) {
+        checkIndex(index);
+        long oldValue = elements[index];
+        elements[index] = element;
+        return oldValue;
+    }
+
+    @Override
+    public boolean add(Number e) {
+        return addLong(toLong(e));
+    }
+
+    public boolean addLong(long e) {
+        this.onElementsAdd(1);
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, nextCapacity(elements.length, size + 1));
+        }
+        elements[size++] = e;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void add(int index, Number element) {
+        checkPositionIndex(index);
+        long value = toLong(element);
+        this.onElementsAdd(1);
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, nextCapacity(elements.length, size + 1));
+        }
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = value;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Long remove(int index) {
+        checkIndex(index);
+        long oldValue = elements[index];
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        size--;
+        modCount++;
+        this.onElementsRemove(1);
+        return oldValue;
+    }
+
+    /**
+     * Compares the elements unboxed, with the semantics of {@link Long#equals(Object)}.
+     */
+    @Override
+    public int indexOf(Object o) {
+        return indexOf(o, 0);
+    }
+
+    public int indexOf(Object o, int fromIndex) {
+        if (!(o instanceof Long)) {
+            return -1;
+        }
+        long value = (Long) o;
+        for (int i = Math.max(fromIndex, 0); i < size; i++) {
+            if (elements[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        if (!(o instanceof Long)) {
+            return -1;
+        }
+        long value = (Long) o;
+        for (int i = size - 1; i >= 0; i--) {
+            if (elements[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o, 0) >= 0;
+    }
+
+    public void sort() {
+        this.sort(true);
+    }
+
+    /**
+     * Sorts the elements in place without boxing them.
+     */
+    public void sort(boolean asc) {
+        Arrays.sort(elements, 0, size);
+        if (!asc) {
+            for (int i = 0, j = size - 1; i < j; i++, j--) {
+                long tmp = elements[i];
+                elements[i] = elements[j];
+                elements[j] = tmp;
+            }
+        }
+        modCount++;
+    }
+
+    public Long min() {
+        if (size == 0) {
+            return null;
+        }
+        long min = elements[0];
+        for (int i = 1; i < size; i++) {
+            min = Math.min(min, elements[i]);
+        }
+        return min;
+    }
+
+    public Long max() {
+        if (size == 0) {
+            return null;
+        }
+        long max = elements[0];
+        for (int i = 1; i < size; i++) {
+            max = Math.max(max, elements[i]);
+        }
+        return max;
+    }
+
+    public long longSum() {
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += elements[i];
+        }
+        return sum;
+    }
+
+    public long[] toLongArray() {
+        return Arrays.copyOf(elements, size);
+    }
+}
@@ -0,0 +1,116 @@
+package org.mvel2.execution;
+
+import org.mvel2.ExecutionContext;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Base class of the primitive-backed numeric lists. Elements are stored unboxed and accounted in
+ * {@link ExecutionContext} by their primitive width, the same way primitive arrays are. The aggregates, the searches
+ * and sorting read the primitive array without boxing. Reading a single element from a script, by index or in a
+ * foreach loop, boxes it, since script values are objects.
+ * <p>
+ * Numeric lists are only created explicitly, with {@link ExecutionArrayList#toDoubleList()},
+ * {@link ExecutionArrayList#toLongList()} or {@link ExecutionArrayList#toNumericList()}; array literals stay
+ * {@link ExecutionArrayList} so that any value may be added to them.
+ */
+public abstract class ExecutionNumericList<E extends Number> extends AbstractList<Number> implements ExecutionObject, RandomAccess, Serializable {
+
+    protected final ExecutionContext executionContext;
+
+    private final int id;
+
+    protected int size = 0;
+
+    private long memorySize = 0;
+
+    protected ExecutionNumericList(ExecutionContext executionContext) {
+        this.executionContext = executionContext;
+        this.id = executionContext.nextId();
+    }
+
+    /**
+     * Size in bytes of a single element.
+     */
+    protected abstract int elementSize();
+
+    @Override
+    public abstract E get(int index);
+
+    @Override
+    public abstract E remove(int index);
+
+    public abstract double getDouble(int index);
+
+    public double sum() {
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += getDouble(i);
+        }
+        return sum;
+    }
+
+    public double avg() {
+        return size == 0 ? 0 : sum() / size;
+    }
+
+    public boolean push(Number e) {
+        return this.add(e);
+    }
+
+    public E pop() {
+        return size == 0 ? null : this.remove(size - 1);
+    }
+
+    public int length() {
+        return size;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        this.onElementsRemove(size);
+        this.size = 0;
+        this.modCount++;
+    }
+
+    @Override
+    public int getExecutionObjectId() {
+        return id;
+    }
+
+    @Override
+    public long memorySize() {
+        return memorySize;
+    }
+
+    protected void onElementsAdd(int count) {
+        this.memorySize += this.executionContext.onValAdd(this, (long) count * elementSize());
+    }
+
+    protected void onElementsRemove(int count) {
+        this.memorySize -= this.executionContext.onValRemove(this, (long) count * elementSize());
+    }
+
+    protected int nextCapacity(int capacity, int minCapacity) {
+        return Math.max(minCapacity, capacity < 5 ? 10 : capacity + (capacity >> 1));
+    }
+
+    protected void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    protected void checkPositionIndex(int index) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
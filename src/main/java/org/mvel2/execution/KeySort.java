@@ -0,0 +1,107 @@
+package org.mvel2.execution;
+
+/**
+ * Stable sorting by keys extracted once per element, instead of converting both operands in every comparison.
+ * <p>
+ * Values that are all strings are ordered as strings. Otherwise each value is converted to a {@code double} key once,
+ * and the values are ordered by their keys; a value that is not a number is parsed from its string form, which fails
+ * with a {@link NumberFormatException} if it is not numeric.
+ */
+final class KeySort {
+
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    private KeySort() {
+    }
+
+    /**
+     * Returns the indexes of the values in sorted order, equal values keeping their relative order.
+     */
+    static int[] order(Object[] values, boolean asc) {
+        if (isOnlyStrings(values)) {
+            String[] keys = new String[values.length];
+            for (int i = 0; i < values.length; i++) {
+                keys[i] = (String) values[i];
+            }
+            return asc ? order(values.length, (a, b) -> keys[a].compareTo(keys[b]))
+                    : order(values.length, (a, b) -> keys[b].compareTo(keys[a]));
+        }
+        double[] keys = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            keys[i] = numericKey(values[i]);
+        }
+        return asc ? order(keys.length, (a, b) -> Double.compare(keys[a], keys[b]))
+                : order(keys.length, (a, b) -> Double.compare(keys[b], keys[a]));
+    }
+
+    static boolean isOnlyStrings(Object[] values) {
+        for (Object value : values) {
+            if (!(value instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The numeric key of a value. Boxed primitives whose string form parses back to their double value are converted
+     * directly; other values, such as floats, are parsed from their string form.
+     */
+    static double numericKey(Object value) {
+        if (value instanceof Double || value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).doubleValue();
+        }
+        return Double.parseDouble(String.valueOf(value));
+    }
+
+    private static int[] order(int size, IndexComparator cmp) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        for (int from = 0; from < size; from += INSERTION_SORT_THRESHOLD) {
+            insertionSort(order, from, Math.min(from + INSERTION_SORT_THRESHOLD, size), cmp);
+        }
+        int[] src = order;
+        int[] dst = new int[size];
+        for (int width = INSERTION_SORT_THRESHOLD; width < size; width *= 2) {
+            for (int from = 0; from < size; from += 2 * width) {
+                int mid = Math.min(from + width, size);
+                merge(src, dst, from, mid, Math.min(from + 2 * width, size), cmp);
+            }
+            int[] tmp = src;
+            src = dst;
+            dst = tmp;
+        }
+        return src;
+    }
+
+    private static void insertionSort(int[] order, int from, int to, IndexComparator cmp) {
+        for (int i = from + 1; i < to; i++) {
+            int current = order[i];
+            int j = i - 1;
+            while (j >= from && cmp.compare(order[j], current) > 0) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = current;
+        }
+    }
+
+    private static void merge(int[] src, int[] dst, int from, int mid, int to, IndexComparator cmp) {
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < mid && cmp.compare(src[left], src[right]) <= 0)) {
+                dst[i] = src[left++];
+            } else {
+                dst[i] = src[right++];
+            }
+        }
+    }
+
+    private interface IndexComparator {
+        int compare(int a, int b);
+    }
+}
@@ -70,7 +70,12 @@ public class ClassImportResolverFactory extends BaseVariableResolverFactory {
 
   public boolean isTarget(String name) {
     if (name == null) return false;
-    return (imports != null && imports.containsKey(name)) || (dynImports != null && dynImports.containsKey(name));
+    boolean imported = (imports != null && imports.containsKey(name)) || (dynImports != null && dynImports.containsKey(name));
+    if (isIndexedFactory()) {
+      // imports are resolved by name, the indexed variables of the next factory by index
+      return !imported && nextFactory.isTarget(name);
+    }
+    return imported;
   }
 
   public boolean isResolveable(String name) {
@@ -117,6 +122,20 @@ public class ClassImportResolverFactory extends BaseVariableResolverFactory {
     //   variableResolvers.clear();
   }
 
+  @Override
+  public int variableIndexOf(String name) {
+    return nextFactory != null ? nextFactory.variableIndexOf(name) : -1;
+  }
+
+  /**
+   * The factory is indexed if the factory it imports into is, so that the indexed variables of the next factory are
+   * accessed by index through it.
+   */
+  @Override
+  public boolean isIndexedFactory() {
+    return nextFactory != null && nextFactory.isIndexedFactory();
+  }
+
   public Map<String, Object> getImportedClasses() {
     return imports;
   }
@@ -23,6 +23,7 @@ import org.mvel2.integration.VariableResolver;
 import org.mvel2.integration.VariableResolverFactory;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -68,19 +69,20 @@ public class IndexedVariableResolverFactory extends BaseVariableResolverFactory
     VariableResolver vr = getResolver(name);
     if (vr != null) {
       vr.setValue(value);
+      return vr;
     }
-    return vr;
+    if (nextFactory == null) nextFactory = new MapVariableResolverFactory(new HashMap());
+    return nextFactory.createVariable(name, value);
   }
 
   public VariableResolver createVariable(String name, Object value, Class<?> type) {
     VariableResolver vr = getResolver(name);
     if (vr != null) {
       vr.setValue(value);
+      return vr;
     }
-    return vr;
-
-//        if (nextFactory == null) nextFactory = new MapVariableResolverFactory(new HashMap());
-//        return nextFactory.createVariable(name, value, type);
+    if (nextFactory == null) nextFactory = new MapVariableResolverFactory(new HashMap());
+    return nextFactory.createVariable(name, value, type);
   }
 
   public VariableResolver getVariableResolver(String name) {
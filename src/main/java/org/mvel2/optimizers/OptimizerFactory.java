@@ -20,6 +20,7 @@ package org.mvel2.optimizers;
 
 import org.mvel2.optimizers.dynamic.DynamicOptimizer;
 import org.mvel2.optimizers.impl.asm.ASMAccessorOptimizer;
+import org.mvel2.optimizers.impl.mh.MethodHandleAccessorOptimizer;
 import org.mvel2.optimizers.impl.refl.ReflectiveAccessorOptimizer;
 
 import java.util.HashMap;
@@ -30,6 +31,7 @@ import java.util.logging.Logger;
 public class OptimizerFactory {
   public static String DYNAMIC = "dynamic";
   public static String SAFE_REFLECTIVE = "reflective";
+  public static String METHOD_HANDLES = "methodHandles";
 
   private static final Logger LOG = Logger.getLogger(OptimizerFactory.class.getName());
   private static String defaultOptimizer;
@@ -41,6 +43,7 @@ public class OptimizerFactory {
   static {
     accessorCompilers.put(SAFE_REFLECTIVE, new ReflectiveAccessorOptimizer());
     accessorCompilers.put(DYNAMIC, new DynamicOptimizer());
+    accessorCompilers.put(METHOD_HANDLES, new MethodHandleAccessorOptimizer());
     /**
      * By default, activate the JIT if ASM is present in the classpath
      */
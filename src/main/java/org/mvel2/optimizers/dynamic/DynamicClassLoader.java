@@ -20,52 +20,108 @@ package org.mvel2.optimizers.dynamic;
 
 import org.mvel2.util.MVELClassLoader;
 
-import java.util.LinkedList;
-
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Class loader for generated accessors. Besides the loader shared by expressions compiled without a
+ * parser context, every root {@link org.mvel2.ParserContext} owns one, so that the accessors of a script
+ * can be deoptimized and unloaded without affecting other scripts.
+ */
 public class DynamicClassLoader extends ClassLoader implements MVELClassLoader {
-  private int totalClasses;
+  private static final AtomicLong definedClasses = new AtomicLong();
+  private static final AtomicLong unloadableClasses = new AtomicLong();
+  private static final AtomicLong recycleCount = new AtomicLong();
+
+  private final AtomicInteger totalClasses = new AtomicInteger();
   private int tenureLimit;
-  private final LinkedList<DynamicAccessor> allAccessors = new LinkedList<DynamicAccessor>();
+  private final Queue<DynamicAccessor> allAccessors = new ConcurrentLinkedQueue<DynamicAccessor>();
+  private final AtomicInteger accessorCount = new AtomicInteger();
 
   public DynamicClassLoader(ClassLoader classLoader, int tenureLimit) {
     super(classLoader);
     this.tenureLimit = tenureLimit;
   }
 
-  public Class defineClassX(String className, byte[] b, int start, int end) {
-    totalClasses++;
+  @Override
+  protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+    /**
+     * Generated accessors link against the MVEL runtime itself, which a sandboxed parent class loader
+     * deliberately hides from scripts, so those classes are always resolved from our own loader.
+     */
+    if (name.startsWith("org.mvel2.")) {
+      return DynamicClassLoader.class.getClassLoader().loadClass(name);
+    }
+    return super.loadClass(name, resolve);
+  }
+
+  public synchronized Class defineClassX(String className, byte[] b, int start, int end) {
+    totalClasses.incrementAndGet();
+    definedClasses.incrementAndGet();
     return super.defineClass(className, b, start, end);
   }
 
   public int getTotalClasses() {
-    return totalClasses;
+    return totalClasses.get();
   }
 
   public DynamicAccessor registerDynamicAccessor(DynamicAccessor accessor) {
-    synchronized (allAccessors) {
-      allAccessors.add(accessor);
-      while (allAccessors.size() > tenureLimit) {
-        DynamicAccessor da = allAccessors.removeFirst();
-        if (da != null) {
-          da.deoptimize();
-        }
+    assert accessor != null;
+    allAccessors.add(accessor);
+    accessorCount.incrementAndGet();
+    while (accessorCount.get() > tenureLimit) {
+      DynamicAccessor da = allAccessors.poll();
+      if (da == null) {
+        break;
       }
-      assert accessor != null;
-      return accessor;
+      accessorCount.decrementAndGet();
+      da.deoptimize();
     }
+    return accessor;
   }
 
   public void deoptimizeAll() {
-    synchronized (allAccessors) {
-      for (DynamicAccessor a : allAccessors) {
-        if (a != null) a.deoptimize();
-      }
-      allAccessors.clear();
+    DynamicAccessor a;
+    while ((a = allAccessors.poll()) != null) {
+      accessorCount.decrementAndGet();
+      a.deoptimize();
     }
   }
 
+  /**
+   * Deoptimizes all the accessors registered with this loader, so that the loader and its classes
+   * become unreachable once it is no longer used to define new classes.
+   */
+  public void recycle() {
+    deoptimizeAll();
+    recycleCount.incrementAndGet();
+    unloadableClasses.addAndGet(getTotalClasses());
+  }
+
   public boolean isOverloaded() {
-    return tenureLimit < totalClasses;
+    return tenureLimit < totalClasses.get();
+  }
+
+  /**
+   * Total number of accessor classes defined by all the loaders.
+   */
+  public static long getDefinedClassCount() {
+    return definedClasses.get();
+  }
+
+  /**
+   * Number of accessor classes released by recycled loaders, which the JVM may unload.
+   */
+  public static long getUnloadableClassCount() {
+    return unloadableClasses.get();
+  }
+
+  /**
+   * Number of times a loader was recycled because it exceeded its tenure limit.
+   */
+  public static long getRecycleCount() {
+    return recycleCount.get();
   }
 }
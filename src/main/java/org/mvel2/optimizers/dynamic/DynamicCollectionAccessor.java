@@ -83,12 +83,11 @@ public class DynamicCollectionAccessor implements DynamicAccessor {
 
   private Object optimize(ParserContext pCtx, Object ctx, Object elCtx, VariableResolverFactory variableResolverFactory) {
 
-    if (DynamicOptimizer.isOverloaded()) {
-      DynamicOptimizer.enforceTenureLimit();
-    }
+    DynamicOptimizer.enforceTenureLimit(pCtx);
 
     _accessor = OptimizerFactory.getAccessorCompiler("ASM").optimizeCollection(pCtx, rootObject, colType,
         property, start, offset, ctx, elCtx, variableResolverFactory);
+    DynamicOptimizer.registerOptimized(pCtx, this);
     return _accessor.getValue(ctx, elCtx, variableResolverFactory);
   }
 
@@ -24,6 +24,7 @@ import org.mvel2.integration.VariableResolverFactory;
 import org.mvel2.optimizers.AccessorOptimizer;
 import org.mvel2.optimizers.OptimizationNotSupported;
 import org.mvel2.optimizers.OptimizerFactory;
+import org.mvel2.optimizers.impl.asm.ASMAccessorChainCompiler;
 
 import static java.lang.System.currentTimeMillis;
 
@@ -37,12 +38,16 @@ public class DynamicGetAccessor implements DynamicAccessor {
 
   private int runcount;
 
-  private boolean opt = false;
+  /**
+   * Written last when the accessor is deoptimized, which may happen on another thread, so that reading it
+   * publishes the reset {@link #runcount} and {@link #stamp}.
+   */
+  private volatile boolean opt = false;
 
   private ParserContext pCtx;
 
   private Accessor _safeAccessor;
-  private Accessor _accessor;
+  private volatile Accessor _accessor;
 
   public DynamicGetAccessor(ParserContext pCtx, char[] expr, int start, int offset, int type, Accessor _accessor) {
     this._safeAccessor = this._accessor = _accessor;
@@ -62,6 +67,12 @@ public class DynamicGetAccessor implements DynamicAccessor {
         if ((currentTimeMillis() - stamp) < DynamicOptimizer.timeSpan) {
           opt = true;
           try{
+            if (DynamicOptimizer.backgroundCompilation && type == DynamicOptimizer.REGULAR_ACCESSOR) {
+              if (!DynamicOptimizer.compileInBackground(new BackgroundOptimization())) {
+                deoptimize();
+              }
+              return _accessor.getValue(ctx, elCtx, variableFactory);
+            }
             return optimize(ctx, elCtx, variableFactory);
           }
           catch(OptimizationNotSupported ex){
@@ -85,30 +96,58 @@ public class DynamicGetAccessor implements DynamicAccessor {
 
   private Object optimize(Object ctx, Object elCtx, VariableResolverFactory variableResolverFactory) {
 
-    if (DynamicOptimizer.isOverloaded()) {
-      DynamicOptimizer.enforceTenureLimit();
-    }
+    DynamicOptimizer.enforceTenureLimit(pCtx);
 
     AccessorOptimizer ao = OptimizerFactory.getAccessorCompiler("ASM");
     switch (type) {
       case DynamicOptimizer.REGULAR_ACCESSOR:
         _accessor = ao.optimizeAccessor(pCtx, expr, start, offset, ctx, elCtx, variableResolverFactory, false, null);
+        DynamicOptimizer.registerOptimized(pCtx, this);
         return ao.getResultOptPass();
       case DynamicOptimizer.OBJ_CREATION:
         _accessor = ao.optimizeObjectCreation(pCtx, expr, start, offset, ctx, elCtx, variableResolverFactory);
+        DynamicOptimizer.registerOptimized(pCtx, this);
         return _accessor.getValue(ctx, elCtx, variableResolverFactory);
       case DynamicOptimizer.COLLECTION:
         _accessor = ao.optimizeCollection(pCtx, ctx, null, expr, start, offset, ctx, elCtx, variableResolverFactory);
+        DynamicOptimizer.registerOptimized(pCtx, this);
         return _accessor.getValue(ctx, elCtx, variableResolverFactory);
     }
     return null;
   }
 
+  /**
+   * Compiles the reflective accessor chain on the background compiler. Nothing is evaluated there and the task holds
+   * no reference to the context of the execution that made the accessor hot. A chain the compiler does not support
+   * keeps its reflective accessor for good.
+   */
+  private final class BackgroundOptimization extends DynamicOptimizer.BackgroundCompilation {
+    BackgroundOptimization() {
+      super(DynamicGetAccessor.this);
+    }
+
+    public void run() {
+      try {
+        DynamicOptimizer.enforceTenureLimit(pCtx);
+        Accessor compiled = ASMAccessorChainCompiler.compile(pCtx, _safeAccessor);
+        if (compiled != null) {
+          _accessor = compiled;
+          DynamicOptimizer.registerOptimized(pCtx, DynamicGetAccessor.this);
+          DynamicOptimizer.backgroundCompilationDone();
+        }
+      }
+      catch (Throwable e) {
+        // keep the safe reflective accessor until the accessor is hot again
+        deoptimize();
+      }
+    }
+  }
+
   public void deoptimize() {
     this._accessor = this._safeAccessor;
-    opt = false;
     runcount = 0;
     stamp = currentTimeMillis();
+    opt = false;
   }
 
   public long getStamp() {
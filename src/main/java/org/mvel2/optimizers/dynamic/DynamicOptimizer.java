@@ -25,9 +25,16 @@ import org.mvel2.integration.VariableResolverFactory;
 import org.mvel2.optimizers.AbstractOptimizer;
 import org.mvel2.optimizers.AccessorOptimizer;
 
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static java.lang.Thread.currentThread;
 import static org.mvel2.optimizers.OptimizerFactory.SAFE_REFLECTIVE;
@@ -37,52 +44,176 @@ import static org.mvel2.optimizers.impl.asm.ASMAccessorOptimizer.setMVELClassLoa
 public class DynamicOptimizer extends AbstractOptimizer implements AccessorOptimizer {
   private AccessorOptimizer firstStage = getAccessorCompiler(SAFE_REFLECTIVE);
 
-  private static final Object oLock = new Object();
-  private volatile static DynamicClassLoader classLoader;
+  /**
+   * The shared loader for accessors generated without a parser context. It is swapped for a fresh one when
+   * it is overloaded, so readers never need a lock.
+   */
+  private static final AtomicReference<DynamicClassLoader> classLoader = new AtomicReference<DynamicClassLoader>();
   public static int tenuringThreshold = 50;
   public static long timeSpan = 100;
   public static int maximumTenure = 1500;
-  public static int totalRecycled = 0;
+  private static final AtomicLong totalRecycled = new AtomicLong();
   private static volatile boolean useSafeClassloading = false;
-  private static ReadWriteLock lock = new ReentrantReadWriteLock();
-  private static Lock readLock = lock.readLock();
-  private static Lock writeLock = lock.writeLock();
+
+  /**
+   * When enabled, hot property accessors are compiled to bytecode on a background thread while the reflective
+   * accessor stays in service, instead of on the thread that crosses the {@link #tenuringThreshold}. That thread only
+   * queues the accessor; the background compiler generates the bytecode from the members the reflective accessor
+   * already resolved, without evaluating anything, see {@link org.mvel2.optimizers.impl.asm.ASMAccessorChainCompiler}.
+   * Accessors with nodes that compiler does not support stay reflective. Object creations and inline collections are
+   * still compiled synchronously.
+   */
+  public static volatile boolean backgroundCompilation = false;
+  public static int backgroundCompilationQueueSize = 1024;
+
+  private static volatile ExecutorService backgroundCompiler;
+  private static final AtomicLong backgroundCompiled = new AtomicLong();
+  private static final AtomicLong backgroundRejected = new AtomicLong();
 
   public void init() {
     _init();
   }
 
   private static void _init() {
-    setMVELClassLoader(classLoader = new DynamicClassLoader(currentThread().getContextClassLoader(), maximumTenure));
+    DynamicClassLoader cl = new DynamicClassLoader(currentThread().getContextClassLoader(), maximumTenure);
+    classLoader.set(cl);
+    setMVELClassLoader(cl);
   }
 
   public static void enforceTenureLimit() {
-    writeLock.lock();
-    try{
-  	  if (classLoader.isOverloaded()) {
-        classLoader.deoptimizeAll();
-        totalRecycled = +classLoader.getTotalClasses();
-        _init();
+    DynamicClassLoader cl = classLoader.get();
+    if (cl.isOverloaded()) {
+      DynamicClassLoader next = new DynamicClassLoader(currentThread().getContextClassLoader(), maximumTenure);
+      // only the thread that swaps the generation recycles the old one
+      if (classLoader.compareAndSet(cl, next)) {
+        setMVELClassLoader(next);
+        cl.recycle();
+        totalRecycled.addAndGet(cl.getTotalClasses());
+      }
+    }
+  }
+
+  /**
+   * Recycles the accessor class loader of the script compiled with the given context if it holds more classes
+   * than {@link #maximumTenure}. Only the accessors of that script are deoptimized.
+   */
+  public static void enforceTenureLimit(ParserContext pCtx) {
+    if (pCtx == null) {
+      if (isOverloaded()) {
+        enforceTenureLimit();
+      }
+      return;
+    }
+    DynamicClassLoader cl = pCtx.getAccessorClassLoader();
+    if (cl.isOverloaded() && pCtx.recycleAccessorClassLoader(cl)) {
+      cl.recycle();
+      totalRecycled.addAndGet(cl.getTotalClasses());
+    }
+  }
+
+  /**
+   * Registers an accessor that has just been optimized, so that it is deoptimized when the class loader
+   * holding its generated class is recycled.
+   */
+  static void registerOptimized(ParserContext pCtx, DynamicAccessor accessor) {
+    (pCtx == null ? classLoader.get() : pCtx.getAccessorClassLoader()).registerDynamicAccessor(accessor);
+  }
+
+  /**
+   * Submits an accessor compilation to the background compiler. Returns {@code false} if the compiler queue is
+   * full, in which case the caller keeps its current accessor and may try again later.
+   */
+  static boolean compileInBackground(BackgroundCompilation compilation) {
+    try {
+      getBackgroundCompiler().execute(compilation);
+      return true;
+    }
+    catch (RejectedExecutionException e) {
+      backgroundRejected.incrementAndGet();
+      return false;
+    }
+  }
+
+  static void backgroundCompilationDone() {
+    backgroundCompiled.incrementAndGet();
+  }
+
+  private static ExecutorService getBackgroundCompiler() {
+    ExecutorService executor = backgroundCompiler;
+    if (executor == null) {
+      synchronized (DynamicOptimizer.class) {
+        if ((executor = backgroundCompiler) == null) {
+          executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+              new ArrayBlockingQueue<Runnable>(backgroundCompilationQueueSize), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+              Thread thread = new Thread(r, "mvel-accessor-compiler");
+              thread.setDaemon(true);
+              return thread;
+            }
+          }, new ThreadPoolExecutor.AbortPolicy());
+          backgroundCompiler = executor;
+        }
+      }
+    }
+    return executor;
+  }
+
+  /**
+   * Stops the background compiler; pending compilations are discarded and their accessors stay reflective
+   * until they are hot again. A new compiler is started on demand.
+   */
+  public static void shutdownBackgroundCompiler() {
+    ExecutorService executor;
+    synchronized (DynamicOptimizer.class) {
+      executor = backgroundCompiler;
+      backgroundCompiler = null;
+    }
+    if (executor != null) {
+      for (Runnable pending : executor.shutdownNow()) {
+        ((BackgroundCompilation) pending).accessor.deoptimize();
       }
     }
-	  finally{
-	    writeLock.unlock();
-	  }
+  }
+
+  /**
+   * A compilation of a hot accessor queued on the background compiler.
+   */
+  static abstract class BackgroundCompilation implements Runnable {
+    final DynamicAccessor accessor;
+
+    BackgroundCompilation(DynamicAccessor accessor) {
+      this.accessor = accessor;
+    }
+  }
+
+  /**
+   * Number of generated accessor classes in the class loaders recycled so far.
+   */
+  public static long getTotalRecycled() {
+    return totalRecycled.get();
+  }
+
+  /**
+   * Number of accessors compiled by the background compiler.
+   */
+  public static long getBackgroundCompiledCount() {
+    return backgroundCompiled.get();
+  }
+
+  /**
+   * Number of background compilations rejected because the compiler queue was full.
+   */
+  public static long getBackgroundRejectedCount() {
+    return backgroundRejected.get();
   }
 
   public static final int REGULAR_ACCESSOR = 0;
 
   public Accessor optimizeAccessor(ParserContext pCtx, char[] property, int start, int offset, Object ctx, Object thisRef,
                                    VariableResolverFactory factory, boolean rootThisRef, Class ingressType) {
-    readLock.lock();
-    try{
-      pCtx.optimizationNotify();
-      return classLoader.registerDynamicAccessor(new DynamicGetAccessor(pCtx, property, start, offset, 0,
-          firstStage.optimizeAccessor(pCtx, property, start, offset, ctx, thisRef, factory, rootThisRef, ingressType)));
-    }
-    finally{
-      readLock.unlock();
-    }
+    pCtx.optimizationNotify();
+    return new DynamicGetAccessor(pCtx, property, start, offset, 0,
+        firstStage.optimizeAccessor(pCtx, property, start, offset, ctx, thisRef, factory, rootThisRef, ingressType));
   }
 
   public static final int SET_ACCESSOR = 1;
@@ -90,46 +221,40 @@ public class DynamicOptimizer extends AbstractOptimizer implements AccessorOptim
   public Accessor optimizeSetAccessor(ParserContext pCtx, char[] property, int start, int offset, Object ctx, Object thisRef,
                                       VariableResolverFactory factory, boolean rootThisRef, Object value, Class valueType) {
 
-    readLock.lock();
-    try{
-      return classLoader.registerDynamicAccessor(new DynamicSetAccessor(pCtx, property, start, offset,
-          firstStage.optimizeSetAccessor(pCtx, property, start, offset, ctx, thisRef, factory, rootThisRef, value, valueType)));
-    }
-    finally{
-      readLock.unlock();
-    }
+    return new DynamicSetAccessor(pCtx, property, start, offset,
+        firstStage.optimizeSetAccessor(pCtx, property, start, offset, ctx, thisRef, factory, rootThisRef, value, valueType));
   }
 
   public static final int COLLECTION = 2;
 
   public Accessor optimizeCollection(ParserContext pCtx, Object rootObject, Class type, char[] property, int start,
                                      int offset, Object ctx, Object thisRef, VariableResolverFactory factory) {
-    readLock.lock();
-    try{
-      return classLoader.registerDynamicAccessor(new DynamicCollectionAccessor(pCtx, rootObject, type, property, start, offset, 2,
-          firstStage.optimizeCollection(pCtx, rootObject, type, property, start, offset, ctx, thisRef, factory)));
-    }
-    finally{
-      readLock.unlock();
-    }
+    return new DynamicCollectionAccessor(pCtx, rootObject, type, property, start, offset, 2,
+        firstStage.optimizeCollection(pCtx, rootObject, type, property, start, offset, ctx, thisRef, factory));
   }
 
   public static final int OBJ_CREATION = 3;
 
   public Accessor optimizeObjectCreation(ParserContext pCtx, char[] property, int start, int offset,
                                          Object ctx, Object thisRef, VariableResolverFactory factory) {
-    readLock.lock();
-    try{
-      return classLoader.registerDynamicAccessor(new DynamicGetAccessor(pCtx, property, start, offset, 3,
-          firstStage.optimizeObjectCreation(pCtx, property, start, offset, ctx, thisRef, factory)));
-    }
-    finally{
-      readLock.unlock();
-    }
+    return new DynamicGetAccessor(pCtx, property, start, offset, 3,
+        firstStage.optimizeObjectCreation(pCtx, property, start, offset, ctx, thisRef, factory));
   }
 
   public static boolean isOverloaded() {
-    return classLoader.isOverloaded();
+    return classLoader.get().isOverloaded();
+  }
+
+  /**
+   * Returns the used size of the JVM metaspace in bytes, or -1 if the JVM does not report it.
+   */
+  public static long getMetaspaceUsed() {
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if ("Metaspace".equals(pool.getName())) {
+        return pool.getUsage().getUsed();
+      }
+    }
+    return -1;
   }
 
   public Object getResultOptPass() {
@@ -75,14 +75,13 @@ public class DynamicSetAccessor implements DynamicAccessor {
   }
 
   private Object optimize(Object ctx, Object elCtx, VariableResolverFactory variableResolverFactory, Object value) {
-    if (DynamicOptimizer.isOverloaded()) {
-      DynamicOptimizer.enforceTenureLimit();
-    }
+    DynamicOptimizer.enforceTenureLimit(context);
 
     AccessorOptimizer ao = OptimizerFactory.getAccessorCompiler("ASM");
     _accessor = ao.optimizeSetAccessor(context, property, start, offset, ctx, elCtx,
         variableResolverFactory, false, value, value != null ? value.getClass() : Object.class);
     assert _accessor != null;
+    DynamicOptimizer.registerOptimized(context, this);
 
     return value;
   }
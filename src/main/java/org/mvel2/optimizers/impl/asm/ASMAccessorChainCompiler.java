@@ -0,0 +1,279 @@
+package org.mvel2.optimizers.impl.asm;
+
+import org.mvel2.ParserContext;
+import org.mvel2.asm.ClassWriter;
+import org.mvel2.asm.Label;
+import org.mvel2.asm.MethodVisitor;
+import org.mvel2.asm.Opcodes;
+import org.mvel2.asm.Type;
+import org.mvel2.compiler.Accessor;
+import org.mvel2.compiler.AccessorNode;
+import org.mvel2.optimizers.impl.refl.nodes.FieldAccessor;
+import org.mvel2.optimizers.impl.refl.nodes.GetterAccessor;
+import org.mvel2.optimizers.impl.refl.nodes.IndexedVariableAccessor;
+import org.mvel2.optimizers.impl.refl.nodes.ListAccessor;
+import org.mvel2.optimizers.impl.refl.nodes.MapAccessor;
+import org.mvel2.optimizers.impl.refl.nodes.MethodAccessor;
+import org.mvel2.optimizers.impl.refl.nodes.VariableAccessor;
+import org.mvel2.util.MVELClassLoader;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mvel2.util.ParseTools.boxPrimitive;
+
+/**
+ * Compiles a chain of reflective accessor nodes into a generated {@link Accessor}, without evaluating anything.
+ * <p>
+ * Unlike the {@link ASMAccessorOptimizer}, which resolves the members to access while it evaluates the expression,
+ * this compiler only reads the members the reflective optimizer already resolved, so it can run on any thread while
+ * the chain stays in service. Variable, map, list, field and getter accesses and calls of methods without arguments
+ * are supported; any other node makes the whole chain unsupported. Before accessing a member, the generated code
+ * checks that the receiver is an instance of the class declaring it; if it is not, the rest of the chain is
+ * evaluated by the reflective nodes, which handle overrides and report errors as before.
+ */
+public class ASMAccessorChainCompiler implements Opcodes {
+  private static final String NAMESPACE = "org/mvel2/";
+  private static final String OBJECT = "Ljava/lang/Object;";
+  private static final String FACTORY = NAMESPACE + "integration/VariableResolverFactory";
+  private static final String RESOLVER = NAMESPACE + "integration/VariableResolver";
+  private static final String ACCESSOR = NAMESPACE + "compiler/Accessor";
+
+  private static final int CTX = 1;
+  private static final int EL_CTX = 2;
+  private static final int FACTORY_VAR = 3;
+  private static final int CURR = 4;
+  private static final int VALUE = 4;
+
+  private static final AtomicLong classCount = new AtomicLong();
+
+  private final ArrayList<Object> refs = new ArrayList<Object>();
+  private final String className = "ASMAccessorChain_" + classCount.incrementAndGet();
+  private final ClassLoader classLoader;
+  private MethodVisitor mv;
+
+  private ASMAccessorChainCompiler(ClassLoader classLoader) {
+    this.classLoader = classLoader;
+  }
+
+  /**
+   * Compiles the chain starting with the given accessor, or returns {@code null} if it is not a chain of supported
+   * nodes. Classes generated for a parser context go to the accessor class loader of its script.
+   */
+  public static Accessor compile(ParserContext pCtx, Accessor accessor) throws Exception {
+    MVELClassLoader cl = pCtx == null ? ASMAccessorOptimizer.getMVELClassLoader() : pCtx.getAccessorClassLoader();
+    if (!(accessor instanceof AccessorNode) || !(cl instanceof ClassLoader)) {
+      return null;
+    }
+    ASMAccessorChainCompiler compiler = new ASMAccessorChainCompiler((ClassLoader) cl);
+    for (AccessorNode node = (AccessorNode) accessor; node != null; node = node.getNextNode()) {
+      if (!compiler.isSupported(node)) {
+        return null;
+      }
+    }
+    byte[] b = compiler.generate((AccessorNode) accessor);
+    Class<?> cls = cl.defineClassX(compiler.className, b, 0, b.length);
+    return (Accessor) cls.getConstructor(Object[].class).newInstance(new Object[]{compiler.refs.toArray()});
+  }
+
+  private boolean isSupported(AccessorNode node) {
+    Class<?> type = node.getClass();
+    if (type == VariableAccessor.class || type == IndexedVariableAccessor.class || type == MapAccessor.class
+        || type == ListAccessor.class) {
+      return true;
+    }
+    if (type == GetterAccessor.class) {
+      return isLinkable(((GetterAccessor) node).getMethod());
+    }
+    if (type == MethodAccessor.class) {
+      Method method = ((MethodAccessor) node).getMethod();
+      return method.getParameterTypes().length == 0 && isLinkable(method);
+    }
+    if (type == FieldAccessor.class) {
+      return isLinkable(((FieldAccessor) node).getField());
+    }
+    return false;
+  }
+
+  /**
+   * Returns whether the generated class can access the instance member directly.
+   */
+  private boolean isLinkable(Member member) {
+    if (member == null || !Modifier.isPublic(member.getModifiers()) || Modifier.isStatic(member.getModifiers())) {
+      return false;
+    }
+    Class<?> cls = member.getDeclaringClass();
+    if (!Modifier.isPublic(cls.getModifiers())) {
+      return false;
+    }
+    try {
+      return Class.forName(cls.getName(), false, classLoader) == cls;
+    }
+    catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  private byte[] generate(AccessorNode chain) {
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS + ClassWriter.COMPUTE_FRAMES);
+    cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, className, null, "java/lang/Object", new String[]{ACCESSOR});
+    cw.visitField(ACC_PRIVATE + ACC_FINAL, "refs", "[" + OBJECT, null, null).visitEnd();
+
+    mv = cw.visitMethod(ACC_PUBLIC, "<init>", "([" + OBJECT + ")V", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitFieldInsn(PUTFIELD, className, "refs", "[" + OBJECT);
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    mv = cw.visitMethod(ACC_PUBLIC, "getValue", "(" + OBJECT + OBJECT + "L" + FACTORY + ";)" + OBJECT, null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, CTX);
+    mv.visitVarInsn(ASTORE, CURR);
+    for (AccessorNode node = chain; node != null; node = node.getNextNode()) {
+      Label fallback = new Label();
+      Label next = new Label();
+      emitNode(node, fallback);
+      mv.visitVarInsn(ASTORE, CURR);
+      mv.visitJumpInsn(GOTO, next);
+
+      // the rest of the chain is evaluated by the reflective nodes
+      mv.visitLabel(fallback);
+      loadRef(node, ACCESSOR);
+      mv.visitVarInsn(ALOAD, CURR);
+      mv.visitVarInsn(ALOAD, EL_CTX);
+      mv.visitVarInsn(ALOAD, FACTORY_VAR);
+      mv.visitMethodInsn(INVOKEINTERFACE, ACCESSOR, "getValue", "(" + OBJECT + OBJECT + "L" + FACTORY + ";)" + OBJECT);
+      mv.visitInsn(ARETURN);
+      mv.visitLabel(next);
+    }
+    mv.visitVarInsn(ALOAD, CURR);
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(0, CURR + 1);
+    mv.visitEnd();
+
+    // assignments and the egress type are left to the reflective chain
+    mv = cw.visitMethod(ACC_PUBLIC, "setValue", "(" + OBJECT + OBJECT + "L" + FACTORY + ";" + OBJECT + ")" + OBJECT,
+        null, null);
+    mv.visitCode();
+    loadRef(chain, ACCESSOR);
+    mv.visitVarInsn(ALOAD, CTX);
+    mv.visitVarInsn(ALOAD, EL_CTX);
+    mv.visitVarInsn(ALOAD, FACTORY_VAR);
+    mv.visitVarInsn(ALOAD, VALUE);
+    mv.visitMethodInsn(INVOKEINTERFACE, ACCESSOR, "setValue",
+        "(" + OBJECT + OBJECT + "L" + FACTORY + ";" + OBJECT + ")" + OBJECT);
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    mv = cw.visitMethod(ACC_PUBLIC, "getKnownEgressType", "()Ljava/lang/Class;", null, null);
+    mv.visitCode();
+    loadRef(chain, ACCESSOR);
+    mv.visitMethodInsn(INVOKEINTERFACE, ACCESSOR, "getKnownEgressType", "()Ljava/lang/Class;");
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    cw.visitEnd();
+    return cw.toByteArray();
+  }
+
+  /**
+   * Emits the access of a node to the current value, leaving its result on the stack, or jumping to the fallback
+   * with an empty stack if the generated code cannot perform it.
+   */
+  private void emitNode(AccessorNode node, Label fallback) {
+    Class<?> type = node.getClass();
+    if (type == VariableAccessor.class) {
+      mv.visitVarInsn(ALOAD, FACTORY_VAR);
+      mv.visitJumpInsn(IFNULL, fallback);
+      mv.visitVarInsn(ALOAD, FACTORY_VAR);
+      mv.visitLdcInsn(((VariableAccessor) node).getProperty());
+      mv.visitMethodInsn(INVOKEINTERFACE, FACTORY, "getVariableResolver", "(Ljava/lang/String;)L" + RESOLVER + ";");
+      mv.visitMethodInsn(INVOKEINTERFACE, RESOLVER, "getValue", "()" + OBJECT);
+    }
+    else if (type == IndexedVariableAccessor.class) {
+      mv.visitVarInsn(ALOAD, FACTORY_VAR);
+      mv.visitJumpInsn(IFNULL, fallback);
+      mv.visitVarInsn(ALOAD, FACTORY_VAR);
+      mv.visitLdcInsn(((IndexedVariableAccessor) node).getRegister());
+      mv.visitMethodInsn(INVOKEINTERFACE, FACTORY, "getIndexedVariableResolver", "(I)L" + RESOLVER + ";");
+      mv.visitMethodInsn(INVOKEINTERFACE, RESOLVER, "getValue", "()" + OBJECT);
+    }
+    else if (type == MapAccessor.class) {
+      emitGuard(Map.class, fallback);
+      loadRef(((MapAccessor) node).getProperty(), null);
+      mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Map", "get", "(" + OBJECT + ")" + OBJECT);
+    }
+    else if (type == ListAccessor.class) {
+      emitGuard(List.class, fallback);
+      mv.visitLdcInsn(((ListAccessor) node).getIndex());
+      mv.visitMethodInsn(INVOKEINTERFACE, "java/util/List", "get", "(I)" + OBJECT);
+    }
+    else if (type == FieldAccessor.class) {
+      Field field = ((FieldAccessor) node).getField();
+      emitGuard(field.getDeclaringClass(), fallback);
+      mv.visitFieldInsn(GETFIELD, Type.getInternalName(field.getDeclaringClass()), field.getName(),
+          Type.getDescriptor(field.getType()));
+      box(field.getType());
+    }
+    else {
+      Method method = type == GetterAccessor.class ? ((GetterAccessor) node).getMethod()
+          : ((MethodAccessor) node).getMethod();
+      Class<?> declaringClass = method.getDeclaringClass();
+      emitGuard(declaringClass, fallback);
+      mv.visitMethodInsn(declaringClass.isInterface() ? INVOKEINTERFACE : INVOKEVIRTUAL,
+          Type.getInternalName(declaringClass), method.getName(), Type.getMethodDescriptor(method));
+      box(method.getReturnType());
+    }
+  }
+
+  /**
+   * Jumps to the fallback unless the current value is an instance of the given class, otherwise leaves it on the
+   * stack cast to that class.
+   */
+  private void emitGuard(Class<?> cls, Label fallback) {
+    String internalName = Type.getInternalName(cls);
+    mv.visitVarInsn(ALOAD, CURR);
+    mv.visitTypeInsn(INSTANCEOF, internalName);
+    mv.visitJumpInsn(IFEQ, fallback);
+    mv.visitVarInsn(ALOAD, CURR);
+    mv.visitTypeInsn(CHECKCAST, internalName);
+  }
+
+  private void box(Class<?> cls) {
+    if (cls == void.class) {
+      mv.visitInsn(ACONST_NULL);
+    }
+    else if (cls.isPrimitive()) {
+      Class<?> wrapper = boxPrimitive(cls);
+      mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(wrapper), "valueOf",
+          "(" + Type.getDescriptor(cls) + ")" + Type.getDescriptor(wrapper));
+    }
+  }
+
+  /**
+   * Loads an object referenced by the generated code, cast to the given internal type name if not {@code null}.
+   */
+  private void loadRef(Object ref, String type) {
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitFieldInsn(GETFIELD, className, "refs", "[" + OBJECT);
+    mv.visitLdcInsn(refs.size());
+    mv.visitInsn(AALOAD);
+    if (type != null) {
+      mv.visitTypeInsn(CHECKCAST, type);
+    }
+    refs.add(ref);
+  }
+}
@@ -58,6 +58,7 @@ import org.mvel2.integration.VariableResolverFactory;
 import org.mvel2.optimizers.AbstractOptimizer;
 import org.mvel2.optimizers.AccessorOptimizer;
 import org.mvel2.optimizers.OptimizationNotSupported;
+import org.mvel2.optimizers.impl.refl.nodes.PatternMethodAccessor;
 import org.mvel2.optimizers.impl.refl.nodes.Union;
 import org.mvel2.util.JITClassLoader;
 import org.mvel2.util.MVELClassLoader;
@@ -117,6 +118,7 @@ import static org.mvel2.asm.Opcodes.IFEQ;
 import static org.mvel2.asm.Opcodes.IFNONNULL;
 import static org.mvel2.asm.Opcodes.IF_ICMPLT;
 import static org.mvel2.asm.Opcodes.ILOAD;
+import static org.mvel2.asm.Opcodes.INSTANCEOF;
 import static org.mvel2.asm.Opcodes.INVOKEINTERFACE;
 import static org.mvel2.asm.Opcodes.INVOKESPECIAL;
 import static org.mvel2.asm.Opcodes.INVOKESTATIC;
@@ -182,6 +184,8 @@ public class ASMAccessorOptimizer extends AbstractOptimizer implements AccessorO
   private static final String MAP_IMPL = "java/util/HashMap";
 
   private static String LIST_IMPL;
+  private static String EXECUTION_MAP_IMPL;
+  private static String EXECUTION_LIST_IMPL;
   private static String NAMESPACE;
   private static final int OPCODES_VERSION;
 
@@ -202,6 +206,9 @@ public class ASMAccessorOptimizer extends AbstractOptimizer implements AccessorO
     String jitListImpl = getProperty("mvel2.jit.list_impl");
     if (jitListImpl == null) LIST_IMPL = NAMESPACE + "util/FastList";
     else LIST_IMPL = jitListImpl;
+
+    EXECUTION_MAP_IMPL = NAMESPACE + "execution/ExecutionHashMap";
+    EXECUTION_LIST_IMPL = NAMESPACE + "execution/ExecutionArrayList";
   }
 
   private Object ctx;
@@ -2092,6 +2099,8 @@ private Object optimizeFieldMethodProperty(Object ctx, String property, Class<?>
       }
 
       Class<?> declaringClass = m.getDeclaringClass();
+      boolean patternMethod = thisRef instanceof ExecutionContext && ctx instanceof String
+          && PatternMethodAccessor.isPatternMethod(m);
       if (m.getParameterTypes().length == 0) {
         if ((m.getModifiers() & STATIC) != 0) {
           assert debug("INVOKESTATIC " + m.getName());
@@ -2264,7 +2273,16 @@ private Object optimizeFieldMethodProperty(Object ctx, String property, Class<?>
             // The last parameter is a vararg and there is no value, create an empty array array
             createArray(getBaseComponentType(parameterTypes[parameterTypes.length - 1]) ,0);
         }
-        if ((m.getModifiers() & STATIC) != 0) {
+        if (patternMethod) {
+          // in sandboxed mode, regular expressions passed to String methods are compiled once and matched with a guard
+          assert debug("ALOAD 2");
+          mv.visitVarInsn(ALOAD, 2);
+
+          assert debug("INVOKESTATIC: PatternMethodAccessor." + m.getName());
+          mv.visitMethodInsn(INVOKESTATIC, getInternalName(PatternMethodAccessor.class), m.getName(),
+              PatternMethodAccessor.getDescriptor(getMethodDescriptor(m)));
+        }
+        else if ((m.getModifiers() & STATIC) != 0) {
           assert debug("INVOKESTATIC: " + m.getName());
           mv.visitMethodInsn(INVOKESTATIC, getInternalName(declaringClass), m.getName(), getMethodDescriptor(m));
         }
@@ -2286,7 +2304,8 @@ private Object optimizeFieldMethodProperty(Object ctx, String property, Class<?>
         stacksize++;
       }
 
-      Object o = m.invoke(ctx, normalizeArgsForVarArgs(parameterTypes, args, m.isVarArgs()));
+      Object o = patternMethod ? PatternMethodAccessor.invoke(m, (String) ctx, args, thisRef)
+          : m.invoke(ctx, normalizeArgsForVarArgs(parameterTypes, args, m.isVarArgs()));
 
 
       if (hasNullMethodHandler()) {
@@ -2328,28 +2347,13 @@ private Object optimizeFieldMethodProperty(Object ctx, String property, Class<?>
     }
   }
 
-  private ContextClassLoader getContextClassLoader() {
-    return pCtx == null ? null : new ContextClassLoader(pCtx.getClassLoader());
-  }
-
-  private static class ContextClassLoader extends ClassLoader {
-    ContextClassLoader(ClassLoader classLoader) {
-      super(classLoader);
-    }
-
-    Class<?> defineClass(String name, byte[] b) {
-      return defineClass(name, b, 0, b.length);
-    }
-  }
-
   private java.lang.Class loadClass(String className, byte[] b) throws Exception {
     /**
-     * This must be synchronized.  Two classes cannot be simultaneously deployed in the JVM.
+     * Classes generated for a parser context go to the accessor class loader of its script, so that they
+     * are unloaded with the script rather than with every other generated accessor.
      */
-    ContextClassLoader contextClassLoader = getContextClassLoader();
-    return contextClassLoader == null ?
-            classLoader.defineClassX(className, b, 0, b.length) :
-            contextClassLoader.defineClass(className, b);
+    MVELClassLoader cl = pCtx == null ? classLoader : pCtx.getAccessorClassLoader();
+    return cl.defineClassX(className, b, 0, b.length);
   }
 
   private boolean debug(String instruction) {
@@ -2905,6 +2909,27 @@ private Object optimizeFieldMethodProperty(Object ctx, String property, Class<?>
 
   private int _getAccessor(Object o, Class type) {
     if (o instanceof List) {
+      Label plain = new Label();
+      Label created = new Label();
+      jumpIfNotExecutionContext(plain);
+
+      assert debug("NEW " + EXECUTION_LIST_IMPL);
+      mv.visitTypeInsn(NEW, EXECUTION_LIST_IMPL);
+
+      assert debug("DUP");
+      mv.visitInsn(DUP);
+
+      assert debug("DUP");
+      mv.visitInsn(DUP);
+
+      loadExecutionContext();
+      assert debug("INVOKESPECIAL " + EXECUTION_LIST_IMPL + ".<init>");
+      mv.visitMethodInsn(INVOKESPECIAL, EXECUTION_LIST_IMPL, "<init>", "(L" + NAMESPACE + "ExecutionContext;)V");
+
+      assert debug("GOTO created");
+      mv.visitJumpInsn(GOTO, created);
+
+      mv.visitLabel(plain);
       assert debug("NEW " + LIST_IMPL);
       mv.visitTypeInsn(NEW, LIST_IMPL);
 
@@ -2918,6 +2943,8 @@ private Object optimizeFieldMethodProperty(Object ctx, String property, Class<?>
       assert debug("INVOKESPECIAL " + LIST_IMPL + ".<init>");
       mv.visitMethodInsn(INVOKESPECIAL, LIST_IMPL, "<init>", "(I)V");
 
+      mv.visitLabel(created);
+
       for (Object item : (List) o) {
         if (_getAccessor(item, type) != VAL) {
           assert debug("POP");
@@ -2939,6 +2966,29 @@ private Object optimizeFieldMethodProperty(Object ctx, String property, Class<?>
       return LIST;
     }
     else if (o instanceof Map) {
+      Label plain = new Label();
+      Label created = new Label();
+      jumpIfNotExecutionContext(plain);
+
+      assert debug("NEW " + EXECUTION_MAP_IMPL);
+      mv.visitTypeInsn(NEW, EXECUTION_MAP_IMPL);
+
+      assert debug("DUP");
+      mv.visitInsn(DUP);
+
+      assert debug("DUP");
+      mv.visitInsn(DUP);
+
+      intPush(((Map) o).size());
+      loadExecutionContext();
+
+      assert debug("INVOKESPECIAL " + EXECUTION_MAP_IMPL + ".<init>");
+      mv.visitMethodInsn(INVOKESPECIAL, EXECUTION_MAP_IMPL, "<init>", "(IL" + NAMESPACE + "ExecutionContext;)V");
+
+      assert debug("GOTO created");
+      mv.visitJumpInsn(GOTO, created);
+
+      mv.visitLabel(plain);
       assert debug("NEW " + MAP_IMPL);
       mv.visitTypeInsn(NEW, MAP_IMPL);
 
@@ -2953,6 +3003,8 @@ private Object optimizeFieldMethodProperty(Object ctx, String property, Class<?>
       assert debug("INVOKESPECIAL " + MAP_IMPL + ".<init>");
       mv.visitMethodInsn(INVOKESPECIAL, MAP_IMPL, "<init>", "(I)V");
 
+      mv.visitLabel(created);
+
       for (Object item : ((Map) o).keySet()) {
         mv.visitTypeInsn(CHECKCAST, "java/util/Map");
         Object key = item;
@@ -3170,6 +3222,29 @@ private Object optimizeFieldMethodProperty(Object ctx, String property, Class<?>
     }
   }
 
+  /**
+   * Inline collections are compiled before the root context is known, so whether to create the
+   * sandbox-aware implementation is decided when the accessor runs.
+   */
+  private void jumpIfNotExecutionContext(Label target) {
+    assert debug("ALOAD 1");
+    mv.visitVarInsn(ALOAD, 1);
+    assert debug("INSTANCEOF " + NAMESPACE + "ExecutionContext");
+    mv.visitTypeInsn(INSTANCEOF, NAMESPACE + "ExecutionContext");
+    assert debug("IFEQ");
+    mv.visitJumpInsn(IFEQ, target);
+  }
+
+  /**
+   * Pushes the sandbox {@link ExecutionContext}, which is passed to the accessor as the root context.
+   */
+  private void loadExecutionContext() {
+    assert debug("ALOAD 1");
+    mv.visitVarInsn(ALOAD, 1);
+    assert debug("CHECKCAST " + NAMESPACE + "ExecutionContext");
+    mv.visitTypeInsn(CHECKCAST, NAMESPACE + "ExecutionContext");
+  }
+
   private void checkcast(Class cls) {
     assert debug("CHECKCAST " + getInternalName(cls));
     mv.visitTypeInsn(CHECKCAST, getInternalName(cls));
@@ -0,0 +1,338 @@
+package org.mvel2.optimizers.impl.asm;
+
+import org.mvel2.Operator;
+import org.mvel2.asm.ClassWriter;
+import org.mvel2.asm.Label;
+import org.mvel2.asm.MethodVisitor;
+import org.mvel2.asm.Opcodes;
+import org.mvel2.ast.ASTNode;
+import org.mvel2.ast.And;
+import org.mvel2.ast.BinaryOperation;
+import org.mvel2.ast.BooleanNode;
+import org.mvel2.ast.Function;
+import org.mvel2.ast.IfNode;
+import org.mvel2.ast.LineLabel;
+import org.mvel2.ast.LiteralNode;
+import org.mvel2.ast.Or;
+import org.mvel2.ast.Substatement;
+import org.mvel2.compiler.Accessor;
+import org.mvel2.compiler.CompiledExpression;
+import org.mvel2.compiler.ExecutableAccessor;
+import org.mvel2.compiler.ExecutableStatement;
+import org.mvel2.optimizers.dynamic.DynamicClassLoader;
+import org.mvel2.optimizers.dynamic.DynamicOptimizer;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compiles the statements of a {@link CompiledExpression} into a single generated {@link Accessor}, replacing the
+ * stack based loop of {@link org.mvel2.MVELRuntime#execute}.
+ * <p>
+ * What is compiled is the statement loop and the control flow between nodes: literals, the operands of arithmetic
+ * and comparisons, boolean operators, substatements and if/else chains are emitted inline. The operations themselves
+ * are performed by their {@link BinaryOperation} nodes, so they keep their type profiling and specialization. Every
+ * other node, such as property access, assignments, for and foreach loops and method or function calls, is not
+ * compiled: it is invoked through its own accelerated accessor, so it keeps its memory accounting and execution
+ * checks. The blocks of loops are compiled expressions themselves and are compiled on their own once they are hot.
+ * The generated code performs no execution checks of its own, so instruction budgets count the same as in the
+ * interpreter. Expressions with function definitions, debugging symbols or operators left to the runtime stack, such
+ * as the ternary operator, are not compiled and keep running in the interpreter.
+ * <p>
+ * An expression that passes {@link #isCompilable} but fails to compile is a compiler bug: it is logged, counted in
+ * {@link #getFailedCount()}, and keeps running in the interpreter.
+ */
+public class ASMExpressionCompiler implements Opcodes {
+  private static final String NAMESPACE = "org/mvel2/";
+  private static final String OBJECT = "Ljava/lang/Object;";
+  private static final String FACTORY = NAMESPACE + "integration/VariableResolverFactory";
+  private static final String MAP_FACTORY = NAMESPACE + "integration/impl/MapVariableResolverFactory";
+  private static final String AST_NODE = NAMESPACE + "ast/ASTNode";
+  private static final String BINARY_OPERATION = NAMESPACE + "ast/BinaryOperation";
+  private static final String EXECUTABLE_STATEMENT = NAMESPACE + "compiler/ExecutableStatement";
+
+  private static final int CTX = 1;
+  private static final int FACTORY_VAR = 3;
+  private static final int VALUE_VAR = 4;
+  private static final int NODE_VAR = 5;
+
+  private static final Logger LOG = Logger.getLogger(ASMExpressionCompiler.class.getName());
+
+  private static final AtomicLong classCount = new AtomicLong();
+  private static final AtomicLong failedCount = new AtomicLong();
+
+  private final ArrayList<Object> refs = new ArrayList<Object>();
+  private final String className = "ASMCompiledExpression_" + classCount.incrementAndGet();
+  private MethodVisitor mv;
+  private int maxLocals = NODE_VAR + 1;
+
+  private ASMExpressionCompiler() {
+  }
+
+  /**
+   * Returns whether all the top-level nodes of the expression can be compiled.
+   */
+  public static boolean isCompilable(CompiledExpression expression) {
+    ASTNode node = expression.getFirstNode();
+    if (node == null) {
+      return false;
+    }
+    for (; node != null; node = node.nextASTNode) {
+      if (node instanceof Function || node instanceof LineLabel) {
+        return false;
+      }
+      if (node.isOperator() && !node.isOperator(Operator.END_OF_STMT)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Compiles the expression, or returns {@code null} if it cannot be compiled.
+   */
+  public static Accessor compile(CompiledExpression expression) {
+    if (!isCompilable(expression)) {
+      return null;
+    }
+    try {
+      return new ASMExpressionCompiler().generate(expression);
+    }
+    catch (Exception e) {
+      return failed(expression, e);
+    }
+    catch (LinkageError e) {
+      return failed(expression, e);
+    }
+  }
+
+  private static Accessor failed(CompiledExpression expression, Throwable e) {
+    failedCount.incrementAndGet();
+    LOG.log(Level.WARNING, "[MVEL] Could not compile expression to bytecode, it keeps running in the interpreter: "
+        + expression, e);
+    return null;
+  }
+
+  /**
+   * Number of expressions that could not be compiled to bytecode although {@link #isCompilable} accepted them.
+   */
+  public static long getFailedCount() {
+    return failedCount.get();
+  }
+
+  private Accessor generate(CompiledExpression expression) throws Exception {
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS + ClassWriter.COMPUTE_FRAMES);
+    cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, className, null, "java/lang/Object",
+        new String[]{NAMESPACE + "compiler/Accessor"});
+    cw.visitField(ACC_PRIVATE + ACC_FINAL, "refs", "[" + OBJECT, null, null).visitEnd();
+
+    MethodVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", "([" + OBJECT + ")V", null, null);
+    init.visitCode();
+    init.visitVarInsn(ALOAD, 0);
+    init.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+    init.visitVarInsn(ALOAD, 0);
+    init.visitVarInsn(ALOAD, 1);
+    init.visitFieldInsn(PUTFIELD, className, "refs", "[" + OBJECT);
+    init.visitInsn(RETURN);
+    init.visitMaxs(0, 0);
+    init.visitEnd();
+
+    mv = cw.visitMethod(ACC_PUBLIC, "getValue", "(" + OBJECT + OBJECT + "L" + FACTORY + ";)" + OBJECT, null, null);
+    mv.visitCode();
+
+    mv.visitInsn(ACONST_NULL);
+    mv.visitVarInsn(ASTORE, VALUE_VAR);
+    mv.visitInsn(ACONST_NULL);
+    mv.visitVarInsn(ASTORE, NODE_VAR);
+
+    Label start = new Label();
+    Label end = new Label();
+    Label handler = new Label();
+    Label result = new Label();
+    mv.visitTryCatchBlock(start, end, handler, "java/lang/RuntimeException");
+    mv.visitLabel(start);
+    for (ASTNode node = expression.getFirstNode(); node != null; node = node.nextASTNode) {
+      if (node.isOperator()) {
+        continue;
+      }
+      loadRef(node, AST_NODE);
+      mv.visitVarInsn(ASTORE, NODE_VAR);
+      emitValue(node, FACTORY_VAR);
+      mv.visitVarInsn(ASTORE, VALUE_VAR);
+
+      mv.visitVarInsn(ALOAD, FACTORY_VAR);
+      mv.visitMethodInsn(INVOKEINTERFACE, FACTORY, "tiltFlag", "()Z");
+      mv.visitJumpInsn(IFNE, result);
+      mv.visitVarInsn(ALOAD, FACTORY_VAR);
+      mv.visitMethodInsn(INVOKEINTERFACE, FACTORY, "breakFlag", "()Z");
+      mv.visitJumpInsn(IFNE, result);
+    }
+    mv.visitLabel(end);
+    mv.visitLabel(result);
+    mv.visitVarInsn(ALOAD, VALUE_VAR);
+    mv.visitInsn(ARETURN);
+
+    mv.visitLabel(handler);
+    mv.visitVarInsn(ALOAD, NODE_VAR);
+    mv.visitTypeInsn(CHECKCAST, AST_NODE);
+    mv.visitMethodInsn(INVOKESTATIC, NAMESPACE + "MVELRuntime", "rewriteException",
+        "(Ljava/lang/RuntimeException;L" + AST_NODE + ";)Ljava/lang/RuntimeException;");
+    mv.visitInsn(ATHROW);
+
+    mv.visitMaxs(0, maxLocals);
+    mv.visitEnd();
+    cw.visitEnd();
+
+    /**
+     * The generated class only links against the JDK and MVEL itself, never against script types, so it is
+     * defined in a loader of its own below MVEL's loader and is unloaded together with the expression.
+     */
+    byte[] b = cw.toByteArray();
+    DynamicClassLoader cl = new DynamicClassLoader(ASMExpressionCompiler.class.getClassLoader(), DynamicOptimizer.maximumTenure);
+    Class<?> cls = cl.defineClassX(className, b, 0, b.length);
+    return (Accessor) cls.getConstructor(Object[].class).newInstance(new Object[]{refs.toArray()});
+  }
+
+  /**
+   * Emits the evaluation of a node, leaving its value on the stack.
+   */
+  private void emitValue(ASTNode node, int factoryVar) {
+    Class<?> type = node.getClass();
+    if (type == LiteralNode.class) {
+      loadRef(node.getLiteralValue(), null);
+    }
+    else if (type == BinaryOperation.class) {
+      BinaryOperation operation = (BinaryOperation) node;
+      loadRef(operation, BINARY_OPERATION);
+      emitValue(operation.getLeft(), factoryVar);
+      emitValue(operation.getRight(), factoryVar);
+      mv.visitMethodInsn(INVOKEVIRTUAL, BINARY_OPERATION, "doOperation", "(" + OBJECT + OBJECT + ")" + OBJECT);
+    }
+    else if (type == And.class || type == Or.class) {
+      emitBoolean(type == And.class, ((BooleanNode) node).getLeft(), ((BooleanNode) node).getRight(), factoryVar);
+    }
+    else if (type == Substatement.class && ((Substatement) node).getStatement() instanceof ExecutableAccessor) {
+      emitValue(((ExecutableAccessor) ((Substatement) node).getStatement()).getNode(), factoryVar);
+    }
+    else if (type == IfNode.class) {
+      emitIf((IfNode) node, factoryVar);
+    }
+    else {
+      loadRef(node, AST_NODE);
+      mv.visitVarInsn(ALOAD, CTX);
+      mv.visitVarInsn(ALOAD, CTX);
+      mv.visitVarInsn(ALOAD, factoryVar);
+      mv.visitMethodInsn(INVOKEVIRTUAL, AST_NODE, "getReducedValueAccelerated",
+          "(" + OBJECT + OBJECT + "L" + FACTORY + ";)" + OBJECT);
+    }
+  }
+
+  private void emitStatement(ExecutableStatement statement, int factoryVar) {
+    if (statement instanceof ExecutableAccessor) {
+      emitValue(((ExecutableAccessor) statement).getNode(), factoryVar);
+      return;
+    }
+    loadRef(statement, EXECUTABLE_STATEMENT);
+    mv.visitVarInsn(ALOAD, CTX);
+    mv.visitVarInsn(ALOAD, CTX);
+    mv.visitVarInsn(ALOAD, factoryVar);
+    mv.visitMethodInsn(INVOKEINTERFACE, EXECUTABLE_STATEMENT, "getValue",
+        "(" + OBJECT + OBJECT + "L" + FACTORY + ";)" + OBJECT);
+  }
+
+  /**
+   * Emits a short-circuit {@code &&} or {@code ||} of two boolean operands, leaving a {@link Boolean}.
+   */
+  private void emitBoolean(boolean and, ASTNode left, ASTNode right, int factoryVar) {
+    Label shortCircuit = new Label();
+    Label done = new Label();
+    emitValue(left, factoryVar);
+    emitBooleanValue();
+    mv.visitJumpInsn(and ? IFEQ : IFNE, shortCircuit);
+    emitValue(right, factoryVar);
+    emitBooleanValue();
+    mv.visitJumpInsn(and ? IFEQ : IFNE, shortCircuit);
+    mv.visitFieldInsn(GETSTATIC, "java/lang/Boolean", and ? "TRUE" : "FALSE", "Ljava/lang/Boolean;");
+    mv.visitJumpInsn(GOTO, done);
+    mv.visitLabel(shortCircuit);
+    mv.visitFieldInsn(GETSTATIC, "java/lang/Boolean", and ? "FALSE" : "TRUE", "Ljava/lang/Boolean;");
+    mv.visitLabel(done);
+  }
+
+  private void emitBooleanValue() {
+    mv.visitTypeInsn(CHECKCAST, "java/lang/Boolean");
+    mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Boolean", "booleanValue", "()Z");
+  }
+
+  /**
+   * Emits an if/else-if/else chain. As in {@link IfNode}, each taken branch runs with a block scoped factory
+   * unless the node uses indexed variables.
+   */
+  private void emitIf(IfNode node, int factoryVar) {
+    Label elseBranch = new Label();
+    Label done = new Label();
+    emitStatement(node.getCondition(), factoryVar);
+    emitBooleanValue();
+    mv.visitJumpInsn(IFEQ, elseBranch);
+    emitStatement(node.getNestedStatement(), blockFactory(node, factoryVar));
+    mv.visitJumpInsn(GOTO, done);
+    mv.visitLabel(elseBranch);
+    if (node.getElseIf() != null) {
+      if (node.getElseIf().getClass() == IfNode.class) {
+        emitIf(node.getElseIf(), blockFactory(node, factoryVar));
+      }
+      else {
+        int blockFactory = blockFactory(node, factoryVar);
+        loadRef(node.getElseIf(), AST_NODE);
+        mv.visitVarInsn(ALOAD, CTX);
+        mv.visitVarInsn(ALOAD, CTX);
+        mv.visitVarInsn(ALOAD, blockFactory);
+        mv.visitMethodInsn(INVOKEVIRTUAL, AST_NODE, "getReducedValueAccelerated",
+            "(" + OBJECT + OBJECT + "L" + FACTORY + ";)" + OBJECT);
+      }
+    }
+    else if (node.getElseBlock() != null) {
+      emitStatement(node.getElseBlock(), blockFactory(node, factoryVar));
+    }
+    else {
+      mv.visitInsn(ACONST_NULL);
+    }
+    mv.visitLabel(done);
+  }
+
+  /**
+   * Emits the creation of the factory of a block and returns the local variable holding it.
+   */
+  private int blockFactory(IfNode node, int factoryVar) {
+    if (node.isIndexAllocation()) {
+      return factoryVar;
+    }
+    int var = maxLocals++;
+    mv.visitTypeInsn(NEW, MAP_FACTORY);
+    mv.visitInsn(DUP);
+    mv.visitTypeInsn(NEW, "java/util/HashMap");
+    mv.visitInsn(DUP);
+    mv.visitInsn(ICONST_0);
+    mv.visitMethodInsn(INVOKESPECIAL, "java/util/HashMap", "<init>", "(I)V");
+    mv.visitVarInsn(ALOAD, factoryVar);
+    mv.visitMethodInsn(INVOKESPECIAL, MAP_FACTORY, "<init>", "(Ljava/util/Map;L" + FACTORY + ";)V");
+    mv.visitVarInsn(ASTORE, var);
+    return var;
+  }
+
+  /**
+   * Loads an object referenced by the generated code, cast to the given internal type name if not {@code null}.
+   */
+  private void loadRef(Object ref, String type) {
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitFieldInsn(GETFIELD, className, "refs", "[" + OBJECT);
+    mv.visitLdcInsn(refs.size());
+    mv.visitInsn(AALOAD);
+    if (type != null) {
+      mv.visitTypeInsn(CHECKCAST, type);
+    }
+    refs.add(ref);
+  }
+}
@@ -0,0 +1,67 @@
+package org.mvel2.optimizers.impl.mh;
+
+import org.mvel2.compiler.AccessorNode;
+import org.mvel2.compiler.ExecutableStatement;
+import org.mvel2.optimizers.impl.mh.nodes.MethodHandleConstructorAccessor;
+import org.mvel2.optimizers.impl.mh.nodes.MethodHandleGetterAccessor;
+import org.mvel2.optimizers.impl.mh.nodes.MethodHandleMethodAccessor;
+import org.mvel2.optimizers.impl.mh.nodes.MethodHandleSetterAccessor;
+import org.mvel2.optimizers.impl.refl.ReflectiveAccessorOptimizer;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+/**
+ * An accessor optimizer that resolves accessors like the {@link ReflectiveAccessorOptimizer}, but invokes getters,
+ * setters, methods and constructors through method handles instead of {@link Method#invoke}. Unlike the ASM
+ * optimizer it defines no classes. Varargs members and members the public lookup cannot access are invoked
+ * reflectively.
+ */
+public class MethodHandleAccessorOptimizer extends ReflectiveAccessorOptimizer {
+
+  @Override
+  protected AccessorNode createGetterAccessor(Method method) {
+    try {
+      return new MethodHandleGetterAccessor(method);
+    }
+    catch (IllegalAccessException e) {
+      return super.createGetterAccessor(method);
+    }
+  }
+
+  @Override
+  protected AccessorNode createSetterAccessor(Method method) {
+    try {
+      return new MethodHandleSetterAccessor(method);
+    }
+    catch (IllegalAccessException e) {
+      return super.createSetterAccessor(method);
+    }
+  }
+
+  @Override
+  protected AccessorNode createMethodAccessor(Method method, ExecutableStatement[] parms) {
+    if (method.isVarArgs()) {
+      return super.createMethodAccessor(method, parms);
+    }
+    try {
+      return new MethodHandleMethodAccessor(method, parms);
+    }
+    catch (IllegalAccessException e) {
+      return super.createMethodAccessor(method, parms);
+    }
+  }
+
+  @Override
+  protected AccessorNode createConstructorAccessor(Constructor constructor, ExecutableStatement[] parms) {
+    if (constructor.isVarArgs()) {
+      return super.createConstructorAccessor(constructor, parms);
+    }
+    try {
+      return new MethodHandleConstructorAccessor(constructor, parms);
+    }
+    catch (IllegalAccessException e) {
+      return super.createConstructorAccessor(constructor, parms);
+    }
+  }
+}
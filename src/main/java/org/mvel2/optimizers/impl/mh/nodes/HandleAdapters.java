@@ -0,0 +1,94 @@
+package org.mvel2.optimizers.impl.mh.nodes;
+
+import org.mvel2.ScriptMemoryOverflowException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import static org.mvel2.DataConversion.convert;
+import static org.mvel2.util.ParseTools.boxPrimitive;
+
+/**
+ * Adapts method and constructor handles to the erased shapes invoked by the method handle accessor nodes:
+ * <tt>(Object receiver, Object a0, ..., Object aN)Object</tt> for up to {@link #MAX_SPREAD_ARITY} arguments, and
+ * <tt>(Object receiver, Object[] args)Object</tt> above. Static methods and constructors ignore the receiver.
+ */
+final class HandleAdapters {
+  static final int MAX_SPREAD_ARITY = 3;
+
+  private HandleAdapters() {
+  }
+
+  static MethodHandle adapt(Method method) throws IllegalAccessException {
+    return adapt(MethodHandles.publicLookup().unreflect(method).asFixedArity(), !Modifier.isStatic(method.getModifiers()),
+        method.getParameterTypes().length);
+  }
+
+  static MethodHandle adapt(Constructor constructor) throws IllegalAccessException {
+    return adapt(MethodHandles.publicLookup().unreflectConstructor(constructor).asFixedArity(), false,
+        constructor.getParameterTypes().length);
+  }
+
+  private static MethodHandle adapt(MethodHandle handle, boolean hasReceiver, int arity) {
+    if (!hasReceiver) {
+      handle = MethodHandles.dropArguments(handle, 0, Object.class);
+    }
+    handle = handle.asType(MethodType.genericMethodType(arity + 1));
+    return arity > MAX_SPREAD_ARITY ? handle.asSpreader(Object[].class, arity) : handle;
+  }
+
+  /**
+   * Returns <tt>true</tt> if the value can be passed for a parameter of the given type without coercion.
+   */
+  static boolean accepts(Class<?> type, Object value) {
+    if (value == null) {
+      return !type.isPrimitive();
+    }
+    return (type.isPrimitive() ? boxPrimitive(type) : type).isInstance(value);
+  }
+
+  /**
+   * Returns <tt>true</tt> if a failed invocation was rejected by the argument conversions of the handle rather
+   * than thrown by its target, in which case the arguments are coerced. The conversions throw
+   * {@link ClassCastException} for a mismatched reference and {@link NullPointerException} for a <tt>null</tt>
+   * primitive.
+   */
+  static boolean isArgumentMismatch(Throwable t, Class<?>[] types, Object[] args) {
+    if (!(t instanceof ClassCastException || t instanceof NullPointerException)) {
+      return false;
+    }
+    for (int i = 0; i < args.length; i++) {
+      if (!accepts(types[i], args[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Coerces already evaluated arguments to the parameter types in place, the way the reflective accessors coerce the
+   * arguments they evaluate, so that a mismatch does not evaluate the arguments again.
+   */
+  static Object[] coerce(Class<?>[] types, Object[] args) {
+    for (int i = 0; i < args.length; i++) {
+      args[i] = convert(args[i], types[i]);
+    }
+    return args;
+  }
+
+  /**
+   * Wraps an exception thrown by the target of a handle the way {@link Method#invoke} does, so that accessors fail
+   * the same way whichever backend invoked them.
+   */
+  static RuntimeException invocationFailure(String message, Throwable t) {
+    if (t instanceof ScriptMemoryOverflowException) {
+      return (ScriptMemoryOverflowException) t;
+    }
+    return new RuntimeException(message, new InvocationTargetException(t));
+  }
+}
@@ -0,0 +1,72 @@
+package org.mvel2.optimizers.impl.mh.nodes;
+
+import org.mvel2.compiler.ExecutableStatement;
+import org.mvel2.integration.VariableResolverFactory;
+import org.mvel2.optimizers.impl.refl.nodes.ConstructorAccessor;
+import org.mvel2.optimizers.impl.refl.nodes.GetterAccessor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Constructor;
+
+import static org.mvel2.optimizers.impl.mh.nodes.HandleAdapters.MAX_SPREAD_ARITY;
+import static org.mvel2.optimizers.impl.mh.nodes.HandleAdapters.coerce;
+import static org.mvel2.optimizers.impl.mh.nodes.HandleAdapters.invocationFailure;
+import static org.mvel2.optimizers.impl.mh.nodes.HandleAdapters.isArgumentMismatch;
+
+/**
+ * Invokes a constructor through a method handle. Arguments that need coercion are coerced once evaluated, and are
+ * left to the reflective {@link ConstructorAccessor} from then on.
+ */
+public class MethodHandleConstructorAccessor extends ConstructorAccessor {
+  private final MethodHandle handle;
+
+  public MethodHandleConstructorAccessor(Constructor constructor, ExecutableStatement[] parms) throws IllegalAccessException {
+    super(constructor, parms);
+    this.handle = HandleAdapters.adapt(constructor);
+  }
+
+  public Object getValue(Object ctx, Object elCtx, VariableResolverFactory variableFactory) {
+    if (coercionNeeded) {
+      return super.getValue(ctx, elCtx, variableFactory);
+    }
+
+    Object[] args = length == 0 ? GetterAccessor.EMPTY : new Object[length];
+    for (int i = 0; i < length; i++) {
+      args[i] = parms[i].getValue(elCtx, variableFactory);
+    }
+
+    Object v;
+    try {
+      try {
+        v = invoke(args);
+      }
+      catch (Throwable t) {
+        if (!isArgumentMismatch(t, parameterTypes, args)) {
+          throw t;
+        }
+        // later invocations evaluate and coerce the arguments reflectively
+        coercionNeeded = true;
+        v = invoke(coerce(parameterTypes, args));
+      }
+    }
+    catch (Throwable t) {
+      throw invocationFailure("cannot construct object", t);
+    }
+    return nextNode != null ? nextNode.getValue(v, elCtx, variableFactory) : v;
+  }
+
+  private Object invoke(Object[] args) throws Throwable {
+    switch (args.length) {
+      case 0:
+        return (Object) handle.invokeExact((Object) null);
+      case 1:
+        return (Object) handle.invokeExact((Object) null, args[0]);
+      case 2:
+        return (Object) handle.invokeExact((Object) null, args[0], args[1]);
+      case MAX_SPREAD_ARITY:
+        return (Object) handle.invokeExact((Object) null, args[0], args[1], args[2]);
+      default:
+        return (Object) handle.invokeExact((Object) null, args);
+    }
+  }
+}
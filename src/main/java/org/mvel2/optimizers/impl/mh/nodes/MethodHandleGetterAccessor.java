@@ -0,0 +1,44 @@
+package org.mvel2.optimizers.impl.mh.nodes;
+
+import org.mvel2.compiler.AccessorNode;
+import org.mvel2.integration.VariableResolverFactory;
+import org.mvel2.optimizers.impl.refl.nodes.GetterAccessor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import static org.mvel2.optimizers.impl.mh.nodes.HandleAdapters.invocationFailure;
+
+/**
+ * Invokes a getter through a method handle. <tt>null</tt> receivers and receivers of another class than the one
+ * the accessor is bound to are left to the reflective {@link GetterAccessor}.
+ */
+public class MethodHandleGetterAccessor extends GetterAccessor {
+  private final MethodHandle handle;
+  private final Class<?> receiverType;
+
+  public MethodHandleGetterAccessor(Method method) throws IllegalAccessException {
+    super(method);
+    this.handle = HandleAdapters.adapt(method);
+    this.receiverType = Modifier.isStatic(method.getModifiers()) ? Object.class : method.getDeclaringClass();
+  }
+
+  public Object getValue(Object ctx, Object elCtx, VariableResolverFactory vars) {
+    if (!receiverType.isInstance(ctx)) {
+      return super.getValue(ctx, elCtx, vars);
+    }
+
+    Object v;
+    try {
+      v = (Object) handle.invokeExact(ctx);
+    }
+    catch (Throwable t) {
+      throw invocationFailure("cannot invoke getter: " + getMethod().getName()
+          + " [declr.class: " + getMethod().getDeclaringClass().getName() + "; act.class: "
+          + ctx.getClass().getName() + "] (see trace)", t);
+    }
+    AccessorNode nextNode = getNextNode();
+    return nextNode != null ? nextNode.getValue(v, elCtx, vars) : v;
+  }
+}
@@ -0,0 +1,94 @@
+package org.mvel2.optimizers.impl.mh.nodes;
+
+import org.mvel2.ExecutionContext;
+import org.mvel2.compiler.ExecutableStatement;
+import org.mvel2.integration.VariableResolverFactory;
+import org.mvel2.optimizers.impl.refl.nodes.GetterAccessor;
+import org.mvel2.optimizers.impl.refl.nodes.MethodAccessor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+
+import static org.mvel2.optimizers.impl.mh.nodes.HandleAdapters.MAX_SPREAD_ARITY;
+import static org.mvel2.optimizers.impl.mh.nodes.HandleAdapters.coerce;
+import static org.mvel2.optimizers.impl.mh.nodes.HandleAdapters.invocationFailure;
+import static org.mvel2.optimizers.impl.mh.nodes.HandleAdapters.isArgumentMismatch;
+
+/**
+ * Invokes a method through a method handle. Receivers of another class than the one the accessor is bound to are
+ * left to the reflective {@link MethodAccessor}. Arguments that need coercion are coerced once evaluated, and are
+ * left to the reflective accessor from then on.
+ */
+public class MethodHandleMethodAccessor extends MethodAccessor {
+  private final MethodHandle handle;
+  private final Class<?> receiverType;
+  private final Class<?>[] types;
+  private final String name;
+
+  /**
+   * The index in {@link #getParms()} of the statement evaluating each parameter, or -1 for the
+   * {@link ExecutionContext} parameter, which is passed the current execution context.
+   */
+  private final int[] parmIndex;
+
+  public MethodHandleMethodAccessor(Method method, ExecutableStatement[] parms) throws IllegalAccessException {
+    super(method, parms);
+    this.handle = HandleAdapters.adapt(method);
+    this.receiverType = Modifier.isStatic(method.getModifiers()) ? null : method.getDeclaringClass();
+    this.types = method.getParameterTypes();
+    this.name = method.getName();
+    this.parmIndex = new int[types.length];
+    int executionContextParamIndex = Arrays.asList(types).indexOf(ExecutionContext.class);
+    int p = 0;
+    for (int i = 0; i < types.length; i++) {
+      parmIndex[i] = i == executionContextParamIndex ? -1 : p++;
+    }
+  }
+
+  public Object getValue(Object ctx, Object elCtx, VariableResolverFactory vars) {
+    if (coercionNeeded || ctx != null && receiverType != null && !receiverType.isInstance(ctx)) {
+      return super.getValue(ctx, elCtx, vars);
+    }
+
+    Object[] args = types.length == 0 ? GetterAccessor.EMPTY : new Object[types.length];
+    for (int i = 0; i < args.length; i++) {
+      args[i] = parmIndex[i] < 0 ? (elCtx instanceof ExecutionContext ? elCtx : null) : parms[parmIndex[i]].getValue(elCtx, vars);
+    }
+
+    Object v;
+    try {
+      try {
+        v = invoke(ctx, args);
+      }
+      catch (Throwable t) {
+        if (!isArgumentMismatch(t, types, args)) {
+          throw t;
+        }
+        // later invocations evaluate and coerce the arguments reflectively
+        coercionNeeded = true;
+        v = invoke(ctx, coerce(types, args));
+      }
+    }
+    catch (Throwable t) {
+      throw invocationFailure("cannot invoke method: " + name, t);
+    }
+    return nextNode != null ? nextNode.getValue(v, elCtx, vars) : v;
+  }
+
+  private Object invoke(Object ctx, Object[] args) throws Throwable {
+    switch (args.length) {
+      case 0:
+        return (Object) handle.invokeExact(ctx);
+      case 1:
+        return (Object) handle.invokeExact(ctx, args[0]);
+      case 2:
+        return (Object) handle.invokeExact(ctx, args[0], args[1]);
+      case MAX_SPREAD_ARITY:
+        return (Object) handle.invokeExact(ctx, args[0], args[1], args[2]);
+      default:
+        return (Object) handle.invokeExact(ctx, args);
+    }
+  }
+}
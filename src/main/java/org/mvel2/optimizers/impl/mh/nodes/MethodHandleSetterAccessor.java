@@ -0,0 +1,42 @@
+package org.mvel2.optimizers.impl.mh.nodes;
+
+import org.mvel2.integration.VariableResolverFactory;
+import org.mvel2.optimizers.impl.refl.nodes.SetterAccessor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import static org.mvel2.optimizers.impl.mh.nodes.HandleAdapters.accepts;
+import static org.mvel2.optimizers.impl.mh.nodes.HandleAdapters.invocationFailure;
+
+/**
+ * Invokes a setter through a method handle. Values that need coercion, <tt>null</tt> receivers and receivers of
+ * another class than the one the accessor is bound to are left to the reflective {@link SetterAccessor}.
+ */
+public class MethodHandleSetterAccessor extends SetterAccessor {
+  private final MethodHandle handle;
+  private final Class<?> receiverType;
+  private final Class<?> targetType;
+
+  public MethodHandleSetterAccessor(Method method) throws IllegalAccessException {
+    super(method);
+    this.handle = HandleAdapters.adapt(method);
+    this.receiverType = Modifier.isStatic(method.getModifiers()) ? Object.class : method.getDeclaringClass();
+    this.targetType = method.getParameterTypes()[0];
+  }
+
+  public Object setValue(Object ctx, Object elCtx, VariableResolverFactory variableFactory, Object value) {
+    if (!receiverType.isInstance(ctx) || !accepts(targetType, value)) {
+      return super.setValue(ctx, elCtx, variableFactory, value);
+    }
+
+    try {
+      return (Object) handle.invokeExact(ctx, value);
+    }
+    catch (Throwable t) {
+      throw invocationFailure("error calling method: " + getMethod().getDeclaringClass().getName()
+          + "." + getMethod().getName(), t);
+    }
+  }
+}
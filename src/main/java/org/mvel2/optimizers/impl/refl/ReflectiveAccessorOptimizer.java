@@ -23,6 +23,7 @@ import org.mvel2.MVEL;
 import org.mvel2.OptimizationFailure;
 import org.mvel2.ParserContext;
 import org.mvel2.PropertyAccessException;
+import org.mvel2.ScriptExecutionStoppedException;
 import org.mvel2.ScriptMemoryOverflowException;
 import org.mvel2.ScriptRuntimeException;
 import org.mvel2.ast.FunctionInstance;
@@ -66,6 +67,7 @@ import org.mvel2.optimizers.impl.refl.nodes.MethodAccessor;
 import org.mvel2.optimizers.impl.refl.nodes.MethodAccessorNH;
 import org.mvel2.optimizers.impl.refl.nodes.Notify;
 import org.mvel2.optimizers.impl.refl.nodes.NullSafe;
+import org.mvel2.optimizers.impl.refl.nodes.PatternMethodAccessor;
 import org.mvel2.optimizers.impl.refl.nodes.PropertyHandlerAccessor;
 import org.mvel2.optimizers.impl.refl.nodes.SetterAccessor;
 import org.mvel2.optimizers.impl.refl.nodes.StaticReferenceAccessor;
@@ -354,7 +356,7 @@ public class ReflectiveAccessorOptimizer extends AbstractOptimizer implements Ac
           meth.invoke(ctx, value);
         }
 
-        addAccessorNode(new SetterAccessor(meth));
+        addAccessorNode(createSetterAccessor(meth));
       }
       else if (ctx instanceof Map) {
         //noinspection unchecked
@@ -484,6 +486,9 @@ public class ReflectiveAccessorOptimizer extends AbstractOptimizer implements Ac
     catch (ScriptMemoryOverflowException e) {
       throw e;
     }
+    catch (ScriptExecutionStoppedException e) {
+      throw e;
+    }
     catch (ScriptRuntimeException e) {
       throw new CompileException(e.getMessage(), this.expr, start, e);
     } catch (NullPointerException e) {
@@ -610,7 +615,7 @@ public class ReflectiveAccessorOptimizer extends AbstractOptimizer implements Ac
           if (o == null) o = getNullPropertyHandler().getProperty(member.getName(), ctx, variableFactory);
         }
         else {
-          addAccessorNode(new GetterAccessor((Method) member));
+          addAccessorNode(createGetterAccessor((Method) member));
         }
       }
       catch (IllegalAccessException e) {
@@ -628,7 +633,7 @@ public class ReflectiveAccessorOptimizer extends AbstractOptimizer implements Ac
           if (o == null) o = getNullMethodHandler().getProperty(member.getName(), ctx, variableFactory);
         }
         else {
-          addAccessorNode(new GetterAccessor(iFaceMeth));
+          addAccessorNode(createGetterAccessor(iFaceMeth));
         }
       }
       catch (IllegalArgumentException e) {
@@ -717,7 +722,7 @@ public class ReflectiveAccessorOptimizer extends AbstractOptimizer implements Ac
                   o = getNullMethodHandler().getProperty(m.getName(), ctx, variableFactory);
               }
               else {
-                addAccessorNode(new MethodAccessor(m, new ExecutableStatement[0]));
+                addAccessorNode(createMethodAccessor(m, new ExecutableStatement[0]));
               }
               return o;
             }
@@ -1177,18 +1182,29 @@ public class ReflectiveAccessorOptimizer extends AbstractOptimizer implements Ac
 
     Method method = getWidenedTarget(cls, m);
     args = updateArgsWithExecutionContextIfNeeded(parameterTypes, args, this.ctx);
+    // in sandboxed mode, regular expressions passed to String methods are compiled once and matched with a guard
+    boolean patternMethod = this.thisRef instanceof ExecutionContext && ctx instanceof String
+        && PatternMethodAccessor.isPatternMethod(method);
     Object o = null;
     if (ctx != null) {
       args = checkInvocation(method, ctx, args);
-      o = method.invoke(ctx, normalizeArgsForVarArgs(parameterTypes, args, m.isVarArgs()));
+      if (patternMethod) {
+        o = PatternMethodAccessor.invoke(method, (String) ctx, args, this.thisRef);
+      }
+      else {
+        o = method.invoke(ctx, normalizeArgsForVarArgs(parameterTypes, args, m.isVarArgs()));
+      }
     }
 
     if (hasNullMethodHandler()) {
       addAccessorNode(new MethodAccessorNH(method, (ExecutableStatement[]) es, getNullMethodHandler()));
       if (o == null) o = getNullMethodHandler().getProperty(m.getName(), ctx, variableFactory);
     }
+    else if (patternMethod) {
+      addAccessorNode(new PatternMethodAccessor(method, (ExecutableStatement[]) es));
+    }
     else {
-      addAccessorNode(new MethodAccessor(method, (ExecutableStatement[]) es));
+      addAccessorNode(createMethodAccessor(method, (ExecutableStatement[]) es));
     }
 
     /**
@@ -1364,7 +1380,7 @@ public class ReflectiveAccessorOptimizer extends AbstractOptimizer implements Ac
       }
       parms = normalizeArgsForVarArgs(cns.getParameterTypes(), parms, cns.isVarArgs());
 
-      AccessorNode ca = new ConstructorAccessor(cns, cStmts);
+      AccessorNode ca = createConstructorAccessor(cns, cStmts);
 
       if (cnsRes.length > 1) {
         ReflectiveAccessorOptimizer compiledOptimizer
@@ -1385,7 +1401,7 @@ public class ReflectiveAccessorOptimizer extends AbstractOptimizer implements Ac
     else {
       ClassLoader classLoader = pCtx != null ? pCtx.getClassLoader() : currentThread().getContextClassLoader();
       Constructor<?> cns = Class.forName(new String(expression), true, classLoader ).getConstructor(EMPTYCLS);
-      AccessorNode ca = new ConstructorAccessor(cns, null);
+      AccessorNode ca = createConstructorAccessor(cns, null);
 
       if (cnsRes.length > 1) {
         //noinspection NullArgumentToVariableArgMethod
@@ -1410,6 +1426,26 @@ public class ReflectiveAccessorOptimizer extends AbstractOptimizer implements Ac
       return false;
   }
 
+  /**
+   * Creates the accessor node invoking a getter. Subclasses may return nodes with another invocation strategy;
+   * the same applies to the other <tt>create*Accessor</tt> methods.
+   */
+  protected AccessorNode createGetterAccessor(Method method) {
+    return new GetterAccessor(method);
+  }
+
+  protected AccessorNode createSetterAccessor(Method method) {
+    return new SetterAccessor(method);
+  }
+
+  protected AccessorNode createMethodAccessor(Method method, ExecutableStatement[] parms) {
+    return new MethodAccessor(method, parms);
+  }
+
+  protected AccessorNode createConstructorAccessor(Constructor constructor, ExecutableStatement[] parms) {
+    return new ConstructorAccessor(constructor, parms);
+  }
+
   private Object propHandler(String property, Object ctx, Class handler) {
     PropertyHandler ph = getPropertyHandler(handler);
     addAccessorNode(new PropertyHandlerAccessor(property, handler, ph));
@@ -24,6 +24,7 @@ import org.mvel2.integration.VariableResolverFactory;
 import org.mvel2.util.PropertyTools;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 
 import static org.mvel2.DataConversion.convert;
 
@@ -32,7 +33,7 @@ public class FieldAccessor implements AccessorNode {
   private Field field;
   private boolean coercionRequired = false;
   private boolean primitive;
-
+  private volatile InlineCache<Field> inlineCache;
 
   public FieldAccessor() {
   }
@@ -42,6 +43,7 @@ public class FieldAccessor implements AccessorNode {
   }
 
   public Object getValue(Object ctx, Object elCtx, VariableResolverFactory vars) {
+    Field field = fieldOf(ctx);
     try {
       if (nextNode != null) {
         return nextNode.getValue(field.get(ctx), elCtx, vars);
@@ -55,6 +57,7 @@ public class FieldAccessor implements AccessorNode {
   }
 
   public Object setValue(Object ctx, Object elCtx, VariableResolverFactory variableFactory, Object value) {
+    Field field = fieldOf(ctx);
     if (nextNode != null) {
       try {
         return nextNode.setValue(field.get(ctx), elCtx, variableFactory, value == null && primitive ? PropertyTools.getPrimitiveInitialValue(field.getType()) : value);
@@ -97,12 +100,42 @@ public class FieldAccessor implements AccessorNode {
     }
   }
 
+  /**
+   * Returns the field to access on the receiver: the bound field, or the public field of the same name of a
+   * receiver of another class, cached per receiver class. The inline cache is created on the first such receiver.
+   */
+  private Field fieldOf(Object ctx) {
+    if (ctx == null || field.getDeclaringClass().isInstance(ctx) || Modifier.isStatic(field.getModifiers())) {
+      return field;
+    }
+    InlineCache<Field> cache = inlineCache;
+    if (cache == null) {
+      synchronized (this) {
+        if ((cache = inlineCache) == null) {
+          inlineCache = cache = new InlineCache<Field>(FieldAccessor.class, field.getName(), new Class[0], this::findOverride);
+        }
+      }
+    }
+    Field f = cache.resolve(ctx.getClass());
+    return f != null ? f : field;
+  }
+
+  private Field findOverride(Class<?> receiver) {
+    try {
+      return receiver.getField(field.getName());
+    }
+    catch (NoSuchFieldException e) {
+      return null;
+    }
+  }
+
   public Field getField() {
     return field;
   }
 
   public void setField(Field field) {
     this.field = field;
+    this.inlineCache = null;
   }
 
   public AccessorNode getNextNode() {
@@ -23,6 +23,7 @@ import org.mvel2.compiler.AccessorNode;
 import org.mvel2.integration.VariableResolverFactory;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 
 import static org.mvel2.MVEL.getProperty;
 import static org.mvel2.util.ParseTools.getBestCandidate;
@@ -31,10 +32,18 @@ import static org.mvel2.util.ReflectionUtil.getPropertyFromAccessor;
 public class GetterAccessor implements AccessorNode {
   private AccessorNode nextNode;
   private final Method method;
+  private final Class<?> receiverType;
+  private volatile InlineCache<Method> inlineCache;
 
   public static final Object[] EMPTY = new Object[0];
 
   public Object getValue(Object ctx, Object elCtx, VariableResolverFactory vars) {
+    if (ctx != null && receiverType != null && !receiverType.isInstance(ctx)) {
+      Method o = resolveOverride(ctx.getClass());
+      if (o != null) {
+        return executeOverrideTarget(o, ctx, elCtx, vars);
+      }
+    }
     try {
       if (nextNode != null) {
         return nextNode.getValue(method.invoke(ctx, EMPTY), elCtx, vars);
@@ -45,7 +54,7 @@ public class GetterAccessor implements AccessorNode {
     }
     catch (IllegalArgumentException e) {
       if (ctx != null && method.getDeclaringClass() != ctx.getClass()) {
-        Method o = getBestCandidate(EMPTY, method.getName(), ctx.getClass(), ctx.getClass().getMethods(), true);
+        Method o = resolveOverride(ctx.getClass());
         if (o != null) {
           return executeOverrideTarget(o, ctx, elCtx, vars);
         }
@@ -79,6 +88,7 @@ public class GetterAccessor implements AccessorNode {
 
   public GetterAccessor(Method method) {
     this.method = method;
+    this.receiverType = Modifier.isStatic(method.getModifiers()) ? null : method.getDeclaringClass();
   }
 
   public Method getMethod() {
@@ -130,6 +140,25 @@ public class GetterAccessor implements AccessorNode {
     return method.getReturnType();
   }
 
+  /**
+   * Resolves the getter of a receiver of another class than the one the accessor is bound to. The inline cache is created on the first such receiver.
+   */
+  private Method resolveOverride(Class<?> receiver) {
+    InlineCache<Method> cache = inlineCache;
+    if (cache == null) {
+      synchronized (this) {
+        if ((cache = inlineCache) == null) {
+          inlineCache = cache = new InlineCache<Method>(GetterAccessor.class, method.getName(), new Class[0], this::findOverride);
+        }
+      }
+    }
+    return cache.resolve(receiver);
+  }
+
+  private Method findOverride(Class<?> receiver) {
+    return getBestCandidate(EMPTY, method.getName(), receiver, InlineCache.getMethods(receiver), true);
+  }
+
   private Object executeOverrideTarget(Method o, Object ctx, Object elCtx, VariableResolverFactory vars) {
     try {
       if (nextNode != null) {
@@ -48,6 +48,10 @@ public class IndexedVariableAccessor implements AccessorNode {
     }
   }
 
+  public int getRegister() {
+    return register;
+  }
+
   public AccessorNode getNextNode() {
     return nextNode;
   }
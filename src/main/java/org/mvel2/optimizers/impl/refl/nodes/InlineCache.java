@@ -0,0 +1,186 @@
+package org.mvel2.optimizers.impl.refl.nodes;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded polymorphic inline cache of a reflective call site: maps the receiver classes seen at the site, other
+ * than the class the accessor was bound to, to the member resolved for them.
+ * <p>
+ * Accessors create their cache on the first receiver of another class, so sites that only see the class they were
+ * bound to allocate nothing. A site becomes polymorphic when it caches a receiver class and megamorphic once more
+ * than {@link #MAX_ENTRIES} receiver classes are seen; a megamorphic site stops caching and looks its misses up in a
+ * table kept per receiver class and shared by all the sites with the same signature, so each receiver class is
+ * resolved once per signature. The cache is copy-on-write, so lookups never lock. The site counters cover all the
+ * sites created since startup, including collected ones.
+ */
+public class InlineCache<T> {
+  public static final int MAX_ENTRIES = 4;
+
+  private static final Object[] EMPTY = new Object[0];
+
+  /**
+   * Marks a signature that resolves to no member for a receiver class.
+   */
+  private static final Object UNRESOLVED = new Object();
+
+  private static final AtomicLong polymorphicSites = new AtomicLong();
+  private static final AtomicLong megamorphicSites = new AtomicLong();
+
+  private static final ClassValue<Method[]> methods = new ClassValue<Method[]>() {
+    @Override
+    protected Method[] computeValue(Class<?> type) {
+      return type.getMethods();
+    }
+  };
+
+  private static final ClassValue<ConcurrentHashMap<Signature, Object>> megamorphicResolutions =
+      new ClassValue<ConcurrentHashMap<Signature, Object>>() {
+        @Override
+        protected ConcurrentHashMap<Signature, Object> computeValue(Class<?> type) {
+          return new ConcurrentHashMap<Signature, Object>();
+        }
+      };
+
+  private final Signature signature;
+  private final Function<Class<?>, T> resolver;
+
+  /**
+   * Receiver classes and their members, interleaved.
+   */
+  private volatile Object[] entries = EMPTY;
+  private volatile boolean megamorphic;
+
+  /**
+   * @param site           the class of the accessor, the resolution of a signature depends on it
+   * @param name           the name of the member
+   * @param parameterTypes the parameter types the member is resolved for
+   * @param resolver       resolves the member for a receiver class, returns {@code null} if it has none
+   */
+  public InlineCache(Class<?> site, String name, Class<?>[] parameterTypes, Function<Class<?>, T> resolver) {
+    this.signature = new Signature(site, name, parameterTypes);
+    this.resolver = resolver;
+  }
+
+  /**
+   * Returns the member for the receiver class, resolving it on a miss, or {@code null} if it has none.
+   */
+  @SuppressWarnings("unchecked")
+  public T resolve(Class<?> receiver) {
+    T member = get(receiver);
+    if (member != null) {
+      return member;
+    }
+    if (megamorphic) {
+      ConcurrentHashMap<Signature, Object> resolutions = megamorphicResolutions.get(receiver);
+      Object resolved = resolutions.get(signature);
+      if (resolved == null) {
+        member = resolver.apply(receiver);
+        resolutions.putIfAbsent(signature, member == null ? UNRESOLVED : member);
+        return member;
+      }
+      return resolved == UNRESOLVED ? null : (T) resolved;
+    }
+    if ((member = resolver.apply(receiver)) != null) {
+      put(receiver, member);
+    }
+    return member;
+  }
+
+  /**
+   * Returns the member cached for the receiver class, or {@code null}.
+   */
+  @SuppressWarnings("unchecked")
+  public T get(Class<?> receiver) {
+    Object[] e = entries;
+    for (int i = 0; i < e.length; i += 2) {
+      if (e[i] == receiver) {
+        return (T) e[i + 1];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Caches the member resolved for the receiver class, unless the site is megamorphic.
+   */
+  public synchronized void put(Class<?> receiver, T member) {
+    if (megamorphic || member == null || get(receiver) != null) {
+      return;
+    }
+    Object[] e = entries;
+    if (e.length == MAX_ENTRIES * 2) {
+      megamorphic = true;
+      polymorphicSites.decrementAndGet();
+      megamorphicSites.incrementAndGet();
+      return;
+    }
+    if (e.length == 0) {
+      polymorphicSites.incrementAndGet();
+    }
+    Object[] n = new Object[e.length + 2];
+    System.arraycopy(e, 0, n, 0, e.length);
+    n[e.length] = receiver;
+    n[e.length + 1] = member;
+    entries = n;
+  }
+
+  public int size() {
+    return entries.length / 2;
+  }
+
+  public boolean isMegamorphic() {
+    return megamorphic;
+  }
+
+  /**
+   * Returns the public methods of a class. The array is shared and must not be modified.
+   */
+  public static Method[] getMethods(Class<?> type) {
+    return methods.get(type);
+  }
+
+  /**
+   * Number of reflective call sites that cache members for receiver classes other than the one they were bound to.
+   */
+  public static long getPolymorphicSiteCount() {
+    return polymorphicSites.get();
+  }
+
+  /**
+   * Number of reflective call sites that have seen too many receiver classes to cache them.
+   */
+  public static long getMegamorphicSiteCount() {
+    return megamorphicSites.get();
+  }
+
+  private static final class Signature {
+    private final Class<?> site;
+    private final String name;
+    private final Class<?>[] parameterTypes;
+    private final int hash;
+
+    Signature(Class<?> site, String name, Class<?>[] parameterTypes) {
+      this.site = site;
+      this.name = name;
+      this.parameterTypes = parameterTypes;
+      this.hash = 31 * (31 * site.hashCode() + name.hashCode()) + Arrays.hashCode(parameterTypes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Signature)) return false;
+      Signature that = (Signature) o;
+      return site == that.site && name.equals(that.name) && Arrays.equals(parameterTypes, that.parameterTypes);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -24,6 +24,7 @@ import org.mvel2.compiler.ExecutableStatement;
 import org.mvel2.integration.VariableResolverFactory;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.Arrays;
 
 import static org.mvel2.util.ParseTools.getBestCandidate;
@@ -32,10 +33,18 @@ import static org.mvel2.util.ParseTools.getWidenedTarget;
 public class MethodAccessor extends InvokableAccessor {
 
   private Method method;
+  private Class<?> receiverType;
   private int executionContextParamIndex = -1;
+  private volatile InlineCache<Method> inlineCache;
 
   public Object getValue(Object ctx, Object elCtx, VariableResolverFactory vars) {
     if (!coercionNeeded) {
+      if (ctx != null && receiverType != null && !receiverType.isInstance(ctx)) {
+        Method o = resolveOverride(ctx.getClass());
+        if (o != null) {
+          return executeOverrideTarget(o, ctx, elCtx, vars);
+        }
+      }
       try {
         if (nextNode != null) {
           return nextNode.getValue(method.invoke(ctx, executeAll(elCtx, vars, method)), elCtx, vars);
@@ -46,9 +55,9 @@ public class MethodAccessor extends InvokableAccessor {
       }
       catch (IllegalArgumentException e) {
           if (ctx != null && method.getDeclaringClass() != ctx.getClass()) {
-              Method o = getBestCandidate(parameterTypes, method.getName(), ctx.getClass(), ctx.getClass().getMethods(), true);
+              Method o = resolveOverride(ctx.getClass());
               if (o != null) {
-                  return executeOverrideTarget(getWidenedTarget(o), ctx, elCtx, vars);
+                  return executeOverrideTarget(o, ctx, elCtx, vars);
               }
           }
 
@@ -77,7 +86,7 @@ public class MethodAccessor extends InvokableAccessor {
         Object[] vs = executeAndCoerce(parameterTypes, elCtx, vars, false);
         Method newMeth;
         if ((newMeth = getWidenedTarget(getBestCandidate(vs, method.getName(), ctx.getClass(),
-            ctx.getClass().getMethods(), false))) != null) {
+            InlineCache.getMethods(ctx.getClass()), false))) != null) {
           return executeOverrideTarget(newMeth, ctx, elCtx, vars);
         }
         else {
@@ -94,6 +103,26 @@ public class MethodAccessor extends InvokableAccessor {
     }
   }
 
+  /**
+   * Resolves the method to invoke on a receiver of another class than the one the accessor is bound to. The inline cache is created on the first such receiver.
+   */
+  private Method resolveOverride(Class<?> receiver) {
+    InlineCache<Method> cache = inlineCache;
+    if (cache == null) {
+      synchronized (this) {
+        if ((cache = inlineCache) == null) {
+          inlineCache = cache = new InlineCache<Method>(MethodAccessor.class, method.getName(), parameterTypes, this::findOverride);
+        }
+      }
+    }
+    return cache.resolve(receiver);
+  }
+
+  private Method findOverride(Class<?> receiver) {
+    Method o = getBestCandidate(parameterTypes, method.getName(), receiver, InlineCache.getMethods(receiver), true);
+    return o == null ? null : getWidenedTarget(o);
+  }
+
   private Object executeOverrideTarget(Method o, Object ctx, Object elCtx, VariableResolverFactory vars) {
     // this local field is required to make sure exception block works with the same coercionNeeded value
     // and it is not changed by another thread while setter is invoked
@@ -175,8 +204,10 @@ public class MethodAccessor extends InvokableAccessor {
 
   public void setMethod(Method method) {
     this.method = method;
+    this.receiverType = Modifier.isStatic(method.getModifiers()) ? null : method.getDeclaringClass();
     this.length = (this.parameterTypes = this.method.getParameterTypes()).length;
     this.executionContextParamIndex = Arrays.asList(this.parameterTypes).indexOf(ExecutionContext.class);
+    this.inlineCache = null;
   }
 
   public ExecutableStatement[] getParms() {
@@ -201,7 +232,7 @@ public class MethodAccessor extends InvokableAccessor {
     }
     catch (IllegalArgumentException e) {
       if (ctx != null && method.getDeclaringClass() != ctx.getClass()) {
-        Method o = getBestCandidate(parameterTypes, method.getName(), ctx.getClass(), ctx.getClass().getMethods(), true);
+        Method o = resolveOverride(ctx.getClass());
         if (o != null) {
           return nextNode.setValue(executeOverrideTarget(o, ctx, elCtx, variableFactory), elCtx, variableFactory, value);
         }
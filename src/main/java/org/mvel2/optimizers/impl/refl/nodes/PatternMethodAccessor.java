@@ -0,0 +1,128 @@
+package org.mvel2.optimizers.impl.refl.nodes;
+
+import org.mvel2.PatternCache;
+import org.mvel2.compiler.ExecutableStatement;
+import org.mvel2.integration.VariableResolverFactory;
+
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Invokes the regular expression methods of {@link String} with the patterns of the shared {@link PatternCache},
+ * matching through a guarded view of the string, instead of compiling the pattern on every call. Used in sandboxed
+ * mode; receivers that are not strings are invoked as usual.
+ */
+public class PatternMethodAccessor extends MethodAccessor {
+  private static final Set<Method> PATTERN_METHODS = new HashSet<Method>();
+
+  static {
+    try {
+      PATTERN_METHODS.add(String.class.getMethod("matches", String.class));
+      PATTERN_METHODS.add(String.class.getMethod("replaceAll", String.class, String.class));
+      PATTERN_METHODS.add(String.class.getMethod("replaceFirst", String.class, String.class));
+      PATTERN_METHODS.add(String.class.getMethod("split", String.class));
+      PATTERN_METHODS.add(String.class.getMethod("split", String.class, int.class));
+    }
+    catch (NoSuchMethodException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public PatternMethodAccessor(Method method, ExecutableStatement[] parms) {
+    super(method, parms);
+  }
+
+  public static boolean isPatternMethod(Method method) {
+    return PATTERN_METHODS.contains(method);
+  }
+
+  /**
+   * Invokes one of the regular expression methods of {@link String} on the target.
+   *
+   * @param ctx the context of the execution, the match is stopped with the execution if it is an
+   *            {@link org.mvel2.ExecutionContext}
+   */
+  public static Object invoke(Method method, String target, Object[] args, Object ctx) {
+    switch (method.getName()) {
+      case "matches":
+        return matches(target, (String) args[0], ctx);
+      case "replaceAll":
+        return replaceAll(target, (String) args[0], (String) args[1], ctx);
+      case "replaceFirst":
+        return replaceFirst(target, (String) args[0], (String) args[1], ctx);
+      default:
+        return args.length == 1 ? split(target, (String) args[0], ctx)
+            : split(target, (String) args[0], (Integer) args[1], ctx);
+    }
+  }
+
+  /*
+   * The methods below take the arguments of the String method they replace followed by the context, so that
+   * accessors compiled to bytecode call them in place of the String method.
+   */
+
+  public static boolean matches(String target, String regex, Object ctx) {
+    return PatternCache.matches(PatternCache.getShared().compile(regex), target, ctx);
+  }
+
+  public static String replaceAll(String target, String regex, String replacement, Object ctx) {
+    return PatternCache.getShared().compile(regex).matcher(PatternCache.guard(target, ctx)).replaceAll(replacement);
+  }
+
+  public static String replaceFirst(String target, String regex, String replacement, Object ctx) {
+    return PatternCache.getShared().compile(regex).matcher(PatternCache.guard(target, ctx)).replaceFirst(replacement);
+  }
+
+  public static String[] split(String target, String regex, Object ctx) {
+    return split(target, regex, 0, ctx);
+  }
+
+  public static String[] split(String target, String regex, int limit, Object ctx) {
+    if (isLiteralSeparator(regex)) {
+      // String.split scans for a single literal character without a pattern, in time linear in the input
+      return target.split(regex, limit);
+    }
+    return PatternCache.getShared().compile(regex).split(PatternCache.guard(target, ctx), limit);
+  }
+
+  /**
+   * Tells whether the expression is a single character that is not a metacharacter, or an escaped character that is
+   * not a letter or a digit, the expressions that {@link String#split(String, int)} splits on without a pattern.
+   */
+  static boolean isLiteralSeparator(String regex) {
+    char ch;
+    if (regex.length() == 1) {
+      ch = regex.charAt(0);
+      if (".$|()[{^?*+\\".indexOf(ch) != -1) {
+        return false;
+      }
+    }
+    else if (regex.length() == 2 && regex.charAt(0) == '\\') {
+      ch = regex.charAt(1);
+      if ((ch >= '0' && ch <= '9') || (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z')) {
+        return false;
+      }
+    }
+    else {
+      return false;
+    }
+    return !Character.isSurrogate(ch);
+  }
+
+  /**
+   * Returns the descriptor of the method of this class that replaces the given method of {@link String}.
+   */
+  public static String getDescriptor(String methodDescriptor) {
+    int end = methodDescriptor.indexOf(')');
+    return "(Ljava/lang/String;" + methodDescriptor.substring(1, end) + "Ljava/lang/Object;" + methodDescriptor.substring(end);
+  }
+
+  public Object getValue(Object ctx, Object elCtx, VariableResolverFactory vars) {
+    if (!(ctx instanceof String)) {
+      return super.getValue(ctx, elCtx, vars);
+    }
+    Object value = invoke(getMethod(), (String) ctx, executeAndCoerce(parameterTypes, elCtx, vars, false), elCtx);
+    return nextNode != null ? nextNode.getValue(value, elCtx, vars) : value;
+  }
+}
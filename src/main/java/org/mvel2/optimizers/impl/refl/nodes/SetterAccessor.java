@@ -5,6 +5,7 @@ import org.mvel2.integration.VariableResolverFactory;
 import org.mvel2.util.PropertyTools;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 
 import static org.mvel2.DataConversion.convert;
 import static org.mvel2.util.ParseTools.getBestCandidate;
@@ -14,6 +15,7 @@ public class SetterAccessor implements AccessorNode {
   private final Method method;
   private Class<?> targetType;
   private boolean primitive;
+  private volatile InlineCache<Method> inlineCache;
 
   private boolean coercionRequired = false;
 
@@ -23,6 +25,12 @@ public class SetterAccessor implements AccessorNode {
     // this local field is required to make sure exception block works with the same coercionRequired value
     // and it is not changed by another thread while setter is invoked 
     boolean attemptedCoercion = coercionRequired;
+    if (ctx != null && !method.getDeclaringClass().isInstance(ctx) && !Modifier.isStatic(method.getModifiers())) {
+      Method o = resolveOverride(ctx.getClass());
+      if (o != null) {
+        return executeOverrideTarget(o, ctx, value);
+      }
+    }
     try {
       if (coercionRequired) {
         return method.invoke(ctx, convert(value, targetType));
@@ -33,7 +41,7 @@ public class SetterAccessor implements AccessorNode {
     }
     catch (IllegalArgumentException e) {
       if (ctx != null && method.getDeclaringClass() != ctx.getClass()) {
-        Method o = getBestCandidate(EMPTY, method.getName(), ctx.getClass(), ctx.getClass().getMethods(), true);
+        Method o = resolveOverride(ctx.getClass());
         if (o != null) {
           return executeOverrideTarget(o, ctx, value);
         }
@@ -80,6 +88,25 @@ public class SetterAccessor implements AccessorNode {
     return method.getReturnType();
   }
 
+  /**
+   * Resolves the setter of a receiver of another class than the one the accessor is bound to. The inline cache is created on the first such receiver.
+   */
+  private Method resolveOverride(Class<?> receiver) {
+    InlineCache<Method> cache = inlineCache;
+    if (cache == null) {
+      synchronized (this) {
+        if ((cache = inlineCache) == null) {
+          inlineCache = cache = new InlineCache<Method>(SetterAccessor.class, method.getName(), new Class[]{targetType}, this::findOverride);
+        }
+      }
+    }
+    return cache.resolve(receiver);
+  }
+
+  private Method findOverride(Class<?> receiver) {
+    return getBestCandidate(new Class[]{targetType}, method.getName(), receiver, InlineCache.getMethods(receiver), false);
+  }
+
   private Object executeOverrideTarget(Method o, Object ctx, Object value) {
     try {
       return o.invoke(ctx, convert(value, targetType));
@@ -28,14 +28,18 @@ import org.mvel2.ast.BooleanNode;
 import org.mvel2.ast.Contains;
 import org.mvel2.ast.Convertable;
 import org.mvel2.ast.DeclTypedVarNode;
+import org.mvel2.ast.DoubleArithmetic;
 import org.mvel2.ast.Function;
+import org.mvel2.ast.GuardedArithmetic;
 import org.mvel2.ast.Instance;
 import org.mvel2.ast.IntAdd;
+import org.mvel2.ast.IntArithmetic;
 import org.mvel2.ast.IntDiv;
 import org.mvel2.ast.IntMult;
 import org.mvel2.ast.IntOptimized;
 import org.mvel2.ast.IntSub;
 import org.mvel2.ast.LiteralNode;
+import org.mvel2.ast.LongArithmetic;
 import org.mvel2.ast.Or;
 import org.mvel2.ast.RegExMatchNode;
 import org.mvel2.ast.Soundslike;
@@ -140,7 +144,7 @@ public class CompilerTools {
             }
 
             if (bo == null)
-              bo = new BinaryOperation(op, tk, tk2, pCtx);
+              bo = specialize(op, tk, tk2, pCtx);
           }
 
           tkOp2 = null;
@@ -158,6 +162,10 @@ public class CompilerTools {
                  // Oops! We optimized the node based on the assumed right node type but it gets replaced
                  bo = new BinaryOperation(bo.getOperation(), bo.getLeft(), newRightBo, pCtx);
                }
+               else if (bo instanceof GuardedArithmetic && !(bo.getRight() instanceof BinaryOperation)) {
+                 // the node was specialized for the right operand that gets replaced
+                 bo = specialize(bo.getOperation(), bo.getLeft(), newRightBo, pCtx);
+               }
                else {
                  bo.setRightMost(newRightBo);
                }
@@ -174,11 +182,11 @@ public class CompilerTools {
                   bo = new BinaryOperation(bo.getOperation(), bo.getLeft(), bo.getRight(), pCtx);
                 }
 
-                bo.setRight(new BinaryOperation(op2, bo.getRight(), tk2, pCtx));
+                bo.setRight(specialize(op2, bo.getRight(), tk2, pCtx));
               }
             }
             else if (PTABLE[bo.getOperation()] >= PTABLE[op2]) {
-              bo = new BinaryOperation(op2, bo, astLinkedList.nextNode(), pCtx);
+              bo = specialize(op2, bo, astLinkedList.nextNode(), pCtx);
             }
             else {
               tk2 = astLinkedList.nextNode();
@@ -187,7 +195,7 @@ public class CompilerTools {
                 bo = new BinaryOperation(bo.getOperation(), bo.getLeft(), bo.getRight(), pCtx);
               }
 
-              bo.setRight(new BinaryOperation(op2, bo.getRight(), tk2, pCtx));
+              bo.setRight(specialize(op2, bo.getRight(), tk2, pCtx));
             }
 
             op = op2;
@@ -302,12 +310,50 @@ public class CompilerTools {
           return new IntDiv(tk, tk2, pCtx);
 
         default:
-          return new BinaryOperation(op, tk, tk2, pCtx);
+          return specialize(op, tk, tk2, pCtx);
       }
     }
     else {
-      return new BinaryOperation(op, tk, tk2, pCtx);
+      return specialize(op, tk, tk2, pCtx);
+    }
+  }
+
+  /**
+   * Creates the node of an operation, specialized for the types of the operands when they are numeric. When only one
+   * of the operands has a known numeric type and the other one is untyped, as values read from maps are, the other
+   * operand is speculated to have a compatible type; the node falls back to the generic path if it does not.
+   */
+  private static BinaryOperation specialize(int op, ASTNode tk, ASTNode tk2, ParserContext pCtx) {
+    if (GuardedArithmetic.isSpecializable(op)) {
+      int l = numericRank(tk);
+      int r = numericRank(tk2);
+      if (l >= 0 && r >= 0 && l + r > 0) {
+        switch (Math.max(l, r)) {
+          case 1:
+            return new IntArithmetic(op, tk, tk2, pCtx);
+          case 2:
+            return new LongArithmetic(op, tk, tk2, pCtx);
+          default:
+            return new DoubleArithmetic(op, tk, tk2, pCtx);
+        }
+      }
     }
+    return new BinaryOperation(op, tk, tk2, pCtx);
+  }
+
+  /**
+   * Returns 1, 2 or 3 for int, long and double operands, 0 for untyped operands and -1 for other types. Arithmetic
+   * specialized for doubles is expected to return doubles.
+   */
+  private static int numericRank(ASTNode node) {
+    if (node instanceof DoubleArithmetic && ((DoubleArithmetic) node).getOperation() <= Operator.MOD) return 3;
+    Class type = node.getEgressType();
+    if (type == null || type == Object.class) return 0;
+    type = boxPrimitive(type);
+    if (type == Integer.class) return 1;
+    if (type == Long.class) return 2;
+    if (type == Double.class) return 3;
+    return -1;
   }
 
   private static boolean isReductionOpportunity(ASTNode oper, ASTNode node) {
@@ -20,132 +20,144 @@ package org.mvel2.util;
 
 import org.mvel2.ScriptRuntimeException;
 
+import java.util.Arrays;
+
 import static java.lang.String.valueOf;
 import static org.mvel2.math.MathProcessor.doOperations;
 
+/**
+ * An operand stack backed by an array, so pushing and popping values does not allocate once the stack has grown
+ * to the depth of the expression. The interpreter takes its stacks from a per-thread pool with {@link #acquire()}
+ * and hands them back with {@link #release(ExecutionStack)}.
+ */
 public class ExecutionStack {
-  private StackElement element;
+  private static final int INITIAL_CAPACITY = 8;
+
+  /**
+   * Stacks grown beyond this capacity are not pooled, so that a single deep expression does not pin a large array
+   * to the thread.
+   */
+  private static final int MAX_POOLED_CAPACITY = 256;
+
+  /**
+   * Stacks kept per thread. Executions nest when a script enters a block or a function, and each nesting level
+   * takes its own stack; deeper levels use stacks that are not pooled.
+   */
+  private static final int MAX_POOLED_DEPTH = 32;
+
+  private static final ThreadLocal<Pool> pool = new ThreadLocal<Pool>() {
+    @Override
+    protected Pool initialValue() {
+      return new Pool();
+    }
+  };
+
+  private Object[] elements;
   private int size = 0;
 
+  public ExecutionStack() {
+    this(INITIAL_CAPACITY);
+  }
+
+  public ExecutionStack(int capacity) {
+    elements = new Object[Math.max(capacity, 2)];
+  }
+
+  /**
+   * Returns an empty stack from the pool of the current thread. The stack must be handed back with
+   * {@link #release(ExecutionStack)} by the same thread, in the reverse order of acquisition.
+   */
+  public static ExecutionStack acquire() {
+    return pool.get().acquire();
+  }
+
+  public static void release(ExecutionStack stack) {
+    pool.get().release(stack);
+  }
+
   public boolean isEmpty() {
     return size == 0;
   }
 
   public void add(Object o) {
-    size++;
-    StackElement el = element;
-    if (el != null) {
-      while (el.next != null) {
-        el = el.next;
-      }
-      el.next = new StackElement(null, o);
-    }
-    else {
-      element = new StackElement(null, o);
-    }
+    ensureCapacity(size + 1);
+    System.arraycopy(elements, 0, elements, 1, size++);
+    elements[0] = o;
   }
 
   public void push(Object o) {
-    size++;
-    element = new StackElement(element, o);
-    assert size == deepCount();
-
+    ensureCapacity(size + 1);
+    elements[size++] = o;
   }
 
   public void push(Object obj1, Object obj2) {
-    size += 2;
-    element = new StackElement(new StackElement(element, obj1), obj2);
-    assert size == deepCount();
-
+    ensureCapacity(size + 2);
+    elements[size++] = obj1;
+    elements[size++] = obj2;
   }
 
   public void push(Object obj1, Object obj2, Object obj3) {
-    size += 3;
-    element = new StackElement(new StackElement(new StackElement(element, obj1), obj2), obj3);
-    assert size == deepCount();
-
+    ensureCapacity(size + 3);
+    elements[size++] = obj1;
+    elements[size++] = obj2;
+    elements[size++] = obj3;
   }
 
   public Object peek() {
     if (size == 0) return null;
-    else return element.value;
+    else return elements[size - 1];
   }
 
   public void dup() {
-    size++;
-    element = new StackElement(element, element.value);
-    assert size == deepCount();
-
+    push(elements[size - 1]);
   }
 
   public Boolean peekBoolean() {
     if (size == 0) return null;
-    if (element.value instanceof Boolean) return (Boolean) element.value;
-    throw new ScriptRuntimeException("expected Boolean; but found: " + (element.value == null ? "null" : element.value.getClass().getName()));
+    return asBoolean(elements[size - 1]);
   }
 
   public void copy2(ExecutionStack es) {
-    element = new StackElement(new StackElement(element, es.element.value), es.element.next.value);
-    es.element = es.element.next.next;
-    size += 2;
-    es.size -= 2;
+    push(es.elements[es.size - 1], es.elements[es.size - 2]);
+    es.discard(2);
   }
 
   public void copyx2(ExecutionStack es) {
-    element = new StackElement(new StackElement(element, es.element.next.value), es.element.value);
-    es.element = es.element.next.next;
-    size += 2;
-    es.size -= 2;
+    push(es.elements[es.size - 2], es.elements[es.size - 1]);
+    es.discard(2);
   }
 
   public Object peek2() {
-    return element.next.value;
+    return elements[size - 2];
   }
 
   public Object pop() {
     if (size == 0) {
       return null;
     }
-    try {
-      size--;
-      return element.value;
-    }
-    finally {
-      element = element.next;
-      assert size == deepCount();
-    }
+    Object o = elements[--size];
+    elements[size] = null;
+    return o;
   }
 
   public Boolean popBoolean() {
-    if (size-- == 0) {
+    if (size == 0) {
       return null;
     }
-    try {
-      if (element.value instanceof Boolean) return (Boolean) element.value;
-      throw new ScriptRuntimeException("expected Boolean; but found: " + (element.value == null ? "null" : element.value.getClass().getName()));
-    }
-    finally {
-      element = element.next;
-      assert size == deepCount();
-
-    }
+    Object o = elements[--size];
+    elements[size] = null;
+    return asBoolean(o);
   }
 
   public Object pop2() {
-    try {
-      size -= 2;
-      return element.value;
-    }
-    finally {
-      element = element.next.next;
-      assert size == deepCount();
-    }
+    Object o = elements[size - 1];
+    discard(2);
+    return o;
   }
 
   public void discard() {
     if (size != 0) {
-      size--;
-      element = element.next;
+      elements[--size] = null;
     }
   }
 
@@ -158,75 +170,100 @@ public class ExecutionStack {
   }
 
   public void clear() {
+    Arrays.fill(elements, 0, size, null);
     size = 0;
-    element = null;
   }
 
   public void xswap_op() {
-    element = new StackElement(element.next.next.next, doOperations(element.next.next.value, (Integer) element.next.value, element.value));
-    size -= 2;
-    assert size == deepCount();
+    Object result = doOperations(elements[size - 3], (Integer) elements[size - 2], elements[size - 1]);
+    discard(3);
+    elements[size++] = result;
   }
 
   public void op() {
-    element = new StackElement(element.next.next.next, doOperations(element.next.next.value, (Integer) element.value, element.next.value));
-    size -= 2;
-    assert size == deepCount();
+    Object result = doOperations(elements[size - 3], (Integer) elements[size - 1], elements[size - 2]);
+    discard(3);
+    elements[size++] = result;
   }
 
   public void op(int operator) {
-    element = new StackElement(element.next.next, doOperations(element.next.value, operator, element.value));
-    size--;
-    assert size == deepCount();
+    Object result = doOperations(elements[size - 2], operator, elements[size - 1]);
+    discard(2);
+    elements[size++] = result;
   }
 
   public void xswap() {
-    StackElement e = element.next;
-    StackElement relink = e.next;
-    e.next = element;
-    (element = e).next.next = relink;
+    Object o = elements[size - 1];
+    elements[size - 1] = elements[size - 2];
+    elements[size - 2] = o;
   }
 
   public void xswap2() {
-    StackElement node2 = element.next;
-    StackElement node3 = node2.next;
-
-    (node2.next = element).next = node3.next;
-    element = node3;
-    element.next = node2;
+    Object o = elements[size - 1];
+    elements[size - 1] = elements[size - 3];
+    elements[size - 3] = o;
   }
 
   public int deepCount() {
-    int count = 0;
-
-    if (element == null) {
-      return 0;
-    }
-    else {
-      count++;
-    }
-
-    StackElement element = this.element;
-    while ((element = element.next) != null) {
-      count++;
-    }
-    return count;
+    return size;
   }
 
   public String toString() {
-    StackElement el = element;
-
-    if (element == null) return "<EMPTY>";
+    if (size == 0) return "<EMPTY>";
 
     StringBuilder appender = new StringBuilder().append("[");
-    do {
-      appender.append(valueOf(el.value));
-      if (el.next != null) appender.append(", ");
+    for (int i = size - 1; i >= 0; i--) {
+      appender.append(valueOf(elements[i]));
+      if (i != 0) appender.append(", ");
     }
-    while ((el = el.next) != null);
 
     appender.append("]");
 
     return appender.toString();
   }
+
+  private void discard(int n) {
+    Arrays.fill(elements, size - n, size, null);
+    size -= n;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > elements.length) {
+      elements = Arrays.copyOf(elements, Math.max(capacity, elements.length << 1));
+    }
+  }
+
+  private static Boolean asBoolean(Object o) {
+    if (o instanceof Boolean) return (Boolean) o;
+    throw new ScriptRuntimeException("expected Boolean; but found: " + (o == null ? "null" : o.getClass().getName()));
+  }
+
+  private static final class Pool {
+    private final ExecutionStack[] stacks = new ExecutionStack[MAX_POOLED_DEPTH];
+    private int depth;
+
+    ExecutionStack acquire() {
+      if (depth == MAX_POOLED_DEPTH) {
+        return new ExecutionStack();
+      }
+      ExecutionStack stack = stacks[depth];
+      if (stack == null) {
+        stack = stacks[depth] = new ExecutionStack();
+      }
+      depth++;
+      return stack;
+    }
+
+    void release(ExecutionStack stack) {
+      if (depth == 0 || stacks[depth - 1] != stack) {
+        // not pooled: acquired beyond the pooled depth
+        return;
+      }
+      stack.clear();
+      if (stack.elements.length > MAX_POOLED_CAPACITY) {
+        stack.elements = new Object[INITIAL_CAPACITY];
+      }
+      depth--;
+    }
+  }
 }
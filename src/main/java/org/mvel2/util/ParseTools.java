@@ -580,7 +580,12 @@ public class ParseTools {
     Map<String, WeakReference<Class>> cache = CLASS_RESOLVER_CACHE.get(classLoader);
 
     if (cache == null) {
-      CLASS_RESOLVER_CACHE.put(classLoader, cache = Collections.synchronizedMap( new WeakHashMap<String, WeakReference<Class>>(10) ) );
+      // compilations running in parallel must not replace each other's cache
+      synchronized (CLASS_RESOLVER_CACHE) {
+        if ((cache = CLASS_RESOLVER_CACHE.get(classLoader)) == null) {
+          CLASS_RESOLVER_CACHE.put(classLoader, cache = Collections.synchronizedMap( new WeakHashMap<String, WeakReference<Class>>(10) ) );
+        }
+      }
     }
 
     WeakReference<Class> ref;
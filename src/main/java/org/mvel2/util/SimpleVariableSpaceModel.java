@@ -6,10 +6,12 @@ import org.mvel2.integration.impl.IndexVariableResolver;
 import org.mvel2.integration.impl.IndexedVariableResolverFactory;
 import org.mvel2.integration.impl.SimpleValueResolver;
 
+import java.io.Serializable;
+
 /**
  * @author Mike Brock .
  */
-public class SimpleVariableSpaceModel extends VariableSpaceModel {
+public class SimpleVariableSpaceModel extends VariableSpaceModel implements Serializable {
   public SimpleVariableSpaceModel(String[] allVars) {
     super(allVars);
   }
@@ -3,10 +3,18 @@ package org.mvel2.tests.core;
 import org.junit.Assert;
 import org.mvel2.MVEL;
 import org.mvel2.ParserConfiguration;
+import org.mvel2.Operator;
 import org.mvel2.ParserContext;
+import org.mvel2.ast.ASTNode;
+import org.mvel2.ast.BinaryOperation;
+import org.mvel2.ast.DoubleArithmetic;
+import org.mvel2.ast.GuardedArithmetic;
+import org.mvel2.ast.IntArithmetic;
+import org.mvel2.ast.LongArithmetic;
 import org.mvel2.compiler.CompiledExpression;
 import org.mvel2.compiler.ExecutableStatement;
 import org.mvel2.compiler.ExpressionCompiler;
+import org.mvel2.math.MathProcessor;
 import org.mvel2.optimizers.OptimizerFactory;
 import org.mvel2.util.Make;
 
@@ -1129,4 +1137,117 @@ public class ArithmeticTests extends AbstractTest {
     Object result = MVEL.executeExpression(compileExpression, parserContext, expressionVars);
     Assert.assertEquals(3919.9, ((Number)result).doubleValue(), 0.01);
   }
+
+  public void testGuardedArithmetic() {
+    CompiledExpression compiled = new ExpressionCompiler("temperature * 1.8 + 32", new ParserContext()).compile();
+    ASTNode node = compiled.getFirstNode();
+    assertTrue(node instanceof DoubleArithmetic);
+    GuardedArithmetic product = (GuardedArithmetic) ((BinaryOperation) node).getLeft();
+    assertTrue(product instanceof DoubleArithmetic);
+
+    Map<String, Object> vars = new HashMap<String, Object>();
+    vars.put("temperature", 20);
+    assertEquals(68.0, executeExpression(compiled, vars));
+    vars.put("temperature", 25.5);
+    assertEquals(77.9, (Double) executeExpression(compiled, vars), 1e-9);
+    assertFalse(product.isDeoptimized());
+
+    vars.put("temperature", "10");
+    assertEquals(50.0, executeExpression(compiled, vars));
+    assertTrue(product.isDeoptimized());
+    assertFalse(((GuardedArithmetic) node).isDeoptimized());
+    vars.put("temperature", 20);
+    assertEquals(68.0, executeExpression(compiled, vars));
+
+    compiled = new ExpressionCompiler("32 + temperature * 1.8", new ParserContext()).compile();
+    assertTrue(compiled.getFirstNode() instanceof DoubleArithmetic);
+    assertEquals(68.0, executeExpression(compiled, vars));
+
+    compiled = new ExpressionCompiler("count + 1", new ParserContext()).compile();
+    assertTrue(compiled.getFirstNode() instanceof IntArithmetic);
+    vars.put("count", Integer.MAX_VALUE);
+    assertEquals(Integer.MAX_VALUE + 1L, executeExpression(compiled, vars));
+    vars.put("count", 2.5);
+    assertEquals(3.5, executeExpression(compiled, vars));
+  }
+
+  public void testGuardedArithmeticMatchesGenericPath() {
+    Object[] values = {7, -3, Integer.MAX_VALUE, 7L, -3L, Long.MAX_VALUE / 3, 2.5, -0.5};
+    int[] operations = {Operator.ADD, Operator.SUB, Operator.MULT, Operator.DIV, Operator.MOD, Operator.LTHAN,
+        Operator.GTHAN, Operator.LETHAN, Operator.GETHAN, Operator.EQUAL, Operator.NEQUAL};
+    for (Object a : values) {
+      for (Object b : values) {
+        for (int op : operations) {
+          Object fast = IntArithmetic.apply(op, a, b);
+          if (fast == null) fast = LongArithmetic.apply(op, a, b);
+          if (fast == null) fast = DoubleArithmetic.apply(op, a, b);
+          assertEquals(a + " " + op + " " + b, MathProcessor.doOperations(a, op, b), fast);
+        }
+      }
+    }
+    assertNull(IntArithmetic.apply(Operator.ADD, 1, 1L));
+    assertNull(LongArithmetic.apply(Operator.ADD, 1L, 1.0));
+    assertNull(DoubleArithmetic.apply(Operator.ADD, 1, 1));
+    assertNull(DoubleArithmetic.apply(Operator.ADD, 1.0, "1"));
+  }
+
+  public void testRuntimeSpecialization() {
+    Map<String, Object> vars = new HashMap<String, Object>();
+    CompiledExpression compiled = new ExpressionCompiler("a + b", new ParserContext()).compile();
+    BinaryOperation node = (BinaryOperation) compiled.getFirstNode();
+    assertFalse(node instanceof GuardedArithmetic);
+    for (int i = 0; i < BinaryOperation.profilingThreshold; i++) {
+      assertNull(node.getSpecializedType());
+      vars.put("a", (long) i);
+      vars.put("b", i % 2 == 0 ? (Object) 1 : (Object) 1L);
+      assertEquals(i + 1L, executeExpression(compiled, vars));
+    }
+    assertEquals(Long.class, node.getSpecializedType());
+    vars.put("a", Long.MAX_VALUE);
+    vars.put("b", 1L);
+    assertEquals(Long.MIN_VALUE, executeExpression(compiled, vars));
+    vars.put("b", "!");
+    assertEquals(Long.MAX_VALUE + "!", executeExpression(compiled, vars));
+    assertNull(node.getSpecializedType());
+
+    compiled = new ExpressionCompiler("name + suffix", new ParserContext()).compile();
+    node = (BinaryOperation) compiled.getFirstNode();
+    for (int i = 0; i < BinaryOperation.profilingThreshold; i++) {
+      vars.put("name", "n" + i);
+      vars.put("suffix", i % 2 == 0 ? (Object) "s" : (Object) i);
+      assertEquals("n" + i + vars.get("suffix"), executeExpression(compiled, vars));
+    }
+    assertEquals(String.class, node.getSpecializedType());
+    vars.put("name", 1);
+    vars.put("suffix", "s");
+    assertEquals("1s", executeExpression(compiled, vars));
+    vars.put("name", 1);
+    vars.put("suffix", 1);
+    assertEquals(2, executeExpression(compiled, vars));
+    assertNull(node.getSpecializedType());
+
+    compiled = new ExpressionCompiler("a * b", new ParserContext()).compile();
+    node = (BinaryOperation) compiled.getFirstNode();
+    for (int i = 0; i < BinaryOperation.profilingThreshold; i++) {
+      vars.put("a", i);
+      vars.put("b", i % 2 == 0 ? (Object) 2 : (Object) 0.5);
+      assertEquals(MathProcessor.doOperations(i, Operator.MULT, vars.get("b")), executeExpression(compiled, vars));
+    }
+    assertNull(node.getSpecializedType());
+  }
+
+  public void testSpeculationRespecializes() {
+    CompiledExpression compiled = new ExpressionCompiler("count + 1", new ParserContext()).compile();
+    IntArithmetic node = (IntArithmetic) compiled.getFirstNode();
+    Map<String, Object> vars = new HashMap<String, Object>();
+    for (int i = 0; i < BinaryOperation.profilingThreshold; i++) {
+      vars.put("count", i + 0.5);
+      assertEquals(i + 1.5, executeExpression(compiled, vars));
+    }
+    assertTrue(node.isDeoptimized());
+    assertEquals(Double.class, node.getSpecializedType());
+    vars.put("count", 1);
+    assertEquals(2, executeExpression(compiled, vars));
+    assertNull(node.getSpecializedType());
+  }
 }
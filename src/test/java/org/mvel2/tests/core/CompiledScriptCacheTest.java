@@ -0,0 +1,272 @@
+package org.mvel2.tests.core;
+
+import junit.framework.TestCase;
+import org.mvel2.CompiledScriptCache;
+import org.mvel2.CompiledScriptSnapshot;
+import org.mvel2.ExecutionContext;
+import org.mvel2.ParserContext;
+import org.mvel2.SandboxedParserConfiguration;
+import org.mvel2.optimizers.OptimizerFactory;
+import org.mvel2.optimizers.dynamic.DynamicClassLoader;
+import org.mvel2.optimizers.dynamic.DynamicOptimizer;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.mvel2.MVEL.compileExpression;
+import static org.mvel2.MVEL.executeTbExpression;
+
+public class CompiledScriptCacheTest extends TestCase {
+
+    private SandboxedParserConfiguration parserConfig;
+
+    @Override
+    protected void setUp() throws Exception {
+        OptimizerFactory.setDefaultOptimizer(OptimizerFactory.SAFE_REFLECTIVE);
+        super.setUp();
+        this.parserConfig = ParserContext.enableSandboxedMode();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        ParserContext.disableSandboxedMode();
+    }
+
+    public void testHitAndMiss() {
+        CompiledScriptCache cache = new CompiledScriptCache(1000);
+        Serializable first = cache.compile("var a = 1; a + 1");
+        Serializable second = cache.compile("var a = 1; a + 1");
+        assertSame(first, second);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.size());
+        assertEquals(2, executeTbExpression(second, new ExecutionContext(parserConfig), new HashMap()));
+
+        assertNotSame(first, cache.compile("var a = 1; a + 1", new SandboxedParserConfiguration()));
+        assertEquals(2, cache.size());
+    }
+
+    public void testHitOutsideSandboxedMode() {
+        ParserContext.disableSandboxedMode();
+        CompiledScriptCache cache = new CompiledScriptCache(1000);
+        Serializable first = cache.compile("1 + 2");
+        assertSame(first, cache.compile("1 + 2"));
+        assertSame(first, cache.compile("1 + 2"));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.size());
+    }
+
+    public void testAccessorClassesWeight() {
+        int oldThreshold = DynamicOptimizer.tenuringThreshold;
+        long oldTimeSpan = DynamicOptimizer.timeSpan;
+        DynamicOptimizer.tenuringThreshold = 1;
+        DynamicOptimizer.timeSpan = 1000 * 60 * 60L;
+        OptimizerFactory.setDefaultOptimizer(OptimizerFactory.DYNAMIC);
+        try {
+            HashMap<String, Object> msg = new HashMap<>();
+            msg.put("temperature", 21);
+            HashMap<String, Object> vars = new HashMap<>();
+            vars.put("msg", msg);
+            CompiledScriptCache cache = new CompiledScriptCache(1000);
+            Serializable compiled = cache.compile("msg.temperature * 2", parserConfig);
+            long nodeWeight = cache.getWeight();
+            for (int i = 0; i < 5; i++) {
+                assertEquals(42, executeTbExpression(compiled, new ExecutionContext(parserConfig), vars));
+            }
+            assertSame(compiled, cache.getIfPresent("msg.temperature * 2", parserConfig));
+            assertTrue(cache.getWeight() >= nodeWeight + CompiledScriptCache.ACCESSOR_CLASS_WEIGHT);
+
+            cache.invalidate("msg.temperature * 2", parserConfig);
+            assertEquals(0, cache.getWeight());
+        } finally {
+            OptimizerFactory.setDefaultOptimizer(OptimizerFactory.SAFE_REFLECTIVE);
+            DynamicOptimizer.tenuringThreshold = oldThreshold;
+            DynamicOptimizer.timeSpan = oldTimeSpan;
+        }
+    }
+
+    public void testWeightedEviction() {
+        CompiledScriptCache cache = new CompiledScriptCache(10);
+        cache.compile("var a = 1; var b = 2; var c = 3; a + b + c");
+        cache.compile("var d = 4; var e = 5; d + e");
+        assertTrue(cache.getWeight() <= 10);
+        cache.compile("var d = 4; var e = 5; d + e");
+        cache.compile("var f = 6; var g = 7; var h = 8; f + g + h");
+        assertTrue(cache.getWeight() <= cache.getMaxWeight());
+        assertTrue(cache.getEvictionCount() > 0);
+        assertNull(cache.getIfPresent("var a = 1; var b = 2; var c = 3; a + b + c", parserConfig));
+    }
+
+    public void testInvalidate() {
+        CompiledScriptCache cache = new CompiledScriptCache(1000);
+        cache.compile("1 + 1", parserConfig);
+        assertTrue(cache.getWeight() > 0);
+        cache.invalidate("1 + 1", parserConfig);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+
+    public void testPerScriptAccessorClassLoader() {
+        int oldThreshold = DynamicOptimizer.tenuringThreshold;
+        long oldTimeSpan = DynamicOptimizer.timeSpan;
+        DynamicOptimizer.tenuringThreshold = 1;
+        DynamicOptimizer.timeSpan = 1000 * 60 * 60L;
+        OptimizerFactory.setDefaultOptimizer(OptimizerFactory.DYNAMIC);
+        try {
+            HashMap<String, Object> msg = new HashMap<>();
+            msg.put("temperature", 21);
+            HashMap<String, Object> vars = new HashMap<>();
+            vars.put("msg", msg);
+
+            ParserContext first = new ParserContext();
+            ParserContext second = new ParserContext();
+            Serializable firstCompiled = compileExpression("msg.temperature * 2", first);
+            Serializable secondCompiled = compileExpression("msg.temperature + 2", second);
+            for (int i = 0; i < 5; i++) {
+                assertEquals(42, executeTbExpression(firstCompiled, new ExecutionContext(parserConfig), vars));
+                assertEquals(23, executeTbExpression(secondCompiled, new ExecutionContext(parserConfig), vars));
+            }
+            DynamicClassLoader firstLoader = first.getAccessorClassLoader();
+            DynamicClassLoader secondLoader = second.getAccessorClassLoader();
+            assertNotSame(firstLoader, secondLoader);
+            assertTrue(firstLoader.getTotalClasses() > 0);
+            assertTrue(secondLoader.getTotalClasses() > 0);
+
+            long recycleCount = DynamicClassLoader.getRecycleCount();
+            first.releaseAccessorClassLoader();
+            assertEquals(recycleCount + 1, DynamicClassLoader.getRecycleCount());
+            assertSame(secondLoader, second.getAccessorClassLoader());
+
+            for (int i = 0; i < 5; i++) {
+                assertEquals(42, executeTbExpression(firstCompiled, new ExecutionContext(parserConfig), vars));
+            }
+            assertNotSame(firstLoader, first.getAccessorClassLoader());
+            assertTrue(first.getAccessorClassLoader().getTotalClasses() > 0);
+        } finally {
+            OptimizerFactory.setDefaultOptimizer(OptimizerFactory.SAFE_REFLECTIVE);
+            DynamicOptimizer.tenuringThreshold = oldThreshold;
+            DynamicOptimizer.timeSpan = oldTimeSpan;
+        }
+    }
+
+    public void testSnapshot() throws IOException {
+        String script = "function sum(l) { var s = 0; foreach (v : l) { s += v; } return s; }\n" +
+                "sum([msg.temperature, 2]) + (msg.temperature > 5 ? 1 : 0)";
+        HashMap<String, Object> vars = new HashMap<>();
+        vars.put("msg", Collections.singletonMap("temperature", 20));
+
+        CompiledScriptCache cache = new CompiledScriptCache(1000);
+        assertEquals(23, executeTbExpression(cache.compile(script, parserConfig), new ExecutionContext(parserConfig), vars));
+        cache.compile("1 + 1", parserConfig);
+        cache.compile("2 + 2", new SandboxedParserConfiguration());
+
+        Path file = Files.createTempFile("scripts", ".snapshot");
+        try {
+            assertEquals(2, cache.writeSnapshot(file, parserConfig));
+
+            SandboxedParserConfiguration restartConfig = new SandboxedParserConfiguration();
+            Map<String, Serializable> scripts = CompiledScriptSnapshot.read(file, restartConfig);
+            assertEquals(2, scripts.size());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(23, executeTbExpression(scripts.get(script), new ExecutionContext(restartConfig), vars));
+            }
+
+            CompiledScriptCache restored = new CompiledScriptCache(1000);
+            assertEquals(2, restored.restoreSnapshot(file, restartConfig));
+            assertEquals(0, restored.restoreSnapshot(file, restartConfig));
+            assertEquals(0, restored.getMissCount());
+            Serializable compiled = restored.getIfPresent(script, restartConfig);
+            assertNotNull(compiled);
+            assertEquals(23, executeTbExpression(compiled, new ExecutionContext(restartConfig), vars));
+            assertEquals(2, executeTbExpression(restored.compile("1 + 1", restartConfig), new ExecutionContext(restartConfig), vars));
+            assertEquals(0, restored.getMissCount());
+
+            Files.write(file, new byte[]{1, 2, 3});
+            try {
+                CompiledScriptSnapshot.read(file, restartConfig);
+                fail("Should throw IOException");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().startsWith("not a compiled script snapshot"));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testSnapshotRegexAndTypeLiterals() throws IOException {
+        Map<String, Serializable> scripts = new LinkedHashMap<>();
+        scripts.put("regex", compileExpression("msg.name ~= 'ab.*'", new ParserContext(parserConfig)));
+        scripts.put("type", compileExpression("msg.name instanceof String", new ParserContext(parserConfig)));
+        HashMap<String, Object> vars = new HashMap<>();
+        vars.put("msg", Collections.singletonMap("name", "abc"));
+
+        Path file = Files.createTempFile("scripts", ".snapshot");
+        try {
+            assertEquals(2, CompiledScriptSnapshot.write(file, scripts));
+            Map<String, Serializable> restored = CompiledScriptSnapshot.read(file, parserConfig);
+            assertEquals(2, restored.size());
+            assertEquals(true, executeTbExpression(restored.get("regex"), new ExecutionContext(parserConfig), vars));
+            assertEquals(true, executeTbExpression(restored.get("type"), new ExecutionContext(parserConfig), vars));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testSnapshotSkipsUnserializableScripts() throws IOException {
+        Map<String, Serializable> scripts = new LinkedHashMap<>();
+        scripts.put("1 + 1", compileExpression("1 + 1", new ParserContext(parserConfig)));
+        scripts.put("broken", new Unserializable());
+        scripts.put("2 + 2", compileExpression("2 + 2", new ParserContext(parserConfig)));
+
+        Path file = Files.createTempFile("scripts", ".snapshot");
+        try {
+            assertEquals(2, CompiledScriptSnapshot.write(file, scripts));
+            Map<String, Serializable> restored = CompiledScriptSnapshot.read(file, parserConfig);
+            assertEquals(Arrays.asList("1 + 1", "2 + 2"), new ArrayList<>(restored.keySet()));
+            assertEquals(4, executeTbExpression(restored.get("2 + 2"), new ExecutionContext(parserConfig), new HashMap<>()));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testSnapshotRejectsUnexpectedClasses() throws IOException {
+        Map<String, Serializable> scripts = new LinkedHashMap<>();
+        scripts.put("payload", new Payload());
+        scripts.put("1 + 1", compileExpression("1 + 1", new ParserContext(parserConfig)));
+
+        Path file = Files.createTempFile("scripts", ".snapshot");
+        try {
+            assertEquals(2, CompiledScriptSnapshot.write(file, scripts));
+            Payload.read = false;
+            Map<String, Serializable> restored = CompiledScriptSnapshot.read(file, parserConfig);
+            assertEquals(Collections.singleton("1 + 1"), restored.keySet());
+            assertFalse(Payload.read);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static class Unserializable implements Serializable {
+        private final Object value = new Object();
+    }
+
+    private static class Payload implements Serializable {
+        static boolean read;
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            read = true;
+            in.defaultReadObject();
+        }
+    }
+}
\ No newline at end of file
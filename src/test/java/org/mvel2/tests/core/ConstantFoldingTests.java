@@ -0,0 +1,114 @@
+package org.mvel2.tests.core;
+
+import junit.framework.TestCase;
+import org.mvel2.MVEL;
+import org.mvel2.ParserContext;
+import org.mvel2.ast.ASTNode;
+import org.mvel2.ast.IfNode;
+import org.mvel2.ast.LiteralNode;
+import org.mvel2.compiler.CompiledExpression;
+import org.mvel2.compiler.ExpressionCompiler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class ConstantFoldingTests extends TestCase {
+
+  private static ParserContext foldingContext() {
+    ParserContext ctx = new ParserContext();
+    ctx.setConstantFolding(true);
+    return ctx;
+  }
+
+  private static ASTNode lastNode(CompiledExpression compiled) {
+    ASTNode node = compiled.getFirstNode();
+    while (node.nextASTNode != null) {
+      node = node.nextASTNode;
+    }
+    return node;
+  }
+
+  private static Object run(CompiledExpression compiled) {
+    Map<String, Object> vars = new HashMap<String, Object>();
+    vars.put("x", 3);
+    vars.put("c", true);
+    return MVEL.executeExpression(compiled, vars);
+  }
+
+  public void testDisabledByDefault() {
+    ParserContext ctx = new ParserContext();
+    CompiledExpression compiled = new ExpressionCompiler("var a = 5; a * 2", ctx).compile();
+    assertFalse(lastNode(compiled) instanceof LiteralNode);
+    assertEquals(0, ctx.getFoldedNodeCount());
+    assertEquals(10, run(compiled));
+  }
+
+  public void testPropagateAndFold() {
+    ParserContext ctx = foldingContext();
+    CompiledExpression compiled = new ExpressionCompiler("var a = 5; var b = a * 2; b + x", ctx).compile();
+    assertTrue(ctx.getFoldedNodeCount() > 0);
+    assertEquals(13, run(compiled));
+
+    ctx = foldingContext();
+    compiled = new ExpressionCompiler("var s = 'a'; s + 'b' + 'c'", ctx).compile();
+    assertTrue(lastNode(compiled) instanceof LiteralNode);
+    assertEquals("abc", run(compiled));
+  }
+
+  public void testReassignedVariablesAreNotPropagated() {
+    String[] scripts = {
+        "var a = 1; a = 2; a",
+        "var a = 1; a++; a",
+        "var a = 1; a += 1; a",
+        "var a = 1; if (c) { a = 2; } a"
+    };
+    for (String script : scripts) {
+      ParserContext ctx = foldingContext();
+      CompiledExpression compiled = new ExpressionCompiler(script, ctx).compile();
+      assertFalse(script, lastNode(compiled) instanceof LiteralNode);
+      assertEquals(script, 2, run(compiled));
+    }
+
+    ParserContext ctx = foldingContext();
+    CompiledExpression compiled = new ExpressionCompiler("char chr; chr = 100; chr", ctx).compile();
+    assertEquals((char) 100, run(compiled));
+  }
+
+  public void testDeadBranches() {
+    ParserContext ctx = foldingContext();
+    CompiledExpression compiled = new ExpressionCompiler("var DEBUG = false; if (DEBUG) { 1 } else if (c) { 2 } else { 3 }", ctx).compile();
+    IfNode ifNode = (IfNode) lastNode(compiled);
+    assertEquals("c", ifNode.toString());
+    assertEquals(2, run(compiled));
+
+    ctx = foldingContext();
+    compiled = new ExpressionCompiler("if (true) { x } else if (c) { 2 } else { 3 }", ctx).compile();
+    ifNode = (IfNode) lastNode(compiled);
+    assertNull(ifNode.getElseIf());
+    assertNull(ifNode.getElseBlock());
+    assertEquals(2, ctx.getFoldedNodeCount());
+    assertEquals(3, run(compiled));
+
+    ctx = foldingContext();
+    compiled = new ExpressionCompiler("if (false) { x }", ctx).compile();
+    assertTrue(lastNode(compiled) instanceof LiteralNode);
+    assertNull(run(compiled));
+
+    ctx = foldingContext();
+    compiled = new ExpressionCompiler("x = 4; true ? x : 2", ctx).compile();
+    assertEquals(4, ctx.getFoldedNodeCount());
+    assertEquals(4, run(compiled));
+
+    ctx = foldingContext();
+    compiled = new ExpressionCompiler("var f = false; f && x > 1", ctx).compile();
+    assertTrue(lastNode(compiled) instanceof LiteralNode);
+    assertEquals(false, run(compiled));
+  }
+
+  public void testFoldingInNestedBlocks() {
+    ParserContext ctx = foldingContext();
+    CompiledExpression compiled = new ExpressionCompiler("if (c) { var k = 60; if (k > 10) { x * k } else { 0 } }", ctx).compile();
+    assertTrue(ctx.getFoldedNodeCount() > 0);
+    assertEquals(180, run(compiled));
+  }
+}
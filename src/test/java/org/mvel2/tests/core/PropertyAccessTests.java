@@ -10,12 +10,15 @@ import org.mvel2.integration.PropertyHandler;
 import org.mvel2.integration.PropertyHandlerFactory;
 import org.mvel2.integration.VariableResolverFactory;
 import org.mvel2.optimizers.OptimizerFactory;
+import org.mvel2.optimizers.impl.refl.nodes.InlineCache;
 import org.mvel2.tests.core.res.Base;
 import org.mvel2.tests.core.res.Cake;
 import org.mvel2.tests.core.res.Foo;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import static org.mvel2.MVEL.compileExpression;
 import static org.mvel2.MVEL.executeExpression;
@@ -599,4 +602,95 @@ public class PropertyAccessTests extends AbstractTest {
         Assert.assertTrue(pae.getMessage().contains("Error: unable to resolve method"));
       }
     }
+
+  public static class Sensor {
+    public int count = 1;
+    private String name = "sensor";
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public String describe(Integer level) {
+      return name + level;
+    }
+  }
+
+  public static class Gateway {
+    public int count = 2;
+    private String name = "gateway";
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public String describe(Integer level) {
+      return name + "-" + level;
+    }
+  }
+
+  public void testPolymorphicReceiversReflective() {
+    OptimizerFactory.setDefaultOptimizer(OptimizerFactory.SAFE_REFLECTIVE);
+    try {
+      long polymorphic = InlineCache.getPolymorphicSiteCount();
+      Serializable getter = compileExpression("obj.name");
+      Serializable method = compileExpression("obj.describe(1)");
+      Serializable field = compileExpression("obj.count");
+      Serializable setter = compileExpression("obj.name = 'renamed'");
+      Object[] receivers = {new Sensor(), new Gateway(), new Sensor(), new Gateway()};
+      String[] names = {"sensor", "gateway", "sensor", "gateway"};
+      for (int i = 0; i < receivers.length; i++) {
+        Map<String, Object> vars = Collections.singletonMap("obj", receivers[i]);
+        assertEquals(names[i], executeExpression(getter, vars));
+        assertEquals(i % 2 == 0 ? "sensor1" : "gateway-1", executeExpression(method, vars));
+        assertEquals(i % 2 == 0 ? 1 : 2, executeExpression(field, vars));
+      }
+      for (Object receiver : receivers) {
+        executeExpression(setter, Collections.singletonMap("obj", receiver));
+        assertEquals("renamed", executeExpression(getter, Collections.singletonMap("obj", receiver)));
+      }
+      assertTrue(InlineCache.getPolymorphicSiteCount() >= polymorphic + 4);
+    }
+    finally {
+      OptimizerFactory.setDefaultOptimizer(OptimizerFactory.DYNAMIC);
+    }
+  }
+
+  public void testMegamorphicResolutionsAreShared() {
+    final AtomicInteger resolutions = new AtomicInteger();
+    Function<Class<?>, String> resolver = new Function<Class<?>, String>() {
+      public String apply(Class<?> receiver) {
+        resolutions.incrementAndGet();
+        return receiver == Short.class ? null : receiver.getSimpleName();
+      }
+    };
+    Class<?>[] receivers = {String.class, Integer.class, Long.class, Double.class, Float.class};
+    InlineCache<String> first = new InlineCache<String>(PropertyAccessTests.class, "describe", new Class[0], resolver);
+    InlineCache<String> second = new InlineCache<String>(PropertyAccessTests.class, "describe", new Class[0], resolver);
+    for (InlineCache<String> cache : Arrays.asList(first, second)) {
+      for (Class<?> receiver : receivers) {
+        assertEquals(receiver.getSimpleName(), cache.resolve(receiver));
+      }
+      assertTrue(cache.isMegamorphic());
+      assertEquals(InlineCache.MAX_ENTRIES, cache.size());
+    }
+    assertEquals(10, resolutions.get());
+
+    // megamorphic misses are resolved once per receiver class, for all the sites with the same signature
+    for (int i = 0; i < 3; i++) {
+      assertEquals("Byte", first.resolve(Byte.class));
+      assertEquals("Byte", second.resolve(Byte.class));
+      assertNull(first.resolve(Short.class));
+      assertNull(second.resolve(Short.class));
+    }
+    assertEquals(12, resolutions.get());
+  }
 }
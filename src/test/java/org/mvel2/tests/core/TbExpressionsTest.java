@@ -2,30 +2,47 @@ package org.mvel2.tests.core;
 
 import junit.framework.Assert;
 import junit.framework.TestCase;
+import org.mvel2.BatchResult;
 import org.mvel2.CompileException;
 import org.mvel2.ExecutionContext;
+import org.mvel2.IndexedCompiledScript;
+import org.mvel2.MVEL;
 import org.mvel2.ParserContext;
+import org.mvel2.PatternCache;
 import org.mvel2.SandboxedParserConfiguration;
+import org.mvel2.ScriptExecutionStoppedException;
 import org.mvel2.ScriptMemoryOverflowException;
 import org.mvel2.ScriptRuntimeException;
+import org.mvel2.ast.BinaryOperation;
+import org.mvel2.compiler.CompiledExpression;
+import org.mvel2.execution.ExecutionArrayDeque;
 import org.mvel2.execution.ExecutionArrayList;
+import org.mvel2.execution.ExecutionDoubleList;
 import org.mvel2.execution.ExecutionHashMap;
 import org.mvel2.optimizers.OptimizerFactory;
+import org.mvel2.optimizers.dynamic.DynamicOptimizer;
+import org.mvel2.optimizers.impl.asm.ASMExpressionCompiler;
 import org.mvel2.util.MethodStub;
 
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.mvel2.MVEL.compileExpression;
@@ -2556,6 +2573,78 @@ public class TbExpressionsTest extends TestCase {
         assertEquals(expectedArray, actualArray);
     }
 
+    public void testExecutionArrayList_sortByKeyUsingFunctionsAndVariables() {
+        String body = "function sq(x) { return x * x; }\n" +
+                "var off = 3;\n" +
+                "function k(x) { return sq(x - off); }\n" +
+                "var l = [1, 2, 3, 4, 5, 6];\n" +
+                "l.sortBy(k);\n" +
+                "return l;";
+        assertEquals(Arrays.asList(3, 2, 4, 1, 5, 6), executeScript(body));
+    }
+
+    public void testExecutionArrayList_sortBy() {
+        String body = "function byTs(e) { return e.ts; }\n" +
+                "function byName(e) { return e.name; }\n" +
+                "var points = [];\n" +
+                "for (var i = 0; i < 100; i++) {\n" +
+                "    points.push({ts: (i * 37) % 10, name: 'p' + i});\n" +
+                "}\n" +
+                "var byTsAsc = points.slice();\n" +
+                "byTsAsc.sortBy(byTs);\n" +
+                "var byTsDesc = points.slice();\n" +
+                "byTsDesc.sortBy(byTs, false);\n" +
+                "var names = [{name: 'c'}, {name: 'a'}, {name: 'b'}];\n" +
+                "names.sortBy(byName);\n" +
+                "return {asc: byTsAsc, desc: byTsDesc, names: names};";
+        Map result = (Map) executeScript(body);
+
+        List<Map> asc = (List<Map>) result.get("asc");
+        List<Map> desc = (List<Map>) result.get("desc");
+        assertEquals(100, asc.size());
+        assertEquals(100, desc.size());
+        for (int i = 1; i < 100; i++) {
+            int prev = ((Number) asc.get(i - 1).get("ts")).intValue();
+            int cur = ((Number) asc.get(i).get("ts")).intValue();
+            assertTrue(prev <= cur);
+            if (prev == cur) {
+                // equal keys keep their order
+                assertTrue(index(asc.get(i - 1)) < index(asc.get(i)));
+            }
+            prev = ((Number) desc.get(i - 1).get("ts")).intValue();
+            cur = ((Number) desc.get(i).get("ts")).intValue();
+            assertTrue(prev >= cur);
+            if (prev == cur) {
+                assertTrue(index(desc.get(i - 1)) < index(desc.get(i)));
+            }
+        }
+
+        List<Map> names = (List<Map>) result.get("names");
+        assertEquals("a", names.get(0).get("name"));
+        assertEquals("b", names.get(1).get("name"));
+        assertEquals("c", names.get(2).get("name"));
+    }
+
+    private static int index(Map point) {
+        return Integer.parseInt(((String) point.get("name")).substring(1));
+    }
+
+    public void testExecutionArrayList_sortLarge() {
+        String body = "var array = [];\n" +
+                "for (var i = 0; i < 1000; i++) {\n" +
+                "    array.push((i * 7919) % 1000 - 500);\n" +
+                "}\n" +
+                "array.push('-1000.5');\n" +
+                "array.sort();\n" +
+                "return array;";
+        List result = (List) executeScript(body);
+        assertEquals(1001, result.size());
+        assertEquals("-1000.5", result.get(0));
+        for (int i = 1; i < 1001; i++) {
+            assertEquals(i - 501, ((Number) result.get(i)).intValue());
+        }
+    }
+
     public void testExecutionHashMapSortByValueAsc() {
         String body = "var msg = {};\n" +
                 "var sortValString = {2:\"21Dragon\", 3:\"Brain\", 4:\"20\", 1:\"30\"};\n" +
@@ -3713,6 +3802,204 @@ public class TbExpressionsTest extends TestCase {
         assertEquals(expected, result.toString());
     }
 
+    public void testExecutionHashMap_entrySetSetValue() {
+        String body = "var map = {a: 1, b: 2};\n" +
+                "foreach(element: map.entrySet()) {\n" +
+                "    element.setValue(element.value * 10);\n" +
+                "}\n" +
+                "return map;";
+        Object result = executeScript(body);
+        assertEquals("{a=10, b=20}", result.toString());
+    }
+
+    public void testExecutionHashMap_viewsKeepMemoryAccounting() {
+        ExecutionContext executionContext = new ExecutionContext(parserConfig, 5 * 1024 * 1024);
+        ExecutionHashMap<String, Object> map = new ExecutionHashMap<>(4, executionContext);
+        map.put("a", "aaaa");
+        map.put("b", "bbbb");
+        map.put("c", "cccc");
+        long fullSize = executionContext.getMemorySize();
+        assertEquals(fullSize, map.memorySize());
+
+        Iterator<Map.Entry<String, Object>> it = map.entrySet().iterator();
+        it.next();
+        it.remove();
+        assertTrue(map.keySet().remove("b"));
+        assertEquals("{c=cccc}", map.toString());
+        assertEquals(fullSize / 3, map.memorySize());
+        assertEquals(fullSize / 3, executionContext.getMemorySize());
+
+        map.entrySet().iterator().next().setValue("cc");
+        assertEquals("{c=cc}", map.toString());
+        assertEquals(fullSize / 3 - 2, executionContext.getMemorySize());
+    }
+
+    public void testExecutionHashMap_entrySetValueWhileIterating() {
+        ExecutionContext executionContext = new ExecutionContext(parserConfig, 5 * 1024 * 1024);
+        ExecutionHashMap<String, Object> map = new ExecutionHashMap<>(4, executionContext);
+        map.put("a", "aaaa");
+        map.put("b", "bbbb");
+        map.put("c", "cccc");
+        ExecutionContext expectedContext = new ExecutionContext(parserConfig, 5 * 1024 * 1024);
+        ExecutionHashMap<String, Object> expected = new ExecutionHashMap<>(4, expectedContext);
+        expected.put("a", "x");
+        expected.put("b", "x");
+        expected.put("c", "x");
+
+        for (Map.Entry<String, Object> e : map.entrySet()) {
+            e.setValue("x");
+        }
+        assertEquals(expected, map);
+        assertEquals(expected.memorySize(), map.memorySize());
+        assertEquals(expectedContext.getMemorySize(), executionContext.getMemorySize());
+
+        try {
+            for (Map.Entry<String, Object> e : map.entrySet()) {
+                e.setValue(null);
+            }
+            fail("Should throw IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("{a=x, b=x, c=x}", map.toString());
+        }
+    }
+
+    public void testExecutionArrayList_toNumericList() {
+        Object result = executeScript("var list = [1, 2, 3].toNumericList(); list.add(4); list");
+        assertTrue(((List) result).get(0) instanceof Long);
+        assertEquals("[1, 2, 3, 4]", result.toString());
+
+        result = executeScript("var list = [1, 2.5, 3].toNumericList(); list.push(4); list");
+        assertTrue(((List) result).get(0) instanceof Double);
+        assertEquals("[1.0, 2.5, 3.0, 4.0]", result.toString());
+
+        result = executeScript("var list = [1, 'a'].toNumericList(); list");
+        assertEquals("[1, a]", result.toString());
+    }
+
+    public void testExecutionNumericList_aggregate() {
+        String body = "var series = [21.5, 22, 23.5, 19].toDoubleList();\n" +
+                "var sum = 0;\n" +
+                "foreach(v: series) {\n" +
+                "    sum += v;\n" +
+                "}\n" +
+                "for (var i = 0; i < series.length(); i++) {\n" +
+                "    sum += series[i];\n" +
+                "}\n" +
+                "return [sum, series.sum(), series.avg(), series.min(), series.max()];";
+        Object result = executeScript(body);
+        assertEquals("[172.0, 86.0, 21.5, 19.0, 23.5]", result.toString());
+    }
+
+    public void testExecutionNumericList_searchAndSort() {
+        String body = "var series = [21.5, 19, 23.5, 19].toDoubleList();\n" +
+                "var counts = [3, 1, 2].toLongList();\n" +
+                "var found = [series.indexOf(19.0), series.lastIndexOf(19.0), series.contains(22.0), counts.contains(counts.get(1))];\n" +
+                "series.sort();\n" +
+                "counts.sort(false);\n" +
+                "return [found, series, counts];";
+        Object result = executeScript(body);
+        assertEquals("[[1, 3, false, true], [19.0, 19.0, 21.5, 23.5], [3, 2, 1]]", result.toString());
+
+        ExecutionDoubleList list = new ExecutionDoubleList(new ExecutionContext(parserConfig));
+        list.addDouble(0.0);
+        list.addDouble(Double.NaN);
+        assertEquals(-1, list.indexOf(-0.0));
+        assertEquals(1, list.indexOf(Double.NaN));
+        assertEquals(-1, list.indexOf(0));
+    }
+
+    public void testExecutionLongList_unsupportedValue() {
+        try {
+            executeScript("var list = [1, 2].toLongList(); list.add(1.5); list");
+            fail("Should throw PropertyAccessException");
+        } catch (CompileException e) {
+            assertTrue(e.getMessage().contains("Unsupported value type for long list"));
+        }
+    }
+
+    public void testExecutionNumericList_memoryAccounting() {
+        ExecutionContext executionContext = new ExecutionContext(parserConfig, 5 * 1024 * 1024);
+        ExecutionDoubleList list = new ExecutionDoubleList(executionContext);
+        for (int i = 0; i < 100; i++) {
+            list.addDouble(i);
+        }
+        assertEquals(800, list.memorySize());
+        list.remove(0);
+        list.add(0, 1);
+        list.pop();
+        assertEquals(792, list.memorySize());
+        list.clear();
+        assertEquals(0, list.memorySize());
+        assertEquals(0, executionContext.getMemorySize());
+
+        try {
+            executeScript("var list = [1].toLongList(); while(true) { list.add(1); }", new HashMap(), new ExecutionContext(parserConfig, 1024));
+            fail("Should throw ScriptMemoryOverflowException");
+        } catch (ScriptMemoryOverflowException e) {
+            assertTrue(e.getMessage().contains("Script memory overflow"));
+        }
+    }
+
+    public void testExecutionArrayList_rangeMemoryAccounting() {
+        ExecutionContext executionContext = new ExecutionContext(parserConfig, 5 * 1024 * 1024);
+        ExecutionArrayList<Integer> list = new ExecutionArrayList<>(executionContext);
+        for (int i = 0; i < 10; i++) {
+            list.add(i);
+        }
+        assertEquals(80, list.memorySize());
+        List removed = list.splice(2, 5, 100, 101);
+        assertEquals(Arrays.asList(2, 3, 4, 5, 6), removed);
+        assertEquals(Arrays.asList(0, 1, 100, 101, 7, 8, 9), list);
+        assertEquals(56, list.memorySize());
+        list.addAll(Arrays.asList(10, 11));
+        list.addAll(0, Arrays.asList(-2, -1));
+        assertEquals(Arrays.asList(-2, -1, 0, 1, 100, 101, 7, 8, 9, 10, 11), list);
+        assertEquals(88, list.memorySize());
+        assertEquals(5, list.indexOf(101, -6));
+        assertEquals(-1, list.indexOf(101, 6));
+        assertEquals(-1, list.indexOf(101, 20));
+    }
+
+    public void testExecutionArrayList_joinKeepsElements() {
+        Object result = executeScript("var list = ['a, b', '[c]', null, [1, [2, 3]]]; list.join(', ')");
+        assertEquals("a, b, [c], , 1,2,3", result);
+    }
+
+    public void testExecutionArrayDeque() {
+        String body = "var queue = [1, 2, 3].toDeque();\n" +
+                "for (var i = 4; i < 100; i++) {\n" +
+                "    queue.push(i);\n" +
+                "    queue.shift();\n" +
+                "}\n" +
+                "queue.unshift(0);\n" +
+                "var last = queue.pop();\n" +
+                "return {queue: queue, last: last, first: queue[0], size: queue.length(), list: queue.toList()};";
+        Map result = (Map) executeScript(body);
+        assertEquals(Arrays.asList(0, 97, 98), result.get("queue"));
+        assertEquals(99, result.get("last"));
+        assertEquals(0, result.get("first"));
+        assertEquals(3, result.get("size"));
+        assertEquals(Arrays.asList(0, 97, 98), result.get("list"));
+
+        ExecutionContext executionContext = new ExecutionContext(parserConfig, 5 * 1024 * 1024);
+        ExecutionArrayDeque<Integer> deque = new ExecutionArrayDeque<>(executionContext);
+        for (int i = 0; i < 20; i++) {
+            deque.unshift(i);
+            deque.push(i);
+        }
+        assertEquals(40, deque.size());
+        assertEquals(320, deque.memorySize());
+        deque.add(20, -1);
+        assertEquals(Integer.valueOf(-1), deque.remove(20));
+        assertEquals(Integer.valueOf(19), deque.shift());
+        assertEquals(Integer.valueOf(19), deque.pop());
+        assertEquals(Integer.valueOf(18), deque.get(0));
+        assertEquals(Integer.valueOf(18), deque.get(37));
+        deque.clear();
+        assertEquals(0, deque.memorySize());
+        assertEquals(0, executionContext.getMemorySize());
+    }
+
     public void testBooleanBitwiseOperations() {
         String body = " var x = true;\n" +
                 "var y = false;\n" +
@@ -3743,6 +4030,520 @@ public class TbExpressionsTest extends TestCase {
         assertEquals(expected, result.toString());
     }
 
+    public void testAsmOptimizerInSandboxedMode() {
+        OptimizerFactory.setDefaultOptimizer("ASM");
+        try {
+            String body = "var result = {temperature: msg.temperature * 2, series: [1, 2]};\n" +
+                    "result.series.add(msg.humidity);\n" +
+                    "return result;";
+            HashMap<String, Object> msg = new HashMap<>();
+            msg.put("temperature", 21);
+            msg.put("humidity", 78);
+            HashMap<String, Object> vars = new HashMap<>();
+            vars.put("msg", msg);
+            ExecutionContext executionContext = new ExecutionContext(this.parserConfig, 5 * 1024 * 1024);
+            Object result = executeScript(body, vars, executionContext);
+            assertEquals("{temperature=42, series=[1, 2, 78]}", result.toString());
+            assertTrue(executionContext.getMemorySize() > 0);
+        } finally {
+            OptimizerFactory.setDefaultOptimizer(OptimizerFactory.SAFE_REFLECTIVE);
+        }
+    }
+
+    public void testMethodHandleOptimizerInSandboxedMode() {
+        OptimizerFactory.setDefaultOptimizer(OptimizerFactory.METHOD_HANDLES);
+        try {
+            this.parserConfig.addImport("MyTestUtil", TestUtil.class);
+            String body = "var result = {temperature: msg.temperature * 2, series: [1, 2]};\n" +
+                    "result.series.add(msg.humidity);\n" +
+                    "result.name = msg.name.substring(1L).toUpperCase();\n" +
+                    "result.ctx = MyTestUtil.methodWithExecContext2('key', 'val');\n" +
+                    "return result;";
+            HashMap<String, Object> msg = new HashMap<>();
+            msg.put("temperature", 21);
+            msg.put("humidity", 78);
+            msg.put("name", "sensor");
+            HashMap<String, Object> vars = new HashMap<>();
+            vars.put("msg", msg);
+            Serializable compiled = compileExpression(body, new ParserContext());
+            for (int i = 0; i < 3; i++) {
+                Object result = executeTbExpression(compiled, new ExecutionContext(this.parserConfig), vars);
+                assertEquals("{temperature=42, series=[1, 2, 78], name=ENSOR, ctx={key=val}}", result.toString());
+            }
+
+            // a long argument for an int parameter is coerced without evaluating the argument again
+            compiled = compileExpression("msg.name.substring(counter.incrementAndGet())", new ParserContext());
+            AtomicLong counter = new AtomicLong();
+            vars.put("counter", counter);
+            assertEquals("ensor", executeTbExpression(compiled, new ExecutionContext(this.parserConfig), vars));
+            assertEquals("nsor", executeTbExpression(compiled, new ExecutionContext(this.parserConfig), vars));
+            assertEquals("sor", executeTbExpression(compiled, new ExecutionContext(this.parserConfig), vars));
+            assertEquals(3, counter.get());
+        } finally {
+            OptimizerFactory.setDefaultOptimizer(OptimizerFactory.SAFE_REFLECTIVE);
+        }
+    }
+
+    public void testMemoryReleasedOnLeaveStack() {
+        long memoryLimit = 64 * 1024; // 64KB
+        ExecutionContext executionContext = new ExecutionContext(parserConfig, memoryLimit);
+        String body = "function fill(n) { var t = 'abcdefghij'; for (var j = 0; j < n; j++) { t += 'abcdefghij'; } return t.length(); }\n" +
+                "var total = 0;\n" +
+                "for (var i = 0; i < 100; i++) { total += fill(200); }\n" +
+                "return total;";
+        Object result = executeScript(body, new HashMap(), executionContext);
+        assertEquals(201000, result);
+        assertTrue(executionContext.getMemorySize() < 1024);
+    }
+
+    public void testMemorySharedValueReferences() {
+        ExecutionContext executionContext = new ExecutionContext(parserConfig, 5 * 1024 * 1024);
+        Object result = executeScript("var a = {x: 'abcdefghij'}; var b = a; var c = b; b = null; c = null; a", new HashMap(), executionContext);
+        assertEquals("{x=abcdefghij}", result.toString());
+        long sharedSize = executionContext.getMemorySize();
+        executionContext = new ExecutionContext(parserConfig, 5 * 1024 * 1024);
+        executeScript("var a = {x: 'abcdefghij'}; a", new HashMap(), executionContext);
+        assertEquals(executionContext.getMemorySize(), sharedSize);
+    }
+
+    public void testStringMemorySize() {
+        ExecutionContext executionContext = new ExecutionContext(parserConfig, 5 * 1024 * 1024);
+        executeScript("var a = 'abc'; var b = 'ÿñ'; var c = 'привіт'; var d = '€😀'; a + b + c + d", new HashMap(), executionContext);
+        long expected = "abc".getBytes(StandardCharsets.UTF_8).length + "ÿñ".getBytes(StandardCharsets.UTF_8).length +
+                "привіт".getBytes(StandardCharsets.UTF_8).length + "€😀".getBytes(StandardCharsets.UTF_8).length;
+        assertEquals(expected, executionContext.getMemorySize());
+    }
+
+    public void testRegisteredValueSizeFunction() {
+        this.parserConfig.registerValueSizeFunction(UUID.class, uuid -> 100L);
+        HashMap<String, Object> vars = new HashMap<>();
+        vars.put("id", UUID.randomUUID());
+        ExecutionContext executionContext = new ExecutionContext(parserConfig, 5 * 1024 * 1024);
+        executeScript("var a = id; a", vars, executionContext);
+        assertEquals(100, executionContext.getMemorySize());
+    }
+
+    public void testCompiledToBytecode() {
+        boolean oldCompile = MVEL.RUNTIME_OPT_COMPILE_EXPRESSIONS;
+        int oldThreshold = DynamicOptimizer.tenuringThreshold;
+        MVEL.RUNTIME_OPT_COMPILE_EXPRESSIONS = true;
+        DynamicOptimizer.tenuringThreshold = 2;
+        long failed = ASMExpressionCompiler.getFailedCount();
+        try {
+            String body = "var total = 0;\n" +
+                    "foreach (item : msg.items) { total += item.value * 2; }\n" +
+                    "var level = 'low';\n" +
+                    "if (total > 100 && msg.alarm) { level = 'critical'; } else if (total > 10 || msg.alarm) { level = 'high'; }\n" +
+                    "level + ':' + (total - 1)";
+            CompiledExpression compiled = (CompiledExpression) compileExpression(body, new ParserContext());
+            HashMap<String, Object> msg = new HashMap<>();
+            msg.put("items", new ArrayList<>(Arrays.asList(Collections.singletonMap("value", 3), Collections.singletonMap("value", 4))));
+            msg.put("alarm", true);
+            HashMap<String, Object> vars = new HashMap<>();
+            vars.put("msg", msg);
+            for (int i = 0; i < 5; i++) {
+                ExecutionContext executionContext = new ExecutionContext(parserConfig, 5 * 1024 * 1024);
+                assertEquals("high:13", executeTbExpression(compiled, executionContext, vars));
+                assertTrue(executionContext.getMemorySize() > 0);
+            }
+            assertTrue(compiled.isCompiledToBytecode());
+            assertEquals(failed, ASMExpressionCompiler.getFailedCount());
+
+            ExecutionContext stopped = new ExecutionContext(parserConfig);
+            stopped.stop();
+            try {
+                executeTbExpression(compiled, stopped, vars);
+                fail("Should throw ScriptExecutionStoppedException");
+            } catch (ScriptExecutionStoppedException e) {
+                Assert.assertTrue(e.getMessage().contains("Script execution is stopped!"));
+            }
+        } finally {
+            MVEL.RUNTIME_OPT_COMPILE_EXPRESSIONS = oldCompile;
+            DynamicOptimizer.tenuringThreshold = oldThreshold;
+        }
+    }
+
+    public void testCompiledToBytecodeKeepsProfilingAndBudgets() {
+        boolean oldCompile = MVEL.RUNTIME_OPT_COMPILE_EXPRESSIONS;
+        int oldThreshold = DynamicOptimizer.tenuringThreshold;
+        MVEL.RUNTIME_OPT_COMPILE_EXPRESSIONS = true;
+        DynamicOptimizer.tenuringThreshold = 2;
+        try {
+            CompiledExpression compiled = (CompiledExpression) compileExpression("msg.a * msg.b", new ParserContext());
+            BinaryOperation node = (BinaryOperation) compiled.getFirstNode();
+            HashMap<String, Object> msg = new HashMap<>();
+            HashMap<String, Object> vars = new HashMap<>();
+            vars.put("msg", msg);
+            for (int i = 0; i <= BinaryOperation.profilingThreshold + 2; i++) {
+                msg.put("a", (long) i);
+                msg.put("b", 3L);
+                assertEquals(i * 3L, executeTbExpression(compiled, new ExecutionContext(parserConfig), vars));
+            }
+            assertTrue(compiled.isCompiledToBytecode());
+            assertEquals(Long.class, node.getSpecializedType());
+
+            compiled = (CompiledExpression) compileExpression("var n = 0;\n" +
+                    "for (var i = 0; i < 10; i++) { n = n + i; }\n" +
+                    "n", new ParserContext());
+            ExecutionContext interpreted = new ExecutionContext(parserConfig);
+            assertEquals(45, executeTbExpression(compiled, interpreted, vars));
+            for (int i = 0; i < 3; i++) {
+                ExecutionContext executionContext = new ExecutionContext(parserConfig);
+                assertEquals(45, executeTbExpression(compiled, executionContext, vars));
+                assertEquals(interpreted.getInstructionCount(), executionContext.getInstructionCount());
+            }
+            assertTrue(compiled.isCompiledToBytecode());
+        } finally {
+            MVEL.RUNTIME_OPT_COMPILE_EXPRESSIONS = oldCompile;
+            DynamicOptimizer.tenuringThreshold = oldThreshold;
+        }
+    }
+
+    public void testPatternCache() {
+        PatternCache previous = PatternCache.getShared();
+        PatternCache patternCache = new PatternCache(2, 16);
+        PatternCache.setShared(patternCache);
+        try {
+            String body = "var names = ['temp-1', 'hum-2', 'temp-3'];\n" +
+                    "var matched = [];\n" +
+                    "foreach (name : names) {\n" +
+                    "    if (name ~= filter) { matched.push(name.replaceAll('[0-9]', '#')); }\n" +
+                    "}\n" +
+                    "var parts = 'a1b2c'.split('[0-9]');\n" +
+                    "return {matched: matched, part: parts[1], all: 'abc'.matches('[a-c]+')};";
+            HashMap vars = new HashMap();
+            vars.put("filter", "temp-.*");
+            Map result = (Map) executeScript(body, vars);
+            assertEquals(Arrays.asList("temp-#", "temp-#"), result.get("matched"));
+            assertEquals("b", result.get("part"));
+            assertEquals(true, result.get("all"));
+            assertTrue(patternCache.getHitCount() > 0);
+            assertTrue(patternCache.getHitRate() > 0);
+            assertTrue(patternCache.size() <= 2);
+
+            // longer than the maximum length, compiled on each use
+            vars.put("filter", "temp-[0-9]{1,3}|hum-[0-9]{1,3}");
+            result = (Map) executeScript(body, vars);
+            assertEquals(Arrays.asList("temp-#", "hum-#", "temp-#"), result.get("matched"));
+            assertTrue(patternCache.size() <= 2);
+
+            ExecutionContext timed = new ExecutionContext(parserConfig);
+            timed.setTimeout(100, TimeUnit.MILLISECONDS);
+            // backtracks catastrophically, the backreference keeps the matcher from memoizing
+            vars.put("pattern", "(a+)+\\1b");
+            vars.put("value", "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa!");
+            try {
+                executeScript("value ~= pattern", vars, timed);
+                fail("Should throw ScriptExecutionStoppedException");
+            } catch (ScriptExecutionStoppedException e) {
+                assertEquals(ScriptExecutionStoppedException.Reason.TIMEOUT, e.getReason());
+            }
+        } finally {
+            PatternCache.setShared(previous);
+        }
+    }
+
+    public void testPatternCacheKeepsUsedPatterns() {
+        PatternCache patternCache = new PatternCache(4, 64);
+        Pattern hot = patternCache.compile("temp-[0-9]+");
+        for (int i = 0; i < 100; i++) {
+            patternCache.compile("once-" + i);
+            assertSame(hot, patternCache.compile("temp-[0-9]+"));
+            assertTrue(patternCache.size() <= 4);
+        }
+        assertEquals(100, patternCache.getHitCount());
+        assertEquals(97, patternCache.getEvictionCount());
+    }
+
+    public void testSplitOnLiteralSeparator() {
+        PatternCache previous = PatternCache.getShared();
+        PatternCache patternCache = new PatternCache(16, 64);
+        PatternCache.setShared(patternCache);
+        try {
+            HashMap vars = new HashMap();
+            vars.put("csv", "1,2,,3,,");
+            ExecutionContext executionContext = new ExecutionContext(parserConfig);
+            assertEquals(Arrays.asList("1", "2", "", "3"), executeScript("csv.split(',')", vars, executionContext));
+            assertEquals(Arrays.asList("1", "2", "", "3", "", ""), executeScript("csv.split(',', -1)", vars, executionContext));
+            assertEquals(Arrays.asList("a", "b"), executeScript("'a.b'.split('\\\\.')", vars, executionContext));
+            // literal separators are not compiled to patterns
+            assertEquals(0, patternCache.size());
+            assertEquals(Arrays.asList("a", "b", "c"), executeScript("'a1b22c'.split('[0-9]+')", vars, executionContext));
+            assertEquals(1, patternCache.size());
+        } finally {
+            PatternCache.setShared(previous);
+        }
+    }
+
+    public void testPatternCacheAfterTenuring() {
+        PatternCache previous = PatternCache.getShared();
+        PatternCache patternCache = new PatternCache(16, 64);
+        PatternCache.setShared(patternCache);
+        OptimizerFactory.setDefaultOptimizer(OptimizerFactory.DYNAMIC);
+        try {
+            int runs = DynamicOptimizer.tenuringThreshold * 4;
+            HashMap<String, Object> metadata = new HashMap<>();
+            metadata.put("filter", "[0-9]");
+            HashMap<String, Object> msg = new HashMap<>();
+            msg.put("name", "sensor-42");
+            HashMap<String, Object> vars = new HashMap<>();
+            vars.put("msg", msg);
+            vars.put("metadata", metadata);
+            vars.put("runs", runs);
+            String body = "var names = [];\n" +
+                    "for (var i = 0; i < runs; i++) { names.add(msg.name.replaceAll(metadata.filter, 'x')); }\n" +
+                    "return names[runs - 1] + ' ' + msg.name.matches(metadata.filter);";
+            assertEquals("sensor-xx false", executeScript(body, vars));
+            assertEquals(runs + 1, patternCache.getHitCount() + patternCache.getMissCount());
+
+            ExecutionContext timed = new ExecutionContext(parserConfig);
+            timed.setTimeout(100, TimeUnit.MILLISECONDS);
+            metadata.put("filter", "(a+)+\\1b");
+            msg.put("name", "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa!");
+            try {
+                executeScript(body, vars, timed);
+                fail("Should throw ScriptExecutionStoppedException");
+            } catch (ScriptExecutionStoppedException e) {
+                assertEquals(ScriptExecutionStoppedException.Reason.TIMEOUT, e.getReason());
+            }
+        } finally {
+            OptimizerFactory.setDefaultOptimizer(OptimizerFactory.SAFE_REFLECTIVE);
+            PatternCache.setShared(previous);
+        }
+    }
+
+    public void testArithmeticSpecializationOnUntypedValues() {
+        String body = "var sum = 0;\n" +
+                "var label = '';\n" +
+                "foreach (reading : msg.readings) {\n" +
+                "    sum = sum + reading.temperature * 1.8 + 32;\n" +
+                "    label = label + reading.id;\n" +
+                "}\n" +
+                "return {sum: sum, label: label, last: msg.readings[msg.readings.size() - 1].temperature + 1};";
+        List<Map<String, Object>> readings = new ArrayList<>();
+        double expected = 0;
+        StringBuilder label = new StringBuilder();
+        for (int i = 0; i < 120; i++) {
+            Map<String, Object> reading = new HashMap<>();
+            // doubles at first, then a mix with ints once the operations are specialized
+            Object temperature = i < 60 || i % 2 == 0 ? (Object) (i + 0.5) : (Object) i;
+            reading.put("temperature", temperature);
+            reading.put("id", i < 100 ? (Object) ("r" + i) : (Object) i);
+            readings.add(reading);
+            expected = expected + ((Number) temperature).doubleValue() * 1.8 + 32;
+            label.append(reading.get("id"));
+        }
+        HashMap<String, Object> msg = new HashMap<>();
+        msg.put("readings", readings);
+        HashMap<String, Object> vars = new HashMap<>();
+        vars.put("msg", msg);
+        Map result = (Map) executeScript(body, vars);
+        assertEquals(expected, (Double) result.get("sum"), 1e-6);
+        assertEquals(label.toString(), result.get("label"));
+        assertEquals(120, result.get("last"));
+    }
+
+    public void testExecutionBudgets() {
+        ExecutionContext timed = new ExecutionContext(parserConfig);
+        timed.setTimeout(50, TimeUnit.MILLISECONDS);
+        try {
+            executeScript("var i = 0; while (true) { i++; }", new HashMap(), timed);
+            fail("Should throw ScriptExecutionStoppedException");
+        } catch (ScriptExecutionStoppedException e) {
+            assertEquals(ScriptExecutionStoppedException.Reason.TIMEOUT, e.getReason());
+            Assert.assertTrue(e.getMessage().contains("timed out"));
+        }
+
+        ExecutionContext counted = new ExecutionContext(parserConfig);
+        counted.setMaxInstructions(100);
+        assertEquals(45, executeScript("var s = 0; for (var i = 0; i < 10; i++) { s += i; } s", new HashMap(), counted));
+        try {
+            executeScript("var s = 0; for (var i = 0; i < 1000; i++) { s += i; } s", new HashMap(), counted);
+            fail("Should throw ScriptExecutionStoppedException");
+        } catch (ScriptExecutionStoppedException e) {
+            assertEquals(ScriptExecutionStoppedException.Reason.INSTRUCTION_LIMIT, e.getReason());
+            assertEquals(101, counted.getInstructionCount());
+        }
+
+        ExecutionContext deep = new ExecutionContext(parserConfig);
+        deep.setMaxStackDepth(20);
+        String body = "function depth(n) { return n == 0 ? 0 : 1 + depth(n - 1); }\n depth(n)";
+        assertEquals(10, executeScript(body, new HashMap(Collections.singletonMap("n", 10)), deep));
+        try {
+            executeScript(body, new HashMap(Collections.singletonMap("n", 1000)), deep);
+            fail("Should throw ScriptExecutionStoppedException");
+        } catch (ScriptExecutionStoppedException e) {
+            assertEquals(ScriptExecutionStoppedException.Reason.STACK_DEPTH, e.getReason());
+        }
+        assertEquals(10, executeScript(body, new HashMap(Collections.singletonMap("n", 10)), deep));
+    }
+
+    public void testPooledExecutionContext() {
+        String body = "var list = [1, 2, 3];\n" +
+                "function sum(l) { var s = 0; foreach (v : l) { s += v; } return s; }\n" +
+                "sum(list) + msg.temperature";
+        HashMap<String, Object> vars = new HashMap<>();
+        vars.put("msg", Collections.singletonMap("temperature", 21));
+
+        ExecutionContext first = parserConfig.acquireExecutionContext(5 * 1024 * 1024, 10);
+        assertEquals(27, executeScript(body, vars, first));
+        long memorySize = first.getMemorySize();
+        assertTrue(memorySize > 0);
+        first.stop();
+        parserConfig.releaseExecutionContext(first);
+
+        ExecutionContext second = parserConfig.acquireExecutionContext(5 * 1024 * 1024, 10);
+        assertSame(first, second);
+        assertEquals(0, second.getMemorySize());
+        ExecutionContext nested = parserConfig.acquireExecutionContext(5 * 1024 * 1024, 10);
+        assertNotSame(second, nested);
+        assertEquals(27, executeScript(body, vars, second));
+        assertEquals(memorySize, second.getMemorySize());
+        parserConfig.releaseExecutionContext(second);
+
+        assertNotSame(second, parserConfig.acquireExecutionContext(1024, 10));
+        assertNotSame(second, new SandboxedParserConfiguration().acquireExecutionContext(5 * 1024 * 1024, 10));
+
+        second.setMaxInstructions(1);
+        second.reset();
+        try {
+            executeScript(body, vars, second);
+            fail("Should throw ScriptExecutionStoppedException");
+        } catch (ScriptExecutionStoppedException e) {
+            assertEquals(ScriptExecutionStoppedException.Reason.INSTRUCTION_LIMIT, e.getReason());
+        }
+    }
+
+    public void testExecuteBatch() {
+        Serializable compiled = compileExpression("if (msg.temperature > 50) { return 'hot'; }\n" +
+                "var readings = [msg.temperature];\n" +
+                "readings.add(msg.temperature * 2);\n" +
+                "return readings;", new ParserContext());
+        List<Map<String, Object>> inputs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            HashMap<String, Object> vars = new HashMap<>();
+            if (i != 7) {
+                vars.put("msg", Collections.singletonMap("temperature", i));
+            }
+            inputs.add(vars);
+        }
+        ExecutionContext template = new ExecutionContext(parserConfig, 1024);
+        BatchResult sequential = MVEL.executeBatch(compiled, template, inputs);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        BatchResult parallel;
+        try {
+            parallel = MVEL.executeBatch(compiled, template, inputs, pool);
+        } finally {
+            pool.shutdown();
+        }
+        for (BatchResult result : Arrays.asList(sequential, parallel)) {
+            assertEquals(100, result.size());
+            assertEquals(1, result.getErrorCount());
+            assertFalse(result.isSuccess(7));
+            assertNull(result.getResult(7));
+            assertNotNull(result.getError(7));
+            assertEquals(Arrays.asList(6, 12), result.getResult(6));
+            assertEquals(Arrays.asList(8, 16), result.getResult(8));
+            assertEquals("hot", result.getResult(51));
+            assertEquals(Arrays.asList(0, 0), result.getResults().get(0));
+        }
+        assertEquals(0, template.getMemorySize());
+    }
+
+    public void testExecuteBatchStoppedByTemplate() throws Exception {
+        Serializable compiled = compileExpression("var i = 0;\n" +
+                "while (i >= 0) { i = i + 1; }\n" +
+                "return i;", new ParserContext());
+        List<Map<String, Object>> inputs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            inputs.add(new HashMap<>());
+        }
+        ExecutionContext template = new ExecutionContext(parserConfig, 1024);
+        Thread stopper = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                return;
+            }
+            template.stop();
+        });
+        stopper.start();
+        BatchResult result = MVEL.executeBatch(compiled, template, inputs);
+        stopper.join();
+        assertEquals(3, result.size());
+        assertEquals(3, result.getErrorCount());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(result.getError(i) instanceof ScriptExecutionStoppedException);
+        }
+    }
+
+    public void testIndexedInputs() {
+        IndexedCompiledScript script = MVEL.compileTbExpression("var t = msg.temperature;\n" +
+                "function twice(x) { return x * 2; }\n" +
+                "var sum = 0;\n" +
+                "foreach (v : [1, 2]) { sum += v + msg.temperature; }\n" +
+                "metadata.unit = 'C';\n" +
+                "msgType = msgType + '_CHECKED';\n" +
+                "return {t: twice(t), sum: sum, type: msgType, unit: metadata.unit};",
+                new ParserContext(), "msg", "metadata", "msgType");
+        assertArrayEquals(new String[]{"msg", "metadata", "msgType"}, script.getInputs());
+        for (int i = 0; i < 3; i++) {
+            Map<String, Object> metadata = new HashMap<>();
+            Object res = executeTbExpression(script, new ExecutionContext(parserConfig),
+                    new Object[]{Collections.singletonMap("temperature", 20 + i), metadata, "POST"});
+            Map<String, Object> expected = new LinkedHashMap<>();
+            expected.put("t", (20 + i) * 2);
+            expected.put("sum", 3 + (20 + i) * 2);
+            expected.put("type", "POST_CHECKED");
+            expected.put("unit", "C");
+            assertEquals(expected, res);
+        }
+
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("msg", Collections.singletonMap("temperature", 5));
+        vars.put("metadata", new HashMap<>());
+        vars.put("msgType", "GET");
+        vars.put("unused", "value");
+        Object res = executeTbExpression(script, new ExecutionContext(parserConfig), vars);
+        assertEquals("GET_CHECKED", ((Map) res).get("type"));
+        assertEquals(13, ((Map) res).get("sum"));
+
+        try {
+            executeTbExpression(script, new ExecutionContext(parserConfig), new Object[]{vars});
+            fail("Should throw IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("expected 3 input values, got 1", e.getMessage());
+        }
+    }
+
+    public void testCompileBatch() {
+        List<String> sources = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            sources.add(i % 50 == 3
+                    ? "var a = ;"
+                    : "var list = [msg.temperature, " + i + "];\nfunction sum(l) { var s = 0; foreach (v : l) { s += v; } return s; }\nsum(list)");
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        BatchResult compiled;
+        try {
+            compiled = MVEL.compileBatch(sources, parserConfig, pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(200, compiled.size());
+        assertEquals(4, compiled.getErrorCount());
+        HashMap<String, Object> vars = new HashMap<>();
+        vars.put("msg", Collections.singletonMap("temperature", 20));
+        for (int i = 0; i < 200; i++) {
+            if (i % 50 == 3) {
+                assertTrue(compiled.getError(i) instanceof CompileException);
+            } else {
+                assertTrue(compiled.isSuccess(i));
+                assertEquals(20 + i, executeTbExpression(compiled.getResult(i), new ExecutionContext(parserConfig), vars));
+            }
+        }
+    }
+
     private Object executeScript(String ex, Map vars, ExecutionContext executionContext, long timeoutMs) throws Exception {
         final CountDownLatch countDown = new CountDownLatch(1);
         AtomicReference<Object> result = new AtomicReference<>();
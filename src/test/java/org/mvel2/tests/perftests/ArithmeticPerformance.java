@@ -0,0 +1,65 @@
+package org.mvel2.tests.perftests;
+
+import org.mvel2.MVEL;
+import org.mvel2.ParserContext;
+import org.mvel2.ast.BinaryOperation;
+import org.mvel2.compiler.CompiledExpression;
+import org.mvel2.compiler.ExpressionCompiler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compares the arithmetic nodes specialized at compile time and the operations specialized from the profiled types
+ * of their operands with the generic path of {@link org.mvel2.math.MathProcessor}. The generic path is measured on
+ * the untyped expression with the profiling disabled.
+ */
+public class ArithmeticPerformance {
+  private static final int COUNT = 5000000;
+
+  public static void main(String[] args) {
+    CompiledExpression specialized = compile("temperature * 1.8 + 32 > limit");
+    CompiledExpression profiled = compile("temperature * factor + offset > limit");
+    CompiledExpression generic = compile("temperature * factor + offset > limit");
+
+    int threshold = BinaryOperation.profilingThreshold;
+    BinaryOperation.profilingThreshold = 0;
+    run(generic, 1);
+    BinaryOperation.profilingThreshold = threshold;
+
+    long time;
+    for (int i = 0; i < 5; i++) {
+      time = System.currentTimeMillis();
+      run(specialized, COUNT);
+      System.out.println("Specialized : " + (System.currentTimeMillis() - time));
+
+      time = System.currentTimeMillis();
+      run(profiled, COUNT);
+      System.out.println("Profiled    : " + (System.currentTimeMillis() - time));
+
+      time = System.currentTimeMillis();
+      run(generic, COUNT);
+      System.out.println("Generic     : " + (System.currentTimeMillis() - time));
+      System.out.println();
+    }
+  }
+
+  private static CompiledExpression compile(String expression) {
+    return new ExpressionCompiler(expression, new ParserContext()).compile();
+  }
+
+  private static void run(CompiledExpression compiled, int count) {
+    Map<String, Object> vars = new HashMap<String, Object>();
+    vars.put("factor", 1.8);
+    vars.put("offset", 32);
+    vars.put("limit", 100);
+    int above = 0;
+    for (int i = 0; i < count; i++) {
+      vars.put("temperature", (i & 1) == 0 ? (Object) (i % 60) : (Object) (i % 60 + 0.5));
+      if ((Boolean) MVEL.executeExpression(compiled, vars)) {
+        above++;
+      }
+    }
+    assert count == 1 || above > 0;
+  }
+}
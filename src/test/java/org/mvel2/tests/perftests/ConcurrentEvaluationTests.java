@@ -1,6 +1,10 @@
 package org.mvel2.tests.perftests;
 
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -10,6 +14,7 @@ import junit.framework.TestCase;
 import org.junit.Test;
 import org.mvel2.MVEL;
 import org.mvel2.optimizers.OptimizerFactory;
+import org.mvel2.optimizers.dynamic.DynamicOptimizer;
 
 public class ConcurrentEvaluationTests extends TestCase {
 
@@ -33,6 +38,196 @@ public class ConcurrentEvaluationTests extends TestCase {
 		internalConcurrentEvaluation();
 	}
 
+	/**
+	 * Many threads warm up distinct scripts at once with a low tenuring threshold and a small tenure limit,
+	 * so that accessors are optimized and the shared class loader is recycled while other threads evaluate.
+	 */
+	@Test(timeout = 60000)
+	public void testDynamicConcurrentWarmUp() throws Exception {
+		final int threads = 32;
+		final int scriptsPerThread = 50;
+		final int iterations = 20;
+		int oldThreshold = DynamicOptimizer.tenuringThreshold;
+		long oldTimeSpan = DynamicOptimizer.timeSpan;
+		int oldTenure = DynamicOptimizer.maximumTenure;
+		DynamicOptimizer.tenuringThreshold = 2;
+		DynamicOptimizer.timeSpan = 60000;
+		DynamicOptimizer.maximumTenure = 100;
+		OptimizerFactory.setDefaultOptimizer(OptimizerFactory.DYNAMIC);
+		try {
+			final CountDownLatch start = new CountDownLatch(1);
+			final CountDownLatch end = new CountDownLatch(threads);
+			final AtomicInteger errors = new AtomicInteger(0);
+			for (int t = 0; t < threads; t++) {
+				final int thread = t;
+				new Thread(new Runnable() {
+					public void run() {
+						try {
+							Map<String, Object> msg = new HashMap<String, Object>();
+							msg.put("value", thread);
+							Map<String, Object> vars = new HashMap<String, Object>();
+							vars.put("msg", msg);
+							start.await();
+							for (int s = 0; s < scriptsPerThread; s++) {
+								Serializable compiled = MVEL.compileExpression("msg.value + " + s);
+								for (int i = 0; i < iterations; i++) {
+									if (((Number) MVEL.executeExpression(compiled, vars)).intValue() != thread + s) {
+										errors.incrementAndGet();
+									}
+								}
+							}
+						} catch (Exception e) {
+							errors.incrementAndGet();
+						} finally {
+							end.countDown();
+						}
+					}
+				}, "thread-warmup-" + t).start();
+			}
+			long time = System.nanoTime();
+			start.countDown();
+			assertEquals("Test did not complete withing 60s", true,
+					end.await(60, TimeUnit.SECONDS));
+			time = System.nanoTime() - time;
+			System.out.println("warmed up " + (threads * scriptsPerThread) + " scripts on " + threads + " threads in "
+					+ TimeUnit.NANOSECONDS.toMillis(time) + "ms");
+			assertEquals(0, errors.get());
+		} finally {
+			DynamicOptimizer.tenuringThreshold = oldThreshold;
+			DynamicOptimizer.timeSpan = oldTimeSpan;
+			DynamicOptimizer.maximumTenure = oldTenure;
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void testDynamicBackgroundCompilation() throws Exception {
+		int oldThreshold = DynamicOptimizer.tenuringThreshold;
+		long oldTimeSpan = DynamicOptimizer.timeSpan;
+		DynamicOptimizer.tenuringThreshold = 2;
+		DynamicOptimizer.timeSpan = 60000;
+		DynamicOptimizer.backgroundCompilation = true;
+		OptimizerFactory.setDefaultOptimizer(OptimizerFactory.DYNAMIC);
+		try {
+			long compiled = DynamicOptimizer.getBackgroundCompiledCount();
+			Map<String, Object> msg = new HashMap<String, Object>();
+			msg.put("temperature", 21);
+			Map<String, Object> vars = new HashMap<String, Object>();
+			vars.put("msg", msg);
+			Serializable expression = MVEL.compileExpression("msg.temperature");
+			long deadline = System.currentTimeMillis() + 20000;
+			while (DynamicOptimizer.getBackgroundCompiledCount() == compiled) {
+				assertEquals(21, MVEL.executeExpression(expression, vars));
+				assertTrue("accessor was not compiled in the background", System.currentTimeMillis() < deadline);
+				Thread.sleep(1);
+			}
+			for (int i = 0; i < 10; i++) {
+				assertEquals(21, MVEL.executeExpression(expression, vars));
+			}
+		} finally {
+			DynamicOptimizer.backgroundCompilation = false;
+			DynamicOptimizer.shutdownBackgroundCompiler();
+			DynamicOptimizer.tenuringThreshold = oldThreshold;
+			DynamicOptimizer.timeSpan = oldTimeSpan;
+		}
+	}
+
+	/**
+	 * Accessors invoking methods without arguments are compiled in the background too, and are evaluated exactly
+	 * once per execution while the compilation is pending.
+	 */
+	@Test(timeout = 30000)
+	public void testDynamicBackgroundCompilationEvaluatesOnce() throws Exception {
+		int oldThreshold = DynamicOptimizer.tenuringThreshold;
+		long oldTimeSpan = DynamicOptimizer.timeSpan;
+		DynamicOptimizer.tenuringThreshold = 2;
+		DynamicOptimizer.timeSpan = 60000;
+		DynamicOptimizer.backgroundCompilation = true;
+		OptimizerFactory.setDefaultOptimizer(OptimizerFactory.DYNAMIC);
+		try {
+			long compiled = DynamicOptimizer.getBackgroundCompiledCount();
+			AtomicInteger counter = new AtomicInteger();
+			Map<String, Object> vars = new HashMap<String, Object>();
+			vars.put("counter", counter);
+			Serializable expression = MVEL.compileExpression("counter.incrementAndGet()");
+			int runs = 0;
+			long deadline = System.currentTimeMillis() + 20000;
+			while (DynamicOptimizer.getBackgroundCompiledCount() == compiled) {
+				assertEquals(++runs, MVEL.executeExpression(expression, vars));
+				assertTrue("accessor was not compiled in the background", System.currentTimeMillis() < deadline);
+				Thread.sleep(1);
+			}
+			for (int i = 0; i < 10; i++) {
+				assertEquals(++runs, MVEL.executeExpression(expression, vars));
+			}
+			assertEquals(runs, counter.get());
+		} finally {
+			DynamicOptimizer.backgroundCompilation = false;
+			DynamicOptimizer.shutdownBackgroundCompiler();
+			DynamicOptimizer.tenuringThreshold = oldThreshold;
+			DynamicOptimizer.timeSpan = oldTimeSpan;
+		}
+	}
+
+	/**
+	 * The background compiler generates the accessor from the reflective one without evaluating it. Once compiled,
+	 * a receiver of another class is still handled by the reflective accessor.
+	 */
+	@Test(timeout = 30000)
+	public void testDynamicBackgroundCompilationOfBeanChain() throws Exception {
+		int oldThreshold = DynamicOptimizer.tenuringThreshold;
+		long oldTimeSpan = DynamicOptimizer.timeSpan;
+		DynamicOptimizer.tenuringThreshold = 2;
+		DynamicOptimizer.timeSpan = 60000;
+		DynamicOptimizer.backgroundCompilation = true;
+		OptimizerFactory.setDefaultOptimizer(OptimizerFactory.DYNAMIC);
+		try {
+			long compiled = DynamicOptimizer.getBackgroundCompiledCount();
+			Map<String, Object> vars = new HashMap<String, Object>();
+			vars.put("sensor", new Sensor(21));
+			Serializable expression = MVEL.compileExpression("sensor.readings[0].value");
+			long deadline = System.currentTimeMillis() + 20000;
+			while (DynamicOptimizer.getBackgroundCompiledCount() == compiled) {
+				assertEquals(21, MVEL.executeExpression(expression, vars));
+				assertTrue("accessor was not compiled in the background", System.currentTimeMillis() < deadline);
+				Thread.sleep(1);
+			}
+			assertEquals(21, MVEL.executeExpression(expression, vars));
+			vars.put("sensor", new OtherSensor(42));
+			assertEquals(42, MVEL.executeExpression(expression, vars));
+			vars.put("sensor", new Sensor(7));
+			assertEquals(7, MVEL.executeExpression(expression, vars));
+		} finally {
+			DynamicOptimizer.backgroundCompilation = false;
+			DynamicOptimizer.shutdownBackgroundCompiler();
+			DynamicOptimizer.tenuringThreshold = oldThreshold;
+			DynamicOptimizer.timeSpan = oldTimeSpan;
+		}
+	}
+
+	public static class Sensor {
+		private final List<Map<String, Object>> readings;
+
+		public Sensor(int value) {
+			readings = Collections.singletonList(Collections.<String, Object>singletonMap("value", value));
+		}
+
+		public List<Map<String, Object>> getReadings() {
+			return readings;
+		}
+	}
+
+	public static class OtherSensor {
+		private final List<Map<String, Object>> readings;
+
+		public OtherSensor(int value) {
+			readings = Collections.singletonList(Collections.<String, Object>singletonMap("value", value));
+		}
+
+		public List<Map<String, Object>> getReadings() {
+			return readings;
+		}
+	}
+
 	private void internalConcurrentEvaluation() throws Exception {
 		final int N = 20;
 		final CountDownLatch start = new CountDownLatch(1);
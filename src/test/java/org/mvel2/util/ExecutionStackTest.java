@@ -0,0 +1,83 @@
+package org.mvel2.util;
+
+import junit.framework.TestCase;
+import org.mvel2.MVEL;
+import org.mvel2.Operator;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ExecutionStackTest extends TestCase {
+
+  public void testStackOperations() {
+    ExecutionStack stk = new ExecutionStack(2);
+    stk.push(1, 2, 3);
+    stk.add(0);
+    assertEquals("[3, 2, 1, 0]", stk.toString());
+    stk.xswap();
+    assertEquals("[2, 3, 1, 0]", stk.toString());
+    stk.xswap2();
+    assertEquals("[1, 3, 2, 0]", stk.toString());
+    stk.dup();
+    assertEquals(1, stk.pop2());
+    assertEquals(3, stk.peek());
+    assertEquals(2, stk.peek2());
+    stk.discard();
+    stk.discard();
+    assertEquals(0, stk.pop());
+    assertNull(stk.pop());
+    assertTrue(stk.isEmpty());
+    assertEquals("<EMPTY>", stk.toString());
+  }
+
+  public void testArithmetic() {
+    ExecutionStack stk = new ExecutionStack();
+    stk.push(6, 7, Operator.MULT);
+    stk.op();
+    assertEquals(42, stk.peek());
+    stk.push(2);
+    stk.op(Operator.SUB);
+    assertEquals(40, stk.peek());
+    stk.push(Operator.ADD, 2);
+    stk.xswap_op();
+    assertEquals(42, stk.pop());
+    assertEquals(0, stk.size());
+  }
+
+  public void testCopy() {
+    ExecutionStack from = new ExecutionStack();
+    from.push("a", "b", "c");
+    ExecutionStack to = new ExecutionStack();
+    to.copy2(from);
+    assertEquals("[b, c]", to.toString());
+    assertEquals("[a]", from.toString());
+    from.push("d");
+    to.copyx2(from);
+    assertEquals("[d, a, b, c]", to.toString());
+    assertTrue(from.isEmpty());
+  }
+
+  public void testPooledStacks() {
+    ExecutionStack outer = ExecutionStack.acquire();
+    ExecutionStack inner = ExecutionStack.acquire();
+    assertNotSame(outer, inner);
+    inner.push("value");
+    ExecutionStack.release(inner);
+    assertTrue(inner.isEmpty());
+    assertSame(inner, ExecutionStack.acquire());
+    ExecutionStack.release(inner);
+    ExecutionStack.release(outer);
+    assertSame(outer, ExecutionStack.acquire());
+    ExecutionStack.release(outer);
+  }
+
+  public void testNestedExecution() {
+    Map<String, Object> vars = new HashMap<String, Object>();
+    vars.put("x", 10);
+    Serializable compiled = MVEL.compileExpression("def f(n) { if (n > 0) { n + f(n - 1) } else { 0 } }; x * 2 + f(x) - 1");
+    for (int i = 0; i < 3; i++) {
+      assertEquals(74, MVEL.executeExpression(compiled, vars));
+    }
+  }
+}